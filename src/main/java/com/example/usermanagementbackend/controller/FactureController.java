@@ -1,16 +1,29 @@
 package com.example.usermanagementbackend.controller;
 
 import com.example.usermanagementbackend.entity.Facture;
+import com.example.usermanagementbackend.enums.PdfStatus;
+import com.example.usermanagementbackend.service.FactureExportService;
+import com.example.usermanagementbackend.service.FacturePdfService;
 import com.example.usermanagementbackend.service.FactureService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,10 +31,21 @@ import java.util.Optional;
 @RequestMapping("/api/factures")
 public class FactureController {
 
+    // Attributs de requête reconnus par Tomcat pour l'envoi de fichier en zéro copie
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private final FactureService factureService;
+    private final FactureExportService factureExportService;
+    private final long exportTimeoutMs;
 
-    public FactureController(FactureService factureService) {
+    public FactureController(FactureService factureService, FactureExportService factureExportService,
+                             @Value("${facture.export.timeout-ms:600000}") long exportTimeoutMs) {
         this.factureService = factureService;
+        this.factureExportService = factureExportService;
+        this.exportTimeoutMs = exportTimeoutMs;
     }
 
     @GetMapping
@@ -78,26 +102,94 @@ public class FactureController {
         }
     }
 
+    // Archive ZIP des PDF d'une période et/ou d'un utilisateur, écrite en flux
+    // Archive écrite sur un thread asynchrone, avec un délai propre à cet endpoint
+    // (le délai asynchrone global reste celui par défaut pour les autres requêtes)
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportFacturesZip(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId,
+            HttpServletResponse response) {
+        if (from == null && to == null && userId == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Filtre requis : from, to ou userId");
+        }
+        List<Long> factureIds = factureExportService.findFactureIds(from, to, userId);
+        if (factureIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Aucune facture à exporter");
+        }
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename("factures.zip").build().toString());
+            factureExportService.writeZip(factureIds, response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+
     @GetMapping("/{id}/pdf")
-    public ResponseEntity<byte[]> downloadFacturePDF(@PathVariable Long id) {
+    public ResponseEntity<?> downloadFacturePDF(@PathVariable Long id, HttpServletRequest request, WebRequest webRequest) {
         Optional<Facture> facture = factureService.getFactureById(id);
         if (facture.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
+        PdfStatus pdfStatus = facture.get().getPdfStatus();
+        if (pdfStatus == PdfStatus.FAILED) {
+            // Nouvel essai tant que le plafond d'échecs consécutifs n'est pas atteint
+            if (!factureService.relancerRenduEchoue(facture.get())) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(("PDF generation failed for facture ID: " + id).getBytes());
+            }
+            return renduEnCours(id);
+        }
+        Path pdfPath = FacturePdfService.pdfPath(id);
+        if (pdfStatus == PdfStatus.PENDING || !Files.exists(pdfPath)) {
+            if (pdfStatus != PdfStatus.PENDING) {
+                // Facture antérieure au rendu asynchrone ou fichier supprimé : on relance le rendu
+                factureService.regenererPdf(id);
+            }
+            return renduEnCours(id);
+        }
         try {
-            Path pdfPath = Paths.get("invoices/invoice_" + id + ".pdf");
-            if (!Files.exists(pdfPath)) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(("PDF not found for facture ID: " + id).getBytes());
+            long length = Files.size(pdfPath);
+            long lastModified = Files.getLastModifiedTime(pdfPath).toMillis();
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+            // If-None-Match / If-Modified-Since : réponse 304 sans corps
+            if (webRequest.checkNotModified(etag, lastModified)) {
+                return null;
+            }
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_PDF)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename("invoice_" + id + ".pdf").build().toString())
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .eTag(etag)
+                    .lastModified(lastModified);
+
+            // Fichier complet sur un connecteur qui le supporte (Tomcat NIO) : envoi par sendfile,
+            // le contenu ne transite pas par la JVM
+            if (request.getHeader(HttpHeaders.RANGE) == null
+                    && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+                request.setAttribute(SENDFILE_FILENAME_ATTR, pdfPath.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START_ATTR, 0L);
+                request.setAttribute(SENDFILE_END_ATTR, length);
+                return response.contentLength(length).build();
             }
-            byte[] pdfBytes = Files.readAllBytes(pdfPath);
-            org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "invoice_" + id + ".pdf");
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+
+            // Sinon le fichier est copié en flux ; Spring gère l'en-tête Range (206 Partial Content)
+            return response.body(new FileSystemResource(pdfPath));
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(("Error reading PDF: " + e.getMessage()).getBytes());
         }
     }
-}
\ No newline at end of file
+
+    private static ResponseEntity<byte[]> renduEnCours(Long id) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(("PDF generation in progress for facture ID: " + id).getBytes());
+    }
+}
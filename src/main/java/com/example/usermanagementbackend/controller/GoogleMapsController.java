@@ -1,12 +1,17 @@
 package com.example.usermanagementbackend.controller;
 
 import com.example.usermanagementbackend.service.GoogleMapsService;
+import com.example.usermanagementbackend.service.OutboundHttpClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/maps")
 public class GoogleMapsController {
@@ -14,9 +19,18 @@ public class GoogleMapsController {
         @Autowired
         private GoogleMapsService googleMapsService;
 
-        // Endpoint pour obtenir la distance
-        @GetMapping("/distance")
-        public String getDistance(@RequestParam String origin, @RequestParam String destination) {
+        @Autowired
+        private OutboundHttpClient outboundHttpClient;
+
+        // Endpoint pour obtenir la distance (traitement asynchrone : le thread Tomcat est libéré pendant l'appel)
+        @GetMapping(value = "/distance", produces = MediaType.APPLICATION_JSON_VALUE)
+        public CompletableFuture<String> getDistance(@RequestParam String origin, @RequestParam String destination) {
             return googleMapsService.getDistance(origin, destination);
         }
+
+        // Latences et état des disjoncteurs des appels HTTP sortants
+        @GetMapping("/outbound-metrics")
+        public List<OutboundHttpClient.EndpointMetrics> getOutboundMetrics() {
+            return outboundHttpClient.metrics();
+        }
 }
@@ -1,12 +1,30 @@
 package com.example.usermanagementbackend.controller;
 
+import com.example.usermanagementbackend.dto.CursorPage;
 import com.example.usermanagementbackend.dto.LivraisonDTO;
+import com.example.usermanagementbackend.dto.LivraisonEtaDTO;
+import com.example.usermanagementbackend.dto.LivraisonListItemDTO;
+import com.example.usermanagementbackend.entity.StatusLivraison;
 import com.example.usermanagementbackend.entity.TypeLivraison;
+import com.example.usermanagementbackend.service.CarbonFootprintBatchService;
+import com.example.usermanagementbackend.service.DeliveryEtaService;
+import com.example.usermanagementbackend.service.DeliveryPhotoStore;
+import com.example.usermanagementbackend.service.DispatchService;
 import com.example.usermanagementbackend.service.ILivraisonService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,9 +34,19 @@ import java.util.Map;
 public class LivraisonController {
 
     private final ILivraisonService livraisonService;
+    private final CarbonFootprintBatchService carbonFootprintBatchService;
+    private final DeliveryPhotoStore deliveryPhotoStore;
+    private final DispatchService dispatchService;
+    private final DeliveryEtaService deliveryEtaService;
 
-    public LivraisonController(ILivraisonService livraisonService) {
+    public LivraisonController(ILivraisonService livraisonService, CarbonFootprintBatchService carbonFootprintBatchService,
+                               DeliveryPhotoStore deliveryPhotoStore, DispatchService dispatchService,
+                               DeliveryEtaService deliveryEtaService) {
         this.livraisonService = livraisonService;
+        this.carbonFootprintBatchService = carbonFootprintBatchService;
+        this.deliveryPhotoStore = deliveryPhotoStore;
+        this.dispatchService = dispatchService;
+        this.deliveryEtaService = deliveryEtaService;
     }
 
     @PostMapping("/create")
@@ -57,12 +85,39 @@ public class LivraisonController {
         return ResponseEntity.ok(livraisonDTO);
     }
 
+    @GetMapping("/{id}/eta")
+    public ResponseEntity<LivraisonEtaDTO> getLivraisonEta(@PathVariable Long id) {
+        return ResponseEntity.ok(deliveryEtaService.estimate(id));
+    }
+
+    // Livraisons d'une tournée de dispatch, dans l'ordre de passage (application livreur)
+    @GetMapping("/tournees/{tourneeId}")
+    public ResponseEntity<List<LivraisonDTO>> getTournee(@PathVariable String tourneeId) {
+        return ResponseEntity.ok(livraisonService.getTournee(tourneeId));
+    }
+
     @GetMapping("/all")
     public ResponseEntity<List<LivraisonDTO>> getAllLivraisons() {
         List<LivraisonDTO> livraisons = livraisonService.getAllLivraisons();
         return ResponseEntity.ok(livraisons);
     }
 
+    /**
+     * Liste paginée par curseur (plus récentes d'abord) : passer le {@code nextCursor}
+     * de la réponse précédente pour obtenir la page suivante.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<LivraisonListItemDTO>> getLivraisonsPage(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) StatusLivraison status,
+            @RequestParam(required = false) TypeLivraison type,
+            @RequestParam(required = false) Long livreurId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(livraisonService.getLivraisonsPage(cursor, size, status, type, livreurId, from, to));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<LivraisonDTO> updateLivraison(@PathVariable Long id, @RequestBody LivraisonDTO livraisonDTO) {
         LivraisonDTO updatedLivraison = livraisonService.updateLivraison(id, livraisonDTO);
@@ -74,6 +129,65 @@ public class LivraisonController {
         livraisonService.deleteLivraison(id);
         return ResponseEntity.ok(Map.of("message", "Livraison supprimée avec succès", "id", id.toString()));
     }
+
+    /**
+     * Répartit les commandes payées ou confirmées en tournées et crée les livraisons.
+     * Avec {@code dryRun=true}, retourne seulement le plan calculé.
+     */
+    @PostMapping("/dispatch")
+    public ResponseEntity<?> dispatch(@RequestParam(defaultValue = "false") boolean dryRun) {
+        try {
+            return ResponseEntity.ok(dispatchService.dispatch(dryRun));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Photo de preuve de livraison. La référence dérive du contenu : la réponse ne change jamais
+     * pour une même URL et peut être mise en cache sans limite.
+     */
+    @GetMapping("/photos/{ref:.+}")
+    public ResponseEntity<FileSystemResource> getPhoto(@PathVariable String ref, WebRequest webRequest) {
+        Path path = deliveryPhotoStore.find(ref);
+        if (path == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = "\"" + ref + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        FileSystemResource resource = new FileSystemResource(path);
+        return ResponseEntity.ok()
+                .contentType(MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable())
+                .eTag(etag)
+                .body(resource);
+    }
+
+    /**
+     * Recalcule l'empreinte carbone des livraisons indiquées (réponse immédiate),
+     * ou de tout l'historique en tâche de fond si aucun id n'est fourni.
+     */
+    @PostMapping("/carbon-footprint/recalculate")
+    public ResponseEntity<?> recalculateCarbonFootprints(@RequestBody(required = false) List<Long> ids,
+                                                         @RequestParam(defaultValue = "true") boolean routes) {
+        if (ids != null && !ids.isEmpty()) {
+            return ResponseEntity.ok(carbonFootprintBatchService.recalculate(ids, routes));
+        }
+        if (!carbonFootprintBatchService.startFullRecalculation(routes)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Un recalcul est déjà en cours"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Recalcul des empreintes carbone lancé"));
+    }
+
+    @GetMapping("/carbon-footprint/recalculate")
+    public ResponseEntity<Map<String, Object>> getCarbonRecalculationStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("running", carbonFootprintBatchService.isRunning());
+        status.put("lastReport", carbonFootprintBatchService.getLastReport());
+        return ResponseEntity.ok(status);
+    }
     
     /**
      * Calculate Haversine distance between two points in kilometers
@@ -1,7 +1,9 @@
 package com.example.usermanagementbackend.controller;
 
 import com.example.usermanagementbackend.dto.LivreurDTO;
+import com.example.usermanagementbackend.dto.NearbyLivreurDTO;
 import com.example.usermanagementbackend.service.LivreurService;
+import com.example.usermanagementbackend.service.NearestCourierService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +21,9 @@ public class LivreurController {
     @Autowired
     private LivreurService livreurService;
 
+    @Autowired
+    private NearestCourierService nearestCourierService;
+
     @GetMapping("/all")
     public ResponseEntity<List<LivreurDTO>> getAllLivreurs() {
         List<LivreurDTO> livreurs = livreurService.getAllLivreurs();
@@ -41,6 +46,23 @@ public class LivreurController {
         return livreurService.getPhoto(id);
     }
 
+    // Livreurs disponibles les plus proches d'un point (lat/lng) ou de l'adresse d'une commande
+    @GetMapping("/nearest")
+    public ResponseEntity<List<NearbyLivreurDTO>> getNearestLivreurs(
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lng,
+            @RequestParam(required = false) Long commandeId,
+            @RequestParam(defaultValue = "5") int k) {
+        int limit = Math.max(1, Math.min(k, 50));
+        if (commandeId != null) {
+            return ResponseEntity.ok(nearestCourierService.nearestLivreursForCommande(commandeId, limit));
+        }
+        if (lat == null || lng == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(nearestCourierService.nearestLivreurs(lat, lng, limit));
+    }
+
     @GetMapping("/by-user/{userId}")
     public ResponseEntity<LivreurDTO> getLivreurByUserId(@PathVariable Long userId) {
         try {
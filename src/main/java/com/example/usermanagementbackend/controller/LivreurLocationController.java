@@ -0,0 +1,24 @@
+package com.example.usermanagementbackend.controller;
+
+import com.example.usermanagementbackend.dto.LocationUpdateDTO;
+import com.example.usermanagementbackend.service.CourierLocationService;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Controller;
+
+@Controller
+public class LivreurLocationController {
+
+    private final CourierLocationService courierLocationService;
+
+    public LivreurLocationController(CourierLocationService courierLocationService) {
+        this.courierLocationService = courierLocationService;
+    }
+
+    // Reçoit les positions envoyées sur /app/livreur/location
+    @MessageMapping("/livreur/location")
+    public void updateLocation(@Payload LocationUpdateDTO update) {
+        courierLocationService.update(update.getLivreurId(), update.getLivraisonId(),
+                update.getLat(), update.getLng(), update.getTimestamp());
+    }
+}
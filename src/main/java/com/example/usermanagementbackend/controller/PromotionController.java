@@ -4,13 +4,17 @@ import com.example.usermanagementbackend.entity.Produit;
 import com.example.usermanagementbackend.entity.Promotion;
 import com.example.usermanagementbackend.repository.ProduitRepository;
 import com.example.usermanagementbackend.repository.PromotionRepository;
+import com.example.usermanagementbackend.service.PromotionRuleEngine;
 import com.example.usermanagementbackend.service.PromotionService;
+import com.example.usermanagementbackend.service.PromotionSuggestionBatchService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -126,12 +130,11 @@ public class PromotionController {
         if (montant <= 0) {
             return ResponseEntity.badRequest().body(montant);
         }
-        Optional<Promotion> promo = promotionService.getPromotionById(id);
-        if (promo.isPresent() && promo.get().isActive()) {
-            double nouveauMontant = promotionService.appliquerPromotion(montant, promo.get());
-            return ResponseEntity.ok(nouveauMontant);
+        Double nouveauMontant = promotionService.appliquerPromotion(montant, id);
+        if (nouveauMontant == null) {
+            return ResponseEntity.badRequest().body(montant);
         }
-        return ResponseEntity.badRequest().body(montant);
+        return ResponseEntity.ok(nouveauMontant);
     }
 
     @GetMapping("/actives")
@@ -152,21 +155,21 @@ public class PromotionController {
     }
 
     @PostMapping("/bulk-activate")
-    public ResponseEntity<Void> bulkActivate(@RequestBody List<Integer> ids) {
+    public ResponseEntity<Map<String, Integer>> bulkActivate(@RequestBody List<Integer> ids) {
         if (ids == null || ids.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
-        promotionService.bulkActivate(ids);
-        return ResponseEntity.ok().build();
+        int updated = promotionService.bulkActivate(ids);
+        return ResponseEntity.ok(Map.of("updated", updated));
     }
 
     @PostMapping("/bulk-deactivate")
-    public ResponseEntity<Void> bulkDeactivate(@RequestBody List<Integer> ids) {
+    public ResponseEntity<Map<String, Integer>> bulkDeactivate(@RequestBody List<Integer> ids) {
         if (ids == null || ids.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
-        promotionService.bulkDeactivate(ids);
-        return ResponseEntity.ok().build();
+        int updated = promotionService.bulkDeactivate(ids);
+        return ResponseEntity.ok(Map.of("updated", updated));
     }
 
     @PostMapping("/bulk-delete")
@@ -179,14 +182,23 @@ public class PromotionController {
     }
 
     @GetMapping("/analytics")
-    public ResponseEntity<Map<String, Object>> getPromotionAnalytics() {
-        Map<String, Object> analytics = promotionService.getPromotionAnalytics();
+    public ResponseEntity<Map<String, Object>> getPromotionAnalytics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        Map<String, Object> analytics = promotionService.getPromotionAnalytics(from, to);
         if (analytics.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.ok(analytics);
     }
 
+    // Recalcule les cumuls journaliers depuis l'historique détaillé
+    @PostMapping("/analytics/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildPromotionAnalytics() {
+        int rows = promotionService.rebuildPromotionAnalytics();
+        return ResponseEntity.ok(Map.of("rows", rows));
+    }
+
     @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
     public ResponseEntity<String> handleMediaTypeNotSupported(HttpMediaTypeNotSupportedException ex) {
         System.out.println("Media type not supported: " + ex.getContentType());
@@ -200,8 +212,12 @@ public class PromotionController {
     @GetMapping("/suggest-now")
     public ResponseEntity<String> suggestPromotionsNow() {
         try {
-            promotionService.suggestPromotions();
-            return ResponseEntity.ok("Suggestions générées avec succès");
+            PromotionSuggestionBatchService.Report report = promotionService.genererSuggestions();
+            if (report == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("Génération des suggestions déjà en cours");
+            }
+            return ResponseEntity.ok("Suggestions générées avec succès : " + report.creees() + " créées, "
+                    + report.misesAJour() + " mises à jour, " + report.lotsEnEchec() + " lots en échec");
         } catch (Exception e) {
             // Log the exception details
             System.err.println("Error in suggestPromotionsNow: " + e.getClass().getName());
@@ -210,5 +226,36 @@ public class PromotionController {
                     .body("Erreur lors de la génération des suggestions: " + e.toString());
         }
     }
-}
 
+    // Génération en tâche de fond, suivie via /suggestions/status
+    @PostMapping("/suggestions/run")
+    public ResponseEntity<Map<String, Object>> runSuggestions() {
+        if (!promotionService.demarrerSuggestions()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(promotionService.getSuggestionStatus());
+        }
+        return ResponseEntity.accepted().body(promotionService.getSuggestionStatus());
+    }
+
+    @GetMapping("/suggestions/status")
+    public ResponseEntity<Map<String, Object>> getSuggestionStatus() {
+        return ResponseEntity.ok(promotionService.getSuggestionStatus());
+    }
+
+    // Vérifie une condition avant de l'enregistrer sur une promotion
+    @GetMapping("/rules/validate")
+    public ResponseEntity<Map<String, Object>> validateCondition(@RequestParam String condition) {
+        Map<String, Object> result = promotionService.validerCondition(condition);
+        return Boolean.TRUE.equals(result.get("valid")) ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+    }
+
+    @PostMapping("/rules/evaluate")
+    public ResponseEntity<PromotionRuleEngine.Evaluation> evaluateRules() {
+        return ResponseEntity.ok(promotionService.evaluerRegles());
+    }
+
+    @GetMapping("/rules/status")
+    public ResponseEntity<PromotionRuleEngine.Evaluation> getRulesStatus() {
+        PromotionRuleEngine.Evaluation evaluation = promotionService.getDerniereEvaluationRegles();
+        return evaluation != null ? ResponseEntity.ok(evaluation) : ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.usermanagementbackend.dto;
+
+import java.util.List;
+
+/**
+ * Page d'une liste parcourue par curseur : {@code nextCursor} est à renvoyer tel quel
+ * pour obtenir la page suivante, null quand il n'y en a plus.
+ */
+public record CursorPage<T>(List<T> items, Long nextCursor, boolean hasMore) {
+}
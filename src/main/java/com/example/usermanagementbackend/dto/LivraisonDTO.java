@@ -25,4 +25,7 @@ public class LivraisonDTO {
     private Double currentLng;
     private Double destinationLat;
     private Double destinationLng;
+    // Tournée de dispatch (lecture seule : fixée par DispatchService)
+    private String tourneeId;
+    private Integer ordreTournee;
 }
\ No newline at end of file
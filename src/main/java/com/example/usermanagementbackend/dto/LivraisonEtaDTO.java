@@ -0,0 +1,23 @@
+package com.example.usermanagementbackend.dto;
+
+import com.example.usermanagementbackend.entity.StatusLivraison;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+public class LivraisonEtaDTO {
+    private Long livraisonId;
+    private StatusLivraison statusLivraison;
+    private LocalDateTime arriveeEstimee;
+    private double minutesRestantes;
+    // Durée totale attendue (création → LIVRE) et dispersion observée
+    private double dureeMoyenneMinutes;
+    private double ecartTypeMinutes;
+    private double dureeP90Minutes;
+    // Niveau de statistiques utilisé (GOUVERNORAT_TYPE_HEURE, GOUVERNORAT_TYPE, TYPE, GLOBAL ou DEFAUT)
+    private String niveau;
+    private long echantillons;
+}
@@ -0,0 +1,46 @@
+package com.example.usermanagementbackend.dto;
+
+import com.example.usermanagementbackend.entity.StatusLivraison;
+import com.example.usermanagementbackend.entity.TypeLivraison;
+import com.example.usermanagementbackend.service.DeliveryPhotoStore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Ligne de la liste des livraisons : uniquement les colonnes affichées, remplie directement
+ * par la requête (sans charger l'entité ni son livreur).
+ */
+@Data
+@NoArgsConstructor
+public class LivraisonListItemDTO {
+    private Long id;
+    private LocalDate dateLivraison;
+    private StatusLivraison statusLivraison;
+    private TypeLivraison typeLivraison;
+    private Long commandeId;
+    private String address;
+    private Double carbonFootprint;
+    private Long livreurId;
+    private String livreurNom;
+    private String photo;
+    private LocalDateTime createdAt;
+
+    public LivraisonListItemDTO(Long id, LocalDate dateLivraison, StatusLivraison statusLivraison,
+                                TypeLivraison typeLivraison, Long commandeId, String address, Double carbonFootprint,
+                                Long livreurId, String livreurNom, String photoRef, LocalDateTime createdAt) {
+        this.id = id;
+        this.dateLivraison = dateLivraison;
+        this.statusLivraison = statusLivraison;
+        this.typeLivraison = typeLivraison;
+        this.commandeId = commandeId;
+        this.address = address;
+        this.carbonFootprint = carbonFootprint;
+        this.livreurId = livreurId;
+        this.livreurNom = livreurNom;
+        this.photo = DeliveryPhotoStore.url(photoRef);
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.usermanagementbackend.dto;
+
+import lombok.Data;
+
+/**
+ * Position envoyée par l'application livreur sur {@code /app/livreur/location}.
+ * {@code livraisonId} est facultatif (livreur sans livraison en cours), {@code timestamp}
+ * en millisecondes epoch, l'heure du serveur est utilisée s'il est absent.
+ */
+@Data
+public class LocationUpdateDTO {
+    private Long livreurId;
+    private Long livraisonId;
+    private Double lat;
+    private Double lng;
+    private Long timestamp;
+}
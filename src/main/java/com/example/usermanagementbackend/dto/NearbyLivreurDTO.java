@@ -0,0 +1,19 @@
+package com.example.usermanagementbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyLivreurDTO {
+    private Long livreurId;
+    private String nom;
+    private String telephone;
+    private double lat;
+    private double lng;
+    private double distanceKm;
+    // Horodatage de la position (millisecondes epoch)
+    private long positionTimestamp;
+}
@@ -0,0 +1,36 @@
+package com.example.usermanagementbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "churn_risk_score", indexes = {
+        @Index(name = "idx_churn_risk_user_date", columnList = "user_id, computed_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChurnRiskScore {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "risk_score", nullable = false)
+    private double riskScore;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+
+    public ChurnRiskScore(Long userId, double riskScore, LocalDateTime computedAt) {
+        this.userId = userId;
+        this.riskScore = riskScore;
+        this.computedAt = computedAt;
+    }
+}
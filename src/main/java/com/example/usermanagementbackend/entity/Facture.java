@@ -1,11 +1,13 @@
 package com.example.usermanagementbackend.entity;
 
+import com.example.usermanagementbackend.enums.PdfStatus;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
@@ -27,6 +29,20 @@ public class Facture {
     private LocalDate dateFacture;
     private String numeroFacture;
 
+    // État du rendu PDF asynchrone (null pour les factures antérieures)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "pdf_status", length = 16)
+    private PdfStatus pdfStatus;
+
+    // Échecs consécutifs du rendu PDF et date du prochain essai automatique
+    @JsonIgnore
+    @Column(name = "pdf_attempts", nullable = false, columnDefinition = "integer default 0")
+    private int pdfAttempts;
+
+    @JsonIgnore
+    @Column(name = "pdf_retry_at")
+    private LocalDateTime pdfRetryAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonIgnoreProperties({"commandes", "factures"})
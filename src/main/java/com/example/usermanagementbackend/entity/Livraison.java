@@ -9,6 +9,14 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_livraison_status_id", columnList = "status_livraison, id"),
+        @Index(name = "idx_livraison_type_id", columnList = "type_livraison, id"),
+        @Index(name = "idx_livraison_livreur_id", columnList = "livreur_id, id"),
+        @Index(name = "idx_livraison_date_id", columnList = "date_livraison, id"),
+        @Index(name = "idx_livraison_commande", columnList = "commande_id"),
+        @Index(name = "idx_livraison_tournee", columnList = "tournee_id, ordre_tournee")
+})
 @Data
 public class Livraison {
     @Id
@@ -30,8 +38,9 @@ public class Livraison {
 
     private String address;
 
-    @Column(length = 1048576)
-    private String photo;
+    // Référence de la photo de preuve dans DeliveryPhotoStore (l'image n'est plus stockée dans la ligne)
+    @Column(name = "photo_ref", length = 80)
+    private String photoRef;
 
     @Column(length = 500)
     private String reason;
@@ -39,7 +48,22 @@ public class Livraison {
     // Carbon footprint in kg CO2
     private Double carbonFootprint;
 
+    // Facteur d'émission (kg CO2/km) utilisé pour carbonFootprint, null = ancien 0.2 fixe
+    private Double carbonEmissionFactor;
+
+    // Trajet GPS connu lors du calcul, pour pouvoir recalculer l'empreinte plus tard
+    private Double originLat;
+    private Double originLng;
+    private Double destinationLat;
+    private Double destinationLng;
+
+    // Tournée calculée par DispatchService et rang de la livraison dans cette tournée
+    @Column(length = 36)
+    private String tourneeId;
+    private Integer ordreTournee;
+
     @CreationTimestamp
+    @Column(updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
@@ -0,0 +1,41 @@
+package com.example.usermanagementbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Point du trajet d'un livreur, écrit par lots par CourierLocationService.
+ */
+@Entity
+@Table(name = "livreur_position", indexes = {
+        @Index(name = "idx_livreur_position_livreur_date", columnList = "livreur_id, recorded_at"),
+        @Index(name = "idx_livreur_position_livraison", columnList = "livraison_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class LivreurPosition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "livreur_id", nullable = false)
+    private Long livreurId;
+
+    @Column(name = "livraison_id")
+    private Long livraisonId;
+
+    @Column(nullable = false)
+    private double latitude;
+
+    @Column(nullable = false)
+    private double longitude;
+
+    @Column(name = "recorded_at", nullable = false)
+    private LocalDateTime recordedAt;
+}
@@ -0,0 +1,67 @@
+package com.example.usermanagementbackend.entity;
+
+import com.example.usermanagementbackend.enums.MailStatus;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outgoing_mail", indexes = {
+        @Index(name = "idx_outgoing_mail_status_next", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outgoing_mail_claim", columnList = "claim_token")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class OutgoingMail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    // Corps HTML déjà rendu au moment de la mise en file
+    @Column(name = "html_body", columnDefinition = "TEXT", nullable = false)
+    private String htmlBody;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private MailStatus status = MailStatus.PENDING;
+
+    private int attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    // Réservation par un dispatcher (statut SENDING) : jeton du lot et date de réservation
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    public OutgoingMail(String recipient, String subject, String htmlBody) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.htmlBody = htmlBody;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
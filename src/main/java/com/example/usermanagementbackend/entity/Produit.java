@@ -13,6 +13,9 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_produit_expiration_id", columnList = "date_expiration, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,7 +19,9 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "promotion")
+@Table(name = "promotion", indexes = {
+        @Index(name = "idx_promotion_nom", columnList = "nom")
+})
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 public class Promotion {
 
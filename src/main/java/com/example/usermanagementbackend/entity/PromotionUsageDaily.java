@@ -0,0 +1,38 @@
+package com.example.usermanagementbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Cumul journalier des utilisations d'une promotion, tenu à jour à chaque application
+ * (une ligne par promotion et par jour).
+ */
+@Entity
+@Table(name = "promotion_usage_daily", uniqueConstraints =
+        @UniqueConstraint(name = "uk_promotion_usage_daily", columnNames = {"promotion_id", "jour"}))
+@Getter
+@Setter
+@NoArgsConstructor
+public class PromotionUsageDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "promotion_id", nullable = false)
+    private Integer promotionId;
+
+    @Column(nullable = false)
+    private LocalDate jour;
+
+    @Column(name = "usage_count", nullable = false)
+    private long usageCount;
+
+    // Somme des réductions accordées (montant initial - montant après réduction)
+    @Column(name = "revenue_impact", nullable = false)
+    private double revenueImpact;
+}
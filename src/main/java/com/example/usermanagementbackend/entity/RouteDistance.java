@@ -0,0 +1,32 @@
+package com.example.usermanagementbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Distance routière mise en cache entre deux points arrondis (voir RouteDistanceService).
+ */
+@Entity
+@Table(name = "route_distance_cache")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteDistance {
+
+    // Clé "lat,lng;lat,lng" des coordonnées arrondies
+    @Id
+    @Column(name = "route_key", length = 64)
+    private String routeKey;
+
+    @Column(name = "distance_km", nullable = false)
+    private double distanceKm;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+}
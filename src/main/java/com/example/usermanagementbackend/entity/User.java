@@ -1,5 +1,6 @@
 package com.example.usermanagementbackend.entity;
 
+import com.example.usermanagementbackend.mapper.FaceDescriptorCodec;
 import com.fasterxml.jackson.annotation.*;
 import jakarta.persistence.*;
 
@@ -18,9 +19,17 @@ public class User {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Ancien format texte "[0.12, -0.33, ...]", conservé pour les lignes pas encore migrées.
+    // Accepté en entrée (inscription) mais jamais renvoyé dans les réponses JSON.
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Column(columnDefinition = "TEXT")
     private String faceDescriptor;
 
+    // Format binaire compact (voir FaceDescriptorCodec)
+    @JsonIgnore
+    @Column(name = "face_descriptor_data", columnDefinition = "VARBINARY(520)")
+    private byte[] faceDescriptorData;
+
     private String nom;
     private String prenom;
     private String email;
@@ -190,6 +199,7 @@ public class User {
         this.nombreBlocages++;
     }
 
+    // Texte historique seulement ; le format binaire se lit via decodeFaceDescriptorInto
     public String getFaceDescriptor() {
         return faceDescriptor;
     }
@@ -197,6 +207,33 @@ public class User {
         this.faceDescriptor = faceDescriptor;
     }
 
+    public byte[] getFaceDescriptorData() {
+        return faceDescriptorData;
+    }
+    public void setFaceDescriptorData(byte[] faceDescriptorData) {
+        this.faceDescriptorData = faceDescriptorData;
+    }
+
+    public boolean hasLegacyFaceDescriptor() {
+        return faceDescriptor != null;
+    }
+
+    /**
+     * Décode le descripteur (binaire, ou texte historique) dans {@code target} sans allocation.
+     * Retourne false si l'utilisateur n'a pas de descripteur.
+     */
+    public boolean decodeFaceDescriptorInto(float[] target) {
+        if (faceDescriptorData != null) {
+            FaceDescriptorCodec.decodeInto(faceDescriptorData, target, 0);
+            return true;
+        }
+        if (faceDescriptor != null) {
+            FaceDescriptorCodec.parseInto(faceDescriptor, target, 0);
+            return true;
+        }
+        return false;
+    }
+
     public String getPhoto() {
         return photo;
     }
@@ -0,0 +1,8 @@
+package com.example.usermanagementbackend.enums;
+
+public enum MailStatus {
+    PENDING, // en attente d'envoi (ou de nouvelle tentative)
+    SENDING, // réservé par un dispatcher, envoi en cours
+    SENT,
+    FAILED   // abandonné après le nombre maximal de tentatives
+}
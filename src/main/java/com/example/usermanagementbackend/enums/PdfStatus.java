@@ -0,0 +1,7 @@
+package com.example.usermanagementbackend.enums;
+
+public enum PdfStatus {
+    PENDING, // rendu demandé, pas encore terminé
+    READY,
+    FAILED
+}
@@ -0,0 +1,200 @@
+package com.example.usermanagementbackend.mapper;
+
+/**
+ * Conversion des descripteurs faciaux entre le format texte historique ("[0.12, -0.33, ...]")
+ * et le format binaire stocké dans {@code users.face_descriptor_data}.
+ *
+ * Format binaire : un octet d'en-tête indiquant l'encodage, suivi de 128 valeurs little-endian,
+ * soit en float32 (513 octets), soit en float16 (257 octets).
+ */
+public final class FaceDescriptorCodec {
+
+    public static final int DIMENSION = 128;
+
+    public enum Format {
+        FLOAT32((byte) 1, 4),
+        FLOAT16((byte) 2, 2);
+
+        private final byte tag;
+        private final int bytesPerValue;
+
+        Format(byte tag, int bytesPerValue) {
+            this.tag = tag;
+            this.bytesPerValue = bytesPerValue;
+        }
+
+        public int encodedLength() {
+            return 1 + DIMENSION * bytesPerValue;
+        }
+    }
+
+    private FaceDescriptorCodec() {
+    }
+
+    public static byte[] encode(float[] descriptor, Format format) {
+        if (descriptor == null || descriptor.length != DIMENSION) {
+            throw new IllegalArgumentException("Descripteur facial invalide");
+        }
+        byte[] out = new byte[format.encodedLength()];
+        out[0] = format.tag;
+        int pos = 1;
+        for (float value : descriptor) {
+            if (format == Format.FLOAT32) {
+                int bits = Float.floatToIntBits(value);
+                out[pos++] = (byte) bits;
+                out[pos++] = (byte) (bits >>> 8);
+                out[pos++] = (byte) (bits >>> 16);
+                out[pos++] = (byte) (bits >>> 24);
+            } else {
+                int half = toHalf(value);
+                out[pos++] = (byte) half;
+                out[pos++] = (byte) (half >>> 8);
+            }
+        }
+        return out;
+    }
+
+    /** Décode {@code data} directement dans {@code target} à partir de {@code offset}, sans allocation. */
+    public static void decodeInto(byte[] data, float[] target, int offset) {
+        if (data == null || data.length == 0) {
+            throw new IllegalArgumentException("Descripteur facial binaire vide");
+        }
+        Format format = formatOf(data);
+        if (data.length != format.encodedLength()) {
+            throw new IllegalArgumentException("Taille de descripteur facial binaire invalide : " + data.length);
+        }
+        int pos = 1;
+        if (format == Format.FLOAT32) {
+            for (int i = 0; i < DIMENSION; i++, pos += 4) {
+                int bits = (data[pos] & 0xff)
+                        | (data[pos + 1] & 0xff) << 8
+                        | (data[pos + 2] & 0xff) << 16
+                        | (data[pos + 3] & 0xff) << 24;
+                target[offset + i] = Float.intBitsToFloat(bits);
+            }
+        } else {
+            for (int i = 0; i < DIMENSION; i++, pos += 2) {
+                target[offset + i] = fromHalf((data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8);
+            }
+        }
+    }
+
+    public static float[] decode(byte[] data) {
+        float[] descriptor = new float[DIMENSION];
+        decodeInto(data, descriptor, 0);
+        return descriptor;
+    }
+
+    /** Reconstitue la représentation texte pour les clients qui lisent encore {@code faceDescriptor}. */
+    public static String toText(byte[] data) {
+        float[] descriptor = decode(data);
+        StringBuilder sb = new StringBuilder(DIMENSION * 12);
+        sb.append('[');
+        for (int i = 0; i < DIMENSION; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(descriptor[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    public static float[] parse(String descriptorStr) {
+        float[] descriptor = new float[DIMENSION];
+        parseInto(descriptorStr, descriptor, 0);
+        return descriptor;
+    }
+
+    /**
+     * Parse un descripteur au format texte "[0.12, -0.33, ...]" directement dans {@code target}
+     * à partir de {@code offset}, sans tableau intermédiaire.
+     */
+    public static void parseInto(String descriptorStr, float[] target, int offset) {
+        if (descriptorStr == null) {
+            throw new IllegalArgumentException("Format de descripteur facial invalide");
+        }
+        int length = descriptorStr.length();
+        int index = 0;
+        int pos = 0;
+        try {
+            while (pos < length) {
+                char c = descriptorStr.charAt(pos);
+                if (c == '[' || c == ']' || c == ',' || Character.isWhitespace(c)) {
+                    pos++;
+                    continue;
+                }
+                int end = pos;
+                while (end < length) {
+                    char e = descriptorStr.charAt(end);
+                    if (e == ',' || e == ']' || Character.isWhitespace(e)) {
+                        break;
+                    }
+                    end++;
+                }
+                if (index == DIMENSION) {
+                    throw new IllegalArgumentException("Format de descripteur facial invalide");
+                }
+                target[offset + index++] = Float.parseFloat(descriptorStr.substring(pos, end));
+                pos = end;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Format de descripteur facial invalide");
+        }
+        if (index != DIMENSION) {
+            throw new IllegalArgumentException("Descripteur facial invalide");
+        }
+    }
+
+    private static Format formatOf(byte[] data) {
+        for (Format format : Format.values()) {
+            if (format.tag == data[0]) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Format de descripteur facial binaire inconnu : " + data[0]);
+    }
+
+    // Conversion float32 -> float16 (IEEE 754 binary16), arrondi au plus proche
+    private static int toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7fffffff;
+        int rounded = abs + 0x1000;
+        if (rounded >= 0x47800000) {
+            if (abs >= 0x47800000) {
+                if (abs < 0x7f800000) {
+                    return sign | 0x7c00;
+                }
+                return sign | 0x7c00 | ((bits & 0x007fffff) >>> 13);
+            }
+            return sign | 0x7bff;
+        }
+        if (rounded >= 0x38800000) {
+            return sign | ((rounded - 0x38000000) >>> 13);
+        }
+        if (rounded < 0x33000000) {
+            return sign;
+        }
+        int exponent = abs >>> 23;
+        return sign | ((((abs & 0x7fffff) | 0x800000) + (0x800000 >>> (exponent - 102))) >>> (126 - exponent));
+    }
+
+    // Conversion float16 -> float32
+    private static float fromHalf(int half) {
+        int mantissa = half & 0x03ff;
+        int exponent = half & 0x7c00;
+        if (exponent == 0x7c00) {
+            exponent = 0x3fc00;
+        } else if (exponent != 0) {
+            exponent += 0x1c000;
+        } else if (mantissa != 0) {
+            exponent = 0x1c400;
+            do {
+                mantissa <<= 1;
+                exponent -= 0x400;
+            } while ((mantissa & 0x400) == 0);
+            mantissa &= 0x3ff;
+        }
+        return Float.intBitsToFloat((half & 0x8000) << 16 | (exponent | mantissa) << 13);
+    }
+}
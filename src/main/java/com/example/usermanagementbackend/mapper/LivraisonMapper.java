@@ -5,6 +5,7 @@ import com.example.usermanagementbackend.dto.LivreurDTO;
 import com.example.usermanagementbackend.entity.Livraison;
 import com.example.usermanagementbackend.entity.Livreur;
 import com.example.usermanagementbackend.entity.User;
+import com.example.usermanagementbackend.service.DeliveryPhotoStore;
 
 public class LivraisonMapper {
 
@@ -14,7 +15,6 @@ public class LivraisonMapper {
         livraison.setDateLivraison(dto.getDateLivraison());
         livraison.setStatusLivraison(dto.getStatusLivraison());
         livraison.setTypeLivraison(dto.getTypeLivraison());
-        livraison.setPhoto(dto.getPhoto());
         livraison.setReason(dto.getReason());
         livraison.setCommandeId(dto.getCommandeId());
         livraison.setAddress(dto.getAddress()); // Map address
@@ -44,13 +44,15 @@ public class LivraisonMapper {
         dto.setDateLivraison(livraison.getDateLivraison());
         dto.setStatusLivraison(livraison.getStatusLivraison());
         dto.setTypeLivraison(livraison.getTypeLivraison());
-        dto.setPhoto(livraison.getPhoto());
+        dto.setPhoto(DeliveryPhotoStore.url(livraison.getPhotoRef())); // URL de la photo, servie à part
         dto.setReason(livraison.getReason());
         dto.setCommandeId(livraison.getCommandeId());
         dto.setCreatedAt(livraison.getCreatedAt());
         dto.setUpdatedAt(livraison.getUpdatedAt());
         dto.setAddress(livraison.getAddress()); // Map address
         dto.setCarbonFootprint(livraison.getCarbonFootprint());
+        dto.setTourneeId(livraison.getTourneeId());
+        dto.setOrdreTournee(livraison.getOrdreTournee());
 
 
 
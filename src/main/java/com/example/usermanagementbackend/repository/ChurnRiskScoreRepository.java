@@ -0,0 +1,9 @@
+package com.example.usermanagementbackend.repository;
+
+import com.example.usermanagementbackend.entity.ChurnRiskScore;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChurnRiskScoreRepository extends JpaRepository<ChurnRiskScore, Long> {
+}
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +31,13 @@ public interface CommandeRepository extends JpaRepository<Commande, Long> {
     @Query("SELECT c FROM Commande c LEFT JOIN FETCH c.lignesCommande l LEFT JOIN FETCH l.produit LEFT JOIN FETCH c.user WHERE c.user.id = :userId")
     List<Commande> findByUserIdWithLignesAndProduits(@Param("userId") Long userId);
 
+    // Commandes à répartir en tournées : [id, adresse, gouvernement], sans livreur ni livraison
+    @Query("SELECT c.id, c.adresse, c.gouvernement FROM Commande c " +
+            "WHERE c.status IN :statuses AND c.livreurId IS NULL " +
+            "AND NOT EXISTS (SELECT l.id FROM Livraison l WHERE l.commandeId = c.id) " +
+            "ORDER BY c.id")
+    List<Object[]> findDispatchableOrders(@Param("statuses") Collection<OrderStatus> statuses);
+
     @Query("SELECT c FROM Commande c LEFT JOIN FETCH c.lignesCommande l LEFT JOIN FETCH l.produit LEFT JOIN FETCH c.user WHERE c.user.id = :userId AND c.status IN (:status1, :status2)")
     List<Commande> findByUserIdAndStatusInWithLignesAndProduits(@Param("userId") Long userId,
                                                                 @Param("status1") OrderStatus status1,
@@ -1,11 +1,16 @@
 package com.example.usermanagementbackend.repository;
 
 import com.example.usermanagementbackend.entity.Facture;
+import com.example.usermanagementbackend.enums.PdfStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -19,4 +24,37 @@ public interface FactureRepository extends JpaRepository<Facture, Long> {
             "LEFT JOIN FETCH lf.produit p " +
             "WHERE t.id = :transactionId")
     List<Facture> findByTransactionId(@Param("transactionId") Long transactionId);
-}
\ No newline at end of file
+
+    // Ids des factures à exporter, filtres optionnels (null = pas de filtre)
+    @Query("SELECT f.id FROM Facture f " +
+            "WHERE (:from IS NULL OR f.dateFacture >= :from) " +
+            "AND (:to IS NULL OR f.dateFacture <= :to) " +
+            "AND (:userId IS NULL OR f.user.id = :userId) " +
+            "ORDER BY f.id")
+    List<Long> findIdsForExport(@Param("from") LocalDate from, @Param("to") LocalDate to, @Param("userId") Long userId);
+
+    @Query("SELECT f.id FROM Facture f WHERE f.pdfStatus = :status")
+    List<Long> findIdsByPdfStatus(@Param("status") PdfStatus status);
+
+    // Rendus en échec à retenter : plafond de tentatives non atteint et attente écoulée
+    @Query("SELECT f.id FROM Facture f WHERE f.pdfStatus = :status AND f.pdfAttempts < :maxAttempts "
+            + "AND (f.pdfRetryAt IS NULL OR f.pdfRetryAt <= :now)")
+    List<Long> findIdsToRetry(@Param("status") PdfStatus status, @Param("maxAttempts") int maxAttempts,
+                              @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Facture f SET f.pdfStatus = :status WHERE f.id = :id")
+    int updatePdfStatus(@Param("id") Long id, @Param("status") PdfStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Facture f SET f.pdfStatus = :status, f.pdfAttempts = 0, f.pdfRetryAt = NULL WHERE f.id = :id")
+    int markPdfRendered(@Param("id") Long id, @Param("status") PdfStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Facture f SET f.pdfStatus = :status, f.pdfAttempts = f.pdfAttempts + 1, f.pdfRetryAt = :retryAt "
+            + "WHERE f.id = :id")
+    int markPdfFailed(@Param("id") Long id, @Param("status") PdfStatus status, @Param("retryAt") LocalDateTime retryAt);
+}
@@ -1,13 +1,45 @@
 package com.example.usermanagementbackend.repository;
 
+import com.example.usermanagementbackend.dto.LivraisonListItemDTO;
 import com.example.usermanagementbackend.entity.Livraison;
+import com.example.usermanagementbackend.entity.StatusLivraison;
+import com.example.usermanagementbackend.entity.TypeLivraison;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 
 public interface LivraisonRepository extends JpaRepository<Livraison, Long> {
 
+    // Arrêts d'une tournée de dispatch, dans l'ordre de passage
+    List<Livraison> findByTourneeIdOrderByOrdreTourneeAsc(String tourneeId);
 
-}
\ No newline at end of file
+    // Liste paginée par curseur (id décroissant), filtres optionnels (null = pas de filtre)
+    @Query("SELECT new com.example.usermanagementbackend.dto.LivraisonListItemDTO(" +
+            "l.id, l.dateLivraison, l.statusLivraison, l.typeLivraison, l.commandeId, l.address, " +
+            "l.carbonFootprint, lv.id, lv.nom, l.photoRef, l.createdAt) " +
+            "FROM Livraison l LEFT JOIN l.livreur lv " +
+            "WHERE (:cursor IS NULL OR l.id < :cursor) " +
+            "AND (:status IS NULL OR l.statusLivraison = :status) " +
+            "AND (:type IS NULL OR l.typeLivraison = :type) " +
+            "AND (:livreurId IS NULL OR lv.id = :livreurId) " +
+            "AND (:from IS NULL OR l.dateLivraison >= :from) " +
+            "AND (:to IS NULL OR l.dateLivraison <= :to) " +
+            "ORDER BY l.id DESC")
+    List<LivraisonListItemDTO> findListItems(@Param("cursor") Long cursor,
+                                             @Param("status") StatusLivraison status,
+                                             @Param("type") TypeLivraison type,
+                                             @Param("livreurId") Long livreurId,
+                                             @Param("from") LocalDate from,
+                                             @Param("to") LocalDate to,
+                                             Pageable pageable);
+
+    // [livreurId, nombre de livraisons] pour les statuts donnés
+    @Query("SELECT l.livreur.id, COUNT(l) FROM Livraison l WHERE l.statusLivraison IN :statuses GROUP BY l.livreur.id")
+    List<Object[]> countByLivreurAndStatusIn(@Param("statuses") Collection<StatusLivraison> statuses);
+}
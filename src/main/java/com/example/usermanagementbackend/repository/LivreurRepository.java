@@ -2,11 +2,16 @@ package com.example.usermanagementbackend.repository;
 
 import com.example.usermanagementbackend.entity.Livreur;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LivreurRepository extends JpaRepository<Livreur, Long> {
     Optional<Livreur> findByUserId(Long userId);
+
+    @Query("SELECT l.id FROM Livreur l ORDER BY l.id")
+    List<Long> findAllIds();
 }
@@ -0,0 +1,39 @@
+package com.example.usermanagementbackend.repository;
+
+import com.example.usermanagementbackend.entity.OutgoingMail;
+import com.example.usermanagementbackend.enums.MailStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutgoingMailRepository extends JpaRepository<OutgoingMail, Long> {
+
+    @Query("SELECT m.id FROM OutgoingMail m WHERE m.status = :status AND m.nextAttemptAt <= :now ORDER BY m.id")
+    List<Long> findDueIds(@Param("status") MailStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    // Réservation atomique : une ligne déjà prise par un autre dispatcher n'est plus dans le statut attendu
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingMail m SET m.status = :claimed, m.claimToken = :token, m.claimedAt = :now "
+            + "WHERE m.id IN :ids AND m.status = :expected")
+    int claim(@Param("ids") List<Long> ids, @Param("expected") MailStatus expected, @Param("claimed") MailStatus claimed,
+              @Param("token") String token, @Param("now") LocalDateTime now);
+
+    List<OutgoingMail> findByClaimTokenOrderByIdAsc(String claimToken);
+
+    // Réservations abandonnées (dispatcher arrêté pendant l'envoi) : remises en attente
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingMail m SET m.status = :pending, m.claimToken = NULL "
+            + "WHERE m.status = :claimed AND m.claimedAt < :before")
+    int releaseStaleClaims(@Param("claimed") MailStatus claimed, @Param("pending") MailStatus pending,
+                           @Param("before") LocalDateTime before);
+}
@@ -2,7 +2,13 @@ package com.example.usermanagementbackend.repository;
 
 import com.example.usermanagementbackend.entity.Promotion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +17,26 @@ public interface PromotionRepository extends JpaRepository<Promotion, Integer> {
     Optional<Promotion> findByNom(String nom);
     Optional<Promotion> findByConditionPromotionAndActiveTrue(String condition);
     List<Promotion> findByConditionPromotionInAndActiveTrue(List<String> conditionPromotions);
+
+    // [id, nom, pourcentage, condition, début, fin, id produit] des promotions actives, une ligne par produit lié (id produit null si aucun)
+    @Query("SELECT p.id, p.nom, p.pourcentageReduction, p.conditionPromotion, p.dateDebut, p.dateFin, pr.id " +
+            "FROM Promotion p LEFT JOIN p.produits pr WHERE p.active = true")
+    List<Object[]> findActivePromotionProducts();
+
+    // Mises à jour ensemblistes : une requête UPDATE, retourne le nombre de promotions modifiées
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Promotion p SET p.active = false WHERE p.active = true AND p.dateFin < :now")
+    int deactivateExpired(@Param("now") Date now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Promotion p SET p.active = :active WHERE p.id IN :ids AND p.active <> :active")
+    int updateActive(@Param("ids") Collection<Integer> ids, @Param("active") boolean active);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Promotion p SET p.active = false WHERE p.nom = :nom AND p.active = true")
+    int deactivateByNom(@Param("nom") String nom);
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.example.usermanagementbackend.repository;
+
+import com.example.usermanagementbackend.entity.PromotionUsageDaily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+public interface PromotionUsageDailyRepository extends JpaRepository<PromotionUsageDaily, Long> {
+
+    // Upsert atomique : pas de lecture préalable, pas de mise à jour perdue entre deux applications simultanées.
+    // Le jour est DATE(date_application) calculé par la base, comme dans rebuildFromUsages
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO promotion_usage_daily (promotion_id, jour, usage_count, revenue_impact) " +
+            "VALUES (:promotionId, DATE(:dateApplication), 1, :impact) " +
+            "ON DUPLICATE KEY UPDATE usage_count = usage_count + 1, revenue_impact = revenue_impact + :impact",
+            nativeQuery = true)
+    int increment(@Param("promotionId") Integer promotionId, @Param("dateApplication") Date dateApplication,
+                  @Param("impact") double impact);
+
+    // Reconstruit les cumuls depuis l'historique détaillé (une seule requête d'agrégat)
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO promotion_usage_daily (promotion_id, jour, usage_count, revenue_impact) " +
+            "SELECT u.promotion_id, DATE(u.date_application), COUNT(*), SUM(u.montant_initial - u.montant_apres_reduction) " +
+            "FROM promotion_usage u WHERE u.promotion_id IS NOT NULL AND u.date_application IS NOT NULL " +
+            "GROUP BY u.promotion_id, DATE(u.date_application)",
+            nativeQuery = true)
+    int rebuildFromUsages();
+
+    // [id, nom, utilisations, impact] des promotions actives ou utilisées sur la période
+    @Query("SELECT p.id, p.nom, COALESCE(SUM(d.usageCount), 0), COALESCE(SUM(d.revenueImpact), 0) " +
+            "FROM Promotion p LEFT JOIN PromotionUsageDaily d ON d.promotionId = p.id " +
+            "AND (:from IS NULL OR d.jour >= :from) AND (:to IS NULL OR d.jour <= :to) " +
+            "GROUP BY p.id, p.nom, p.active " +
+            "HAVING p.active = true OR COUNT(d.id) > 0 " +
+            "ORDER BY p.id")
+    List<Object[]> aggregateByPromotion(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
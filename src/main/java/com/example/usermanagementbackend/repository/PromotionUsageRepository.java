@@ -3,6 +3,12 @@ package com.example.usermanagementbackend.repository;
 
 import com.example.usermanagementbackend.entity.PromotionUsage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface PromotionUsageRepository extends JpaRepository<PromotionUsage, Integer> {
+
+    // Verrou partagé sur toutes les lignes et tous les intervalles (REPEATABLE READ) : les insertions
+    // attendent la fin de la transaction appelante
+    @Query(value = "SELECT COUNT(*) FROM promotion_usage LOCK IN SHARE MODE", nativeQuery = true)
+    long lockAllInShareMode();
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.usermanagementbackend.repository;
+
+import com.example.usermanagementbackend.entity.RouteDistance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RouteDistanceRepository extends JpaRepository<RouteDistance, String> {
+}
@@ -1,7 +1,11 @@
 package com.example.usermanagementbackend.repository;
 
 import com.example.usermanagementbackend.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -16,4 +20,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
     long countByRole(String role);
 
     List<User> findByNomContainingIgnoreCaseOrPrenomContainingIgnoreCaseOrEmailContainingIgnoreCase(String nom, String prenom, String email);
+
+    // Pagination par clé sur l'id pour les traitements par lots
+    List<User> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable);
+
+    // Charge uniquement l'id et le descripteur facial pour construire l'index en mémoire
+    @Query("SELECT u.id, u.faceDescriptor, u.faceDescriptorData FROM User u " +
+            "WHERE u.faceDescriptor IS NOT NULL OR u.faceDescriptorData IS NOT NULL")
+    List<Object[]> findAllFaceDescriptors();
+
+    // Descripteurs encore au format texte, par pages ordonnées sur l'id
+    @Query("SELECT u.id, u.faceDescriptor FROM User u WHERE u.faceDescriptor IS NOT NULL AND u.id > :lastId ORDER BY u.id")
+    List<Object[]> findTextFaceDescriptorsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE User u SET u.faceDescriptorData = :data, u.faceDescriptor = NULL WHERE u.id = :id")
+    int convertFaceDescriptor(@Param("id") Long id, @Param("data") byte[] data);
 }
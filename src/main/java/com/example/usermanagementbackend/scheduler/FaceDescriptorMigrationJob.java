@@ -0,0 +1,89 @@
+package com.example.usermanagementbackend.scheduler;
+
+import com.example.usermanagementbackend.mapper.FaceDescriptorCodec;
+import com.example.usermanagementbackend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Convertit les descripteurs faciaux encore stockés en texte vers le format binaire compact.
+ * Traite les utilisateurs par lots ordonnés sur l'id, chaque lot dans sa propre transaction.
+ */
+@Service
+public class FaceDescriptorMigrationJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(FaceDescriptorMigrationJob.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${face.descriptor.format:FLOAT16}")
+    private FaceDescriptorCodec.Format format;
+
+    @Value("${face.descriptor.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${face.descriptor.migration.batch-size:500}")
+    private int batchSize;
+
+    public FaceDescriptorMigrationJob(UserRepository userRepository, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrerAuDemarrage() {
+        if (enabled) {
+            migrerDescripteurs();
+        }
+    }
+
+    public int migrerDescripteurs() {
+        int converted = 0;
+        int skipped = 0;
+        Long lastId = 0L;
+
+        while (true) {
+            List<Object[]> rows = userRepository.findTextFaceDescriptorsAfter(lastId, PageRequest.of(0, batchSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            int[] counts = transactionTemplate.execute(status -> {
+                int ok = 0;
+                int ko = 0;
+                for (Object[] row : rows) {
+                    Long userId = (Long) row[0];
+                    try {
+                        float[] descriptor = FaceDescriptorCodec.parse((String) row[1]);
+                        userRepository.convertFaceDescriptor(userId, FaceDescriptorCodec.encode(descriptor, format));
+                        ok++;
+                    } catch (IllegalArgumentException e) {
+                        logger.warn("Descripteur facial non migré pour l'utilisateur {} : {}", userId, e.getMessage());
+                        ko++;
+                    }
+                }
+                return new int[]{ok, ko};
+            });
+            converted += counts[0];
+            skipped += counts[1];
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+
+        if (converted > 0 || skipped > 0) {
+            logger.info("Migration des descripteurs faciaux : {} convertis, {} ignorés", converted, skipped);
+        }
+        return converted;
+    }
+}
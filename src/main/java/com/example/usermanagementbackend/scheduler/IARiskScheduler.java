@@ -1,46 +1,50 @@
 package com.example.usermanagementbackend.scheduler;
 
-import com.example.usermanagementbackend.entity.User;
+import com.example.usermanagementbackend.entity.ChurnRiskScore;
+import com.example.usermanagementbackend.repository.ChurnRiskScoreRepository;
+import com.example.usermanagementbackend.service.ChurnModelClient;
 import com.example.usermanagementbackend.service.UserService;
-import org.springframework.http.ResponseEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.HashMap;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 @Service
 public class IARiskScheduler {
 
+    private static final Logger logger = LoggerFactory.getLogger(IARiskScheduler.class);
+
     private final UserService userService;
+    private final ChurnModelClient churnModelClient;
+    private final ChurnRiskScoreRepository churnRiskScoreRepository;
 
-    public IARiskScheduler(UserService userService) {
+    public IARiskScheduler(UserService userService, ChurnModelClient churnModelClient,
+                           ChurnRiskScoreRepository churnRiskScoreRepository) {
         this.userService = userService;
+        this.churnModelClient = churnModelClient;
+        this.churnRiskScoreRepository = churnRiskScoreRepository;
     }
 
     @Scheduled(cron = "0 0 0 * * *")
     public void evaluerRisqueDesactivation() {
-        List<User> users = userService.getAllUsers();
-
-        for (User user : users) {
-            try {
-                Map<String, Object> data = new HashMap<>();
-                data.put("last_login", user.getDerniereConnexion().toString());
-                data.put("login_count", user.getNombreConnexions());
-                data.put("actions_count", user.getActionsEffectuees());
-                data.put("is_blocked", user.isBlocked());
-                data.put("is_verified", user.isVerified());
-
-                RestTemplate restTemplate = new RestTemplate();
-                ResponseEntity<Map> response = restTemplate.postForEntity("http://localhost:8000/predict", data, Map.class);
-
-                Object score = response.getBody().get("risk_score");
-                System.out.println("🔮 IA → " + user.getEmail() + " = " + score + "%");
-            } catch (Exception e) {
-                System.err.println("❌ Erreur IA pour " + user.getEmail() + " : " + e.getMessage());
-            }
-        }
+        long debut = System.currentTimeMillis();
+        long[] scores = {0};
+
+        long total = userService.processUsersInChunks(users -> {
+            Map<Long, Double> resultats = churnModelClient.scoreUsers(users);
+            LocalDateTime maintenant = LocalDateTime.now();
+            List<ChurnRiskScore> lignes = new ArrayList<>(resultats.size());
+            resultats.forEach((userId, score) -> lignes.add(new ChurnRiskScore(userId, score, maintenant)));
+            churnRiskScoreRepository.saveAll(lignes);
+            scores[0] += lignes.size();
+        });
+
+        logger.info("🔮 Risque IA : {} utilisateurs évalués sur {} en {} ms",
+                scores[0], total, System.currentTimeMillis() - debut);
     }
 }
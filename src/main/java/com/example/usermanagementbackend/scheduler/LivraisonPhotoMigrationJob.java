@@ -0,0 +1,103 @@
+package com.example.usermanagementbackend.scheduler;
+
+import com.example.usermanagementbackend.service.DeliveryPhotoStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Déplace les photos de livraison encore stockées en base64 dans la colonne {@code photo}
+ * vers {@link DeliveryPhotoStore}, puis vide la colonne. L'entité ne mappe plus cette colonne,
+ * d'où l'accès en JDBC. Traitement par petits lots (une photo peut peser 1 Mo), chacun dans sa
+ * propre transaction.
+ */
+@Service
+public class LivraisonPhotoMigrationJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(LivraisonPhotoMigrationJob.class);
+
+    private static final String SELECT_BATCH =
+            "SELECT id, photo FROM livraison WHERE photo IS NOT NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_ROW = "UPDATE livraison SET photo_ref = ?, photo = NULL WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeliveryPhotoStore deliveryPhotoStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${livraison.photo.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livraison.photo.migration.batch-size:50}")
+    private int batchSize;
+
+    public LivraisonPhotoMigrationJob(JdbcTemplate jdbcTemplate, DeliveryPhotoStore deliveryPhotoStore,
+                                      PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryPhotoStore = deliveryPhotoStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrerAuDemarrage() {
+        if (enabled) {
+            migrerPhotos();
+        }
+    }
+
+    public int migrerPhotos() {
+        int migrated = 0;
+        int invalid = 0;
+        long lastId = 0;
+
+        while (true) {
+            List<Map<String, Object>> rows;
+            try {
+                rows = jdbcTemplate.queryForList(SELECT_BATCH, lastId, batchSize);
+            } catch (DataAccessException e) {
+                // Base créée après le passage au stockage externe : pas de colonne photo
+                logger.debug("Pas de photos de livraison à migrer : {}", e.getMessage());
+                return migrated;
+            }
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            // Écriture des fichiers hors transaction, puis mise à jour du lot
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                Long id = ((Number) row.get("id")).longValue();
+                try {
+                    updates.add(new Object[]{deliveryPhotoStore.storeBase64((String) row.get("photo")), id});
+                } catch (IllegalArgumentException e) {
+                    // Laissée en place pour examen manuel
+                    logger.warn("Photo de la livraison {} illisible, non migrée : {}", id, e.getMessage());
+                    invalid++;
+                }
+            }
+            if (!updates.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_ROW, updates));
+            }
+            migrated += updates.size();
+            lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+
+        if (migrated > 0 || invalid > 0) {
+            logger.info("Migration des photos de livraison : {} déplacées, {} illisibles", migrated, invalid);
+        }
+        return migrated;
+    }
+}
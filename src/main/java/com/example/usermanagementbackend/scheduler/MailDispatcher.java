@@ -0,0 +1,164 @@
+package com.example.usermanagementbackend.scheduler;
+
+import com.example.usermanagementbackend.entity.OutgoingMail;
+import com.example.usermanagementbackend.enums.MailStatus;
+import com.example.usermanagementbackend.repository.OutgoingMailRepository;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Envoie les emails en attente de la table outgoing_mail.
+ *
+ * Chaque lot est passé en une fois à {@link JavaMailSender#send(MimeMessage...)}, qui réutilise
+ * une seule connexion SMTP pour tout le lot. Un email en échec est replanifié avec une attente
+ * exponentielle, puis marqué FAILED après {@code mail.outbox.max-attempts} tentatives.
+ *
+ * Avant l'envoi, les lignes du lot sont réservées (statut SENDING) par un UPDATE conditionnel :
+ * plusieurs instances peuvent tourner sans envoyer deux fois le même email. Une réservation
+ * plus ancienne que {@code mail.outbox.claim-timeout-seconds} est remise en attente.
+ */
+@Service
+public class MailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailDispatcher.class);
+
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+    private final OutgoingMailRepository outgoingMailRepository;
+    private final JavaMailSender mailSender;
+
+    @Value("${mail.outbox.from:noreply@agriconnect.com}")
+    private String from;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry-base-seconds:30}")
+    private long retryBaseSeconds;
+
+    @Value("${mail.outbox.claim-timeout-seconds:600}")
+    private long claimTimeoutSeconds;
+
+    public MailDispatcher(OutgoingMailRepository outgoingMailRepository, JavaMailSender mailSender) {
+        this.outgoingMailRepository = outgoingMailRepository;
+        this.mailSender = mailSender;
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-ms:2000}")
+    public void dispatch() {
+        int released = outgoingMailRepository.releaseStaleClaims(MailStatus.SENDING, MailStatus.PENDING,
+                LocalDateTime.now().minusSeconds(claimTimeoutSeconds));
+        if (released > 0) {
+            logger.warn("{} email(s) réservé(s) depuis plus de {} s remis en attente", released, claimTimeoutSeconds);
+        }
+
+        List<Long> due;
+        do {
+            due = outgoingMailRepository.findDueIds(MailStatus.PENDING, LocalDateTime.now(), PageRequest.of(0, batchSize));
+            if (due.isEmpty()) {
+                return;
+            }
+            List<OutgoingMail> batch = claim(due);
+            if (!batch.isEmpty()) {
+                sendBatch(batch);
+                outgoingMailRepository.saveAll(batch);
+            }
+        } while (due.size() == batchSize);
+    }
+
+    // Réserve les lignes encore en attente ; celles prises entre-temps par une autre instance sont ignorées
+    private List<OutgoingMail> claim(List<Long> ids) {
+        String token = UUID.randomUUID().toString();
+        int claimed = outgoingMailRepository.claim(ids, MailStatus.PENDING, MailStatus.SENDING, token, LocalDateTime.now());
+        return claimed > 0 ? outgoingMailRepository.findByClaimTokenOrderByIdAsc(token) : List.of();
+    }
+
+    private void sendBatch(List<OutgoingMail> batch) {
+        Map<MimeMessage, OutgoingMail> messages = new IdentityHashMap<>();
+        for (OutgoingMail mail : batch) {
+            try {
+                messages.put(toMimeMessage(mail), mail);
+            } catch (MessagingException e) {
+                planifierNouvelEssai(mail, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+        } catch (MailException e) {
+            // Échec global (connexion, authentification) : tout le lot est replanifié
+            logger.warn("Échec d'envoi du lot de {} emails : {}", messages.size(), e.getMessage());
+            messages.values().forEach(mail -> planifierNouvelEssai(mail, e));
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<MimeMessage, OutgoingMail> entry : messages.entrySet()) {
+            OutgoingMail mail = entry.getValue();
+            Exception failure = failures.get(entry.getKey());
+            if (failure != null) {
+                planifierNouvelEssai(mail, failure);
+            } else {
+                mail.setAttempts(mail.getAttempts() + 1);
+                mail.setStatus(MailStatus.SENT);
+                mail.setSentAt(now);
+                mail.setLastError(null);
+                // Le corps contient des codes à usage unique, inutile de le conserver
+                mail.setHtmlBody("");
+            }
+        }
+        if (!failures.isEmpty()) {
+            logger.warn("{} email(s) sur {} non envoyés, nouvelle tentative planifiée", failures.size(), messages.size());
+        }
+    }
+
+    private MimeMessage toMimeMessage(OutgoingMail mail) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
+        helper.setTo(mail.getRecipient());
+        helper.setSubject(mail.getSubject());
+        helper.setText(mail.getHtmlBody(), true);
+        helper.setFrom(from);
+        return message;
+    }
+
+    private void planifierNouvelEssai(OutgoingMail mail, Exception cause) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        String error = String.valueOf(cause.getMessage());
+        mail.setLastError(error.length() > 500 ? error.substring(0, 500) : error);
+        if (attempts >= maxAttempts) {
+            mail.setStatus(MailStatus.FAILED);
+            logger.error("Email {} vers {} abandonné après {} tentatives : {}", mail.getId(), mail.getRecipient(), attempts, error);
+            return;
+        }
+        long delay = Math.min(MAX_RETRY_DELAY_SECONDS, retryBaseSeconds << Math.min(attempts - 1, 20));
+        mail.setStatus(MailStatus.PENDING);
+        mail.setNextAttemptAt(LocalDateTime.now().plusSeconds(delay));
+    }
+}
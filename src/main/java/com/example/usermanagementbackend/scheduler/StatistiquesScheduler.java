@@ -6,7 +6,6 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Service
 public class StatistiquesScheduler {
@@ -19,23 +18,29 @@ public class StatistiquesScheduler {
 
     @Scheduled(cron = "0 0 23 ? * SUN")
     public void calculerStatsHebdo() {
-        List<User> users = userService.getAllUsers();
-
-        long nouveauxUtilisateurs = users.stream()
-                .filter(u -> u.getDerniereConnexion() != null &&
-                        u.getDerniereConnexion().isAfter(LocalDateTime.now().minusDays(7)))
-                .count();
-
-        long comptesBloques = users.stream().filter(User::isBlocked).count();
-
-        double actionsMoyennes = users.stream()
-                .mapToInt(User::getActionsEffectuees)
-                .average()
-                .orElse(0);
+        LocalDateTime ilYaUneSemaine = LocalDateTime.now().minusDays(7);
+        // Accumulateurs mis à jour lot par lot, sans garder les utilisateurs en mémoire
+        long[] nouveauxUtilisateurs = {0};
+        long[] comptesBloques = {0};
+        long[] totalActions = {0};
+
+        long totalUtilisateurs = userService.processUsersInChunks(users -> {
+            for (User u : users) {
+                if (u.getDerniereConnexion() != null && u.getDerniereConnexion().isAfter(ilYaUneSemaine)) {
+                    nouveauxUtilisateurs[0]++;
+                }
+                if (u.isBlocked()) {
+                    comptesBloques[0]++;
+                }
+                totalActions[0] += u.getActionsEffectuees();
+            }
+        });
+
+        double actionsMoyennes = totalUtilisateurs == 0 ? 0 : (double) totalActions[0] / totalUtilisateurs;
 
         System.out.println("📊 [Statistiques Hebdo]");
-        System.out.println("Nouveaux utilisateurs : " + nouveauxUtilisateurs);
-        System.out.println("Comptes bloqués : " + comptesBloques);
+        System.out.println("Nouveaux utilisateurs : " + nouveauxUtilisateurs[0]);
+        System.out.println("Comptes bloqués : " + comptesBloques[0]);
         System.out.println("Actions moyennes : " + actionsMoyennes);
     }
 }
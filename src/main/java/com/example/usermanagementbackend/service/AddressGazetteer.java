@@ -0,0 +1,201 @@
+package com.example.usermanagementbackend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estimation déterministe de la distance de livraison à partir d'une adresse texte.
+ *
+ * Le référentiel {@code geo/tunisie-localites.csv} (gouvernorats et délégations avec le
+ * centre approximatif) est chargé une fois dans un index par nom normalisé (minuscules, sans
+ * accents). Une adresse est découpée en mots et l'on cherche, de gauche à droite, le plus long
+ * groupe de 1 à 3 mots connu. La distance est celle à vol d'oiseau depuis le dépôt, corrigée
+ * d'un facteur de détour routier. Même adresse, même résultat : l'estimation peut être mise en cache.
+ */
+@Service
+public class AddressGazetteer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AddressGazetteer.class);
+
+    private static final String RESOURCE = "geo/tunisie-localites.csv";
+    private static final int MAX_NGRAM = 3;
+
+    public record Place(String name, String gouvernorat, boolean delegation, double lat, double lng) {
+    }
+
+    private final Map<String, Place> index = new HashMap<>(512);
+    private final Map<String, Place> gouvernorats = new HashMap<>(64);
+    private final double depotLat;
+    private final double depotLng;
+    private final double roadFactor;
+    private final double minKm;
+    private final double defaultKm;
+
+    public AddressGazetteer(@Value("${delivery.depot.lat:36.8065}") double depotLat,
+                            @Value("${delivery.depot.lng:10.1815}") double depotLng,
+                            @Value("${delivery.estimate.road-factor:1.3}") double roadFactor,
+                            @Value("${delivery.estimate.min-km:3.0}") double minKm,
+                            @Value("${delivery.estimate.default-km:16.5}") double defaultKm) {
+        this.depotLat = depotLat;
+        this.depotLng = depotLng;
+        this.roadFactor = roadFactor;
+        this.minKm = minKm;
+        this.defaultKm = defaultKm;
+        load();
+        for (String gouvernorat : CommandeService.TUNISIAN_GOVERNORATES) {
+            if (!gouvernorats.containsKey(normalize(gouvernorat))) {
+                logger.warn("Gouvernorat {} absent du référentiel {}", gouvernorat, RESOURCE);
+            }
+        }
+    }
+
+    /**
+     * Distance routière estimée (km) entre le dépôt et l'adresse. Le gouvernorat de la commande,
+     * s'il est connu, sert à départager les homonymes et de repli quand l'adresse n'est pas reconnue.
+     */
+    public double estimateDistanceKm(String address, String gouvernorat) {
+        Place place = resolve(address, gouvernorat);
+        if (place == null) {
+            return defaultKm;
+        }
+        double km = RouteDistanceService.haversineKm(depotLat, depotLng, place.lat(), place.lng()) * roadFactor;
+        return Math.max(minKm, km);
+    }
+
+    /** Localité la plus précise reconnue dans l'adresse, ou null. */
+    public Place resolve(String address, String gouvernorat) {
+        Place hint = gouvernorat != null ? gouvernorats.get(normalize(gouvernorat)) : null;
+        if (address == null || address.isBlank()) {
+            return hint;
+        }
+
+        String[] tokens = normalize(address).split(" ");
+        Place lastGouvernorat = null;
+        Place lastDelegation = null;
+        StringBuilder key = new StringBuilder(32);
+        int i = 0;
+        while (i < tokens.length) {
+            Place found = null;
+            int length = Math.min(MAX_NGRAM, tokens.length - i);
+            for (; length > 0; length--) {
+                key.setLength(0);
+                for (int j = i; j < i + length; j++) {
+                    if (j > i) {
+                        key.append(' ');
+                    }
+                    key.append(tokens[j]);
+                }
+                found = index.get(key.toString());
+                if (found != null) {
+                    break;
+                }
+            }
+            if (found == null) {
+                i++;
+                continue;
+            }
+            if (found.delegation()) {
+                lastDelegation = found;
+            } else {
+                lastGouvernorat = found;
+            }
+            i += length;
+        }
+
+        // "Rue de Sfax, Ariana" : le gouvernorat cité en dernier (ou celui de la commande) fait foi,
+        // une délégation n'est retenue que si elle lui appartient
+        Place reference = lastGouvernorat != null ? lastGouvernorat : hint;
+        if (reference == null) {
+            return lastDelegation;
+        }
+        if (lastDelegation != null && lastDelegation.gouvernorat().equals(reference.gouvernorat())) {
+            return lastDelegation;
+        }
+        return reference;
+    }
+
+    public double getDepotLat() {
+        return depotLat;
+    }
+
+    public double getDepotLng() {
+        return depotLng;
+    }
+
+    public double getRoadFactor() {
+        return roadFactor;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private void load() {
+        ClassPathResource resource = new ClassPathResource(RESOURCE);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(";");
+                if (fields.length != 5) {
+                    logger.warn("Ligne ignorée dans {} : {}", RESOURCE, line);
+                    continue;
+                }
+                String[] names = fields[1].split("\\|");
+                Place place = new Place(names[0], normalize(fields[2]), "D".equals(fields[0]),
+                        Double.parseDouble(fields[3]), Double.parseDouble(fields[4]));
+                for (String name : names) {
+                    Place previous = index.putIfAbsent(normalize(name), place);
+                    if (previous != null) {
+                        logger.warn("Nom en double dans {} : {}", RESOURCE, name);
+                    }
+                }
+                if (!place.delegation()) {
+                    gouvernorats.put(place.gouvernorat(), place);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible de charger " + RESOURCE, e);
+        }
+        logger.info("Référentiel géographique chargé : {} noms", index.size());
+    }
+
+    // Minuscules, accents retirés, tout ce qui n'est ni lettre ni chiffre devient un espace unique
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') {
+            sb.setLength(end - 1);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.usermanagementbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recalcul en masse de {@code Livraison.carbonFootprint}, par exemple après un changement de
+ * {@code carbon.emission-factor}.
+ *
+ * Les livraisons sont lues par lots ordonnés sur l'id. Pour chaque lot, les distances routières
+ * sont demandées à {@link RouteDistanceService} sans bloquer de thread (cache par quartier, donc
+ * les trajets proches ne coûtent qu'un appel), avec au plus {@code carbon.batch.route-parallelism}
+ * requêtes en vol pour ne pas saturer OSRM ; la distance à vol d'oiseau sert de repli. Les
+ * livraisons sans trajet GPS connu sont simplement remises à l'échelle du nouveau facteur. Chaque lot est écrit par un batch JDBC dans sa propre
+ * transaction courte : la table n'est jamais verrouillée au-delà d'un lot.
+ */
+@Service
+public class CarbonFootprintBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CarbonFootprintBatchService.class);
+
+    // Facteur appliqué avant l'introduction de carbon_emission_factor
+    private static final double LEGACY_EMISSION_FACTOR = 0.2;
+
+    private static final String SELECT_COLUMNS = "SELECT id, origin_lat, origin_lng, destination_lat, destination_lng, "
+            + "carbon_footprint, carbon_emission_factor FROM livraison ";
+    private static final String SELECT_AFTER = SELECT_COLUMNS + "WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_IDS = SELECT_COLUMNS + "WHERE id IN (:ids) ORDER BY id";
+    private static final String UPDATE_FOOTPRINT =
+            "UPDATE livraison SET carbon_footprint = ?, carbon_emission_factor = ? WHERE id = ?";
+
+    public record Report(long processed, long updated, long routed, long haversine, long rescaled,
+                         long skipped, long durationMs) {
+    }
+
+    private record Row(long id, Double originLat, Double originLng, Double destinationLat, Double destinationLng,
+                       Double carbonFootprint, Double emissionFactor) {
+
+        boolean hasRoute() {
+            return originLat != null && originLng != null && destinationLat != null && destinationLng != null;
+        }
+    }
+
+    private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> new Row(
+            rs.getLong("id"),
+            nullableDouble(rs, "origin_lat"), nullableDouble(rs, "origin_lng"),
+            nullableDouble(rs, "destination_lat"), nullableDouble(rs, "destination_lng"),
+            nullableDouble(rs, "carbon_footprint"), nullableDouble(rs, "carbon_emission_factor"));
+
+    // Compteurs d'une exécution, mis à jour aussi par les threads du client HTTP
+    private static final class Counters {
+        final long startedAt = System.currentTimeMillis();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong updated = new AtomicLong();
+        final AtomicLong routed = new AtomicLong();
+        final AtomicLong haversine = new AtomicLong();
+        final AtomicLong rescaled = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+
+        Report toReport() {
+            return new Report(processed.get(), updated.get(), routed.get(), haversine.get(), rescaled.get(),
+                    skipped.get(), System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RouteDistanceService routeDistanceService;
+    private final double emissionFactor;
+    private final int chunkSize;
+    private final int routeParallelism;
+    private final ThreadPoolTaskExecutor executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Report lastReport;
+
+    public CarbonFootprintBatchService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                       RouteDistanceService routeDistanceService,
+                                       @Value("${carbon.emission-factor:0.2}") double emissionFactor,
+                                       @Value("${carbon.batch.chunk-size:1000}") int chunkSize,
+                                       @Value("${carbon.batch.route-parallelism:8}") int routeParallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.routeDistanceService = routeDistanceService;
+        this.emissionFactor = emissionFactor;
+        this.chunkSize = chunkSize;
+        this.routeParallelism = Math.max(1, routeParallelism);
+
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(1);
+        this.executor.setMaxPoolSize(1);
+        this.executor.setQueueCapacity(0);
+        this.executor.setThreadNamePrefix("carbon-batch-");
+        this.executor.initialize();
+    }
+
+    /**
+     * Lance le recalcul de tout l'historique en tâche de fond.
+     * Retourne false si un recalcul complet est déjà en cours.
+     */
+    public boolean startFullRecalculation(boolean useRoutes) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    lastReport = recalculateAll(useRoutes);
+                } catch (RuntimeException e) {
+                    logger.error("Recalcul des empreintes carbone interrompu : {}", e.getMessage(), e);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    /** Recalcule toutes les livraisons, lot par lot. */
+    public Report recalculateAll(boolean useRoutes) {
+        Counters counters = new Counters();
+        long lastId = 0;
+        while (true) {
+            List<Row> rows = jdbcTemplate.query(SELECT_AFTER, ROW_MAPPER, lastId, chunkSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            processChunk(rows, useRoutes, counters);
+            lastId = rows.get(rows.size() - 1).id();
+            if (rows.size() < chunkSize) {
+                break;
+            }
+        }
+        Report report = counters.toReport();
+        logger.info("Empreintes carbone recalculées : {}", report);
+        return report;
+    }
+
+    /** Recalcule uniquement les livraisons indiquées (les ids inconnus sont ignorés). */
+    public Report recalculate(Collection<Long> ids, boolean useRoutes) {
+        Counters counters = new Counters();
+        List<Long> sorted = ids.stream().distinct().sorted().toList();
+        for (int from = 0; from < sorted.size(); from += chunkSize) {
+            List<Long> chunk = sorted.subList(from, Math.min(from + chunkSize, sorted.size()));
+            List<Row> rows = namedJdbcTemplate.query(SELECT_IDS, new MapSqlParameterSource("ids", chunk), ROW_MAPPER);
+            processChunk(rows, useRoutes, counters);
+        }
+        return counters.toReport();
+    }
+
+    private void processChunk(List<Row> rows, boolean useRoutes, Counters counters) {
+        int n = rows.size();
+        double[] distances = new double[n];
+
+        // Distances du lot : route OSRM si demandé (requêtes asynchrones, fenêtre bornée),
+        // vol d'oiseau sinon ou en repli
+        Semaphore window = new Semaphore(routeParallelism);
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Row row = rows.get(i);
+            if (!row.hasRoute()) {
+                distances[i] = Double.NaN;
+                continue;
+            }
+            if (!useRoutes) {
+                distances[i] = haversineKm(row);
+                counters.haversine.incrementAndGet();
+                continue;
+            }
+            int index = i;
+            window.acquireUninterruptibly();
+            CompletableFuture<Double> road;
+            try {
+                road = routeDistanceService.getDrivingDistanceKmAsync(row.originLat(), row.originLng(),
+                        row.destinationLat(), row.destinationLng());
+            } catch (RuntimeException e) {
+                road = CompletableFuture.failedFuture(e);
+            }
+            pending.add(road.handle((km, error) -> {
+                window.release();
+                if (error != null) {
+                    logger.debug("Distance routière indisponible pour la livraison {} : {}", row.id(),
+                            OutboundHttpClient.rootMessage(error));
+                }
+                if (km != null) {
+                    distances[index] = km;
+                    counters.routed.incrementAndGet();
+                } else {
+                    distances[index] = haversineKm(row);
+                    counters.haversine.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+
+        List<Object[]> updates = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Row row = rows.get(i);
+            Double footprint;
+            if (!Double.isNaN(distances[i])) {
+                footprint = round2(distances[i] * emissionFactor);
+            } else if (row.carbonFootprint() != null) {
+                double previousFactor = row.emissionFactor() != null && row.emissionFactor() > 0
+                        ? row.emissionFactor() : LEGACY_EMISSION_FACTOR;
+                if (previousFactor == emissionFactor) {
+                    counters.skipped.incrementAndGet();
+                    continue;
+                }
+                footprint = round2(row.carbonFootprint() * emissionFactor / previousFactor);
+                counters.rescaled.incrementAndGet();
+            } else {
+                counters.skipped.incrementAndGet();
+                continue;
+            }
+            updates.add(new Object[]{footprint, emissionFactor, row.id()});
+        }
+
+        if (!updates.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_FOOTPRINT, updates));
+        }
+        counters.processed.addAndGet(n);
+        counters.updated.addAndGet(updates.size());
+    }
+
+    private static double haversineKm(Row row) {
+        return RouteDistanceService.haversineKm(row.originLat(), row.originLng(), row.destinationLat(), row.destinationLng());
+    }
+
+    private static double round2(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static Double nullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
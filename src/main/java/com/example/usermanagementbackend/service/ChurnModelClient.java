@@ -0,0 +1,204 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Client du serveur de prédiction du risque de désactivation (churn).
+ *
+ * Les appels passent par {@link OutboundHttpClient} (connexions keep-alive partagées,
+ * disjoncteur, mesures). Le nombre de requêtes lancées par un calcul est en plus borné par un
+ * sémaphore, et chaque requête a un timeout et des tentatives supplémentaires avec attente
+ * exponentielle.
+ * Si {@code churn.model.batch-url} est renseignée, les utilisateurs sont envoyés par lots
+ * (tableau JSON de features, réponse : tableau de scores dans le même ordre).
+ */
+@Service
+public class ChurnModelClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChurnModelClient.class);
+
+    private final ObjectMapper objectMapper;
+    private final OutboundHttpClient outboundHttpClient;
+    private final Semaphore permits;
+    private final URI predictUri;
+    private final URI batchUri;
+    private final int batchSize;
+    private final Duration timeout;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+
+    public ChurnModelClient(ObjectMapper objectMapper, OutboundHttpClient outboundHttpClient,
+                            @Value("${churn.model.url:http://localhost:8000/predict}") String predictUrl,
+                            @Value("${churn.model.batch-url:}") String batchUrl,
+                            @Value("${churn.model.batch-size:100}") int batchSize,
+                            @Value("${churn.model.max-concurrency:16}") int maxConcurrency,
+                            @Value("${churn.model.timeout-ms:5000}") long timeoutMs,
+                            @Value("${churn.model.max-retries:2}") int maxRetries,
+                            @Value("${churn.model.retry-backoff-ms:200}") long retryBackoffMs) {
+        this.objectMapper = objectMapper;
+        this.predictUri = URI.create(predictUrl);
+        this.batchUri = batchUrl == null || batchUrl.isBlank() ? null : URI.create(batchUrl);
+        this.batchSize = Math.max(1, batchSize);
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMs = retryBackoffMs;
+        this.outboundHttpClient = outboundHttpClient;
+    }
+
+    /** Features envoyées au modèle pour un utilisateur. */
+    public static Map<String, Object> features(User user) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("last_login", user.getDerniereConnexion() != null
+                ? user.getDerniereConnexion().toString()
+                : LocalDateTime.now().toString());
+        data.put("login_count", user.getNombreConnexions());
+        data.put("actions_count", user.getActionsEffectuees());
+        data.put("is_blocked", user.isBlocked());
+        data.put("is_verified", user.isVerified());
+        data.put("block_count", user.getNombreBlocages());
+        return data;
+    }
+
+    public CompletableFuture<Double> predict(Map<String, Object> features) {
+        return send("churn.predict", predictUri, features).thenApply(ChurnModelClient::readScore);
+    }
+
+    /**
+     * Calcule le score de chaque utilisateur de la liste et attend toutes les réponses.
+     * Les utilisateurs dont le calcul a échoué (après les tentatives) sont absents du résultat.
+     */
+    public Map<Long, Double> scoreUsers(List<User> users) {
+        Map<Long, Double> scores = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+
+        if (batchUri != null) {
+            for (int from = 0; from < users.size(); from += batchSize) {
+                List<User> batch = users.subList(from, Math.min(from + batchSize, users.size()));
+                List<Long> ids = new ArrayList<>(batch.size());
+                List<Map<String, Object>> payload = new ArrayList<>(batch.size());
+                for (User user : batch) {
+                    ids.add(user.getId());
+                    payload.add(features(user));
+                }
+                calls.add(send("churn.batch", batchUri, payload)
+                        .thenAccept(body -> {
+                            JsonNode results = body.isArray() ? body : body.path("risk_scores");
+                            if (results.size() != ids.size()) {
+                                throw new IllegalStateException("Réponse du modèle IA incomplète : "
+                                        + results.size() + " scores pour " + ids.size() + " utilisateurs");
+                            }
+                            for (int i = 0; i < ids.size(); i++) {
+                                scores.put(ids.get(i), readScore(results.get(i)));
+                            }
+                        })
+                        .exceptionally(e -> {
+                            logger.warn("Échec du lot IA ({} utilisateurs à partir de l'id {}) : {}",
+                                    ids.size(), ids.get(0), OutboundHttpClient.rootMessage(e));
+                            return null;
+                        }));
+            }
+        } else {
+            for (User user : users) {
+                Long userId = user.getId();
+                calls.add(predict(features(user))
+                        .thenAccept(score -> scores.put(userId, score))
+                        .exceptionally(e -> {
+                            logger.warn("Erreur IA pour l'utilisateur {} : {}", userId, OutboundHttpClient.rootMessage(e));
+                            return null;
+                        }));
+            }
+        }
+
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+        return scores;
+    }
+
+    private CompletableFuture<JsonNode> send(String endpoint, URI uri, Object payload) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        // Le permis est gardé pendant toutes les tentatives de la même requête
+        permits.acquireUninterruptibly();
+        return attempt(endpoint, request, 0).whenComplete((result, error) -> permits.release());
+    }
+
+    private CompletableFuture<JsonNode> attempt(String endpoint, HttpRequest request, int attempt) {
+        return outboundHttpClient.sendAsync(endpoint, request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(this::readBody)
+                .handle((node, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(node);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    // Une erreur 4xx ou un disjoncteur ouvert ne se corrige pas en réessayant
+                    if (attempt >= maxRetries || cause instanceof IllegalArgumentException
+                            || cause instanceof OutboundHttpClient.CallRejectedException) {
+                        return CompletableFuture.<JsonNode>failedFuture(cause);
+                    }
+                    long delay = retryBackoffMs << attempt;
+                    return CompletableFuture.runAsync(() -> { },
+                                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> attempt(endpoint, request, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private JsonNode readBody(HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status >= 400 && status < 500) {
+            throw new IllegalArgumentException("Requête refusée par le modèle IA : HTTP " + status);
+        }
+        if (status < 200 || status >= 300) {
+            throw new IllegalStateException("Réponse du modèle IA : HTTP " + status);
+        }
+        try {
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double readScore(JsonNode node) {
+        JsonNode score = node.isNumber() ? node : node.path("risk_score");
+        if (!score.isNumber()) {
+            throw new IllegalStateException("Réponse du modèle IA sans risk_score");
+        }
+        return score.asDouble();
+    }
+}
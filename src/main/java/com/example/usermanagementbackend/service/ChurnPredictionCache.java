@@ -0,0 +1,104 @@
+package com.example.usermanagementbackend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache des scores de risque IA par utilisateur, avec durée de vie limitée.
+ *
+ * Les appels simultanés pour un même utilisateur partagent un seul appel au modèle.
+ * {@link #invalidate(Long)} doit être appelée quand les features de l'utilisateur changent ;
+ * un appel en cours au moment de l'invalidation n'alimente alors pas le cache.
+ */
+@Service
+public class ChurnPredictionCache {
+
+    private record Entry(double score, long expiresAt) {
+    }
+
+    private final ConcurrentHashMap<Long, Entry> scores = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public ChurnPredictionCache(@Value("${churn.cache.ttl-seconds:900}") long ttlSeconds,
+                                @Value("${churn.cache.max-entries:10000}") int maxEntries) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Retourne le score en cache s'il est encore valide, sinon rejoint l'appel en cours
+     * pour cet utilisateur ou en lance un nouveau avec {@code loader}.
+     */
+    public CompletableFuture<Double> get(Long userId, Supplier<CompletableFuture<Double>> loader) {
+        Entry entry = scores.get(userId);
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            return CompletableFuture.completedFuture(entry.score());
+        }
+
+        CompletableFuture<Double> created = new CompletableFuture<>();
+        CompletableFuture<Double> existing = inFlight.putIfAbsent(userId, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<Double> call;
+        try {
+            call = loader.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(userId, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+        call.whenComplete((score, error) -> {
+            // Si l'entrée a été invalidée pendant l'appel, le score ne reflète plus l'utilisateur
+            if (inFlight.remove(userId, created) && error == null) {
+                put(userId, score);
+            }
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(score);
+            }
+        });
+        return created;
+    }
+
+    public void put(Long userId, double score) {
+        if (scores.size() >= maxEntries && !scores.containsKey(userId)) {
+            evict();
+        }
+        scores.put(userId, new Entry(score, System.nanoTime() + ttlNanos));
+    }
+
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        scores.remove(userId);
+        inFlight.remove(userId);
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    // Supprime d'abord les entrées expirées, puis une entrée quelconque si le cache reste plein
+    private void evict() {
+        long now = System.nanoTime();
+        scores.values().removeIf(e -> e.expiresAt() - now <= 0);
+        Iterator<Long> keys = scores.keySet().iterator();
+        while (scores.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
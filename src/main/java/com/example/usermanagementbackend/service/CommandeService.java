@@ -13,9 +13,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -27,8 +31,10 @@ public class CommandeService {
     private final CommandeRepository commandeRepository;
     private final ProduitRepository produitRepository;
     private final UserRepository userRepository;
+    private final PromotionPricingEngine promotionPricingEngine;
+    private final PromotionService promotionService;
 
-    private static final List<String> TUNISIAN_GOVERNORATES = Arrays.asList(
+    static final List<String> TUNISIAN_GOVERNORATES = Arrays.asList(
             "Ariana", "Beja", "Ben Arous", "Bizerte", "Gabes", "Gafsa", "Jendouba",
             "Kairouan", "Kasserine", "Kebili", "Kef", "Mahdia", "Manouba", "Medenine",
             "Monastir", "Nabeul", "Sfax", "Sidi Bouzid", "Siliana", "Sousse",
@@ -37,10 +43,14 @@ public class CommandeService {
 
     public CommandeService(CommandeRepository commandeRepository,
                            ProduitRepository produitRepository,
-                           UserRepository userRepository) {
+                           UserRepository userRepository,
+                           PromotionPricingEngine promotionPricingEngine,
+                           PromotionService promotionService) {
         this.commandeRepository = commandeRepository;
         this.produitRepository = produitRepository;
         this.userRepository = userRepository;
+        this.promotionPricingEngine = promotionPricingEngine;
+        this.promotionService = promotionService;
     }
 
     @Transactional(readOnly = true)
@@ -119,6 +129,7 @@ public class CommandeService {
                 throw new IllegalArgumentException("LignesCommande cannot be null or empty");
             }
             logger.info("Processing {} lignesCommande", lignes.size());
+            List<PromotionPricingEngine.Item> items = new ArrayList<>(lignes.size());
             for (LigneCommande ligne : lignes) {
                 logger.info("Processing ligne with qte: {}", ligne.getQte());
                 ligne.setCommande(commande);
@@ -128,14 +139,24 @@ public class CommandeService {
                         .orElseThrow(() -> new IllegalArgumentException("Produit not found with id: " + produitId));
                 logger.info("Produit found: id={}, nom={}", produit.getId(), produit.getNom());
                 ligne.setProduit(produit);
+                items.add(new PromotionPricingEngine.Item(produit, ligne.getQte()));
+            }
+
+            // Meilleure promotion en vigueur par ligne, lue dans l'index en mémoire ; les conditions
+            // sur le panier portent sur le total de la commande
+            PromotionPricingEngine.Quote quote = promotionPricingEngine.priceOrder(items, Instant.now());
+            for (int i = 0; i < lignes.size(); i++) {
+                LigneCommande ligne = lignes.get(i);
+                PromotionPricingEngine.Price price = quote.lignes().get(i);
                 int qte = ligne.getQte();
-                double prix = produit.getPrix();
+                double prix = price.prixRemise();
                 ligne.setPrixUnitaire(prix);
-                double total = qte * prix;
+                double total = price.total();
                 double ttc = total * 1.19;
                 ligne.setTotal(total);
                 ligne.setTtc(ttc);
-                logger.info("Ligne updated: qte={}, prixUnitaire={}, total={}, ttc={}", qte, prix, total, ttc);
+                logger.info("Ligne updated: qte={}, prixUnitaire={}, total={}, ttc={}, promotion={}",
+                        qte, prix, total, ttc, price.promotionId());
             }
 
             // Calculate total
@@ -151,6 +172,10 @@ public class CommandeService {
             logger.info("Saving commande to database");
             Commande saved = commandeRepository.save(commande);
             logger.info("Commande saved with id: {}", saved.getId());
+            if (!quote.promotions().isEmpty()) {
+                promotionService.enregistrerUtilisations(quote.promotions().values());
+                logger.info("Promotions appliquées à la commande {} : {}", saved.getId(), quote.promotions().keySet());
+            }
             return saved;
         } catch (Exception e) {
             logger.error("Error saving commande: {}", e.getMessage(), e);
@@ -170,6 +195,16 @@ public class CommandeService {
         existing.setTelephone(updatedCommande.getTelephone());
         existing.setGouvernement(updatedCommande.getGouvernement());
         existing.setAdresse(updatedCommande.getAdresse());
+        // Prix unitaires fixés à la création (promotions comprises) : conservés pour les produits
+        // déjà commandés, quelle que soit la promotion en vigueur aujourd'hui
+        Map<Long, Double> prixEnregistres = new HashMap<>();
+        if (existing.getLignesCommande() != null) {
+            for (LigneCommande ligne : existing.getLignesCommande()) {
+                if (ligne.getProduit() != null && ligne.getPrixUnitaire() != null) {
+                    prixEnregistres.putIfAbsent(ligne.getProduit().getId(), ligne.getPrixUnitaire());
+                }
+            }
+        }
         existing.setLignesCommande(updatedCommande.getLignesCommande());
 
         List<LigneCommande> lignes = existing.getLignesCommande();
@@ -178,7 +213,8 @@ public class CommandeService {
                 Produit produit = produitRepository.findById(ligne.getProduit().getId())
                         .orElseThrow(() -> new IllegalArgumentException("Produit not found with id: " + ligne.getProduit().getId()));
                 ligne.setProduit(produit);
-                ligne.setPrixUnitaire(produit.getPrix());
+                // Produit ajouté après coup : prix catalogue, les promotions ne s'appliquent qu'à la création
+                ligne.setPrixUnitaire(prixEnregistres.getOrDefault(produit.getId(), produit.getPrix()));
                 ligne.setTotal(ligne.getQte() * ligne.getPrixUnitaire());
                 ligne.setTtc(ligne.getTotal() * 1.19);
             }
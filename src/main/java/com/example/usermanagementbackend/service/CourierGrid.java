@@ -0,0 +1,61 @@
+package com.example.usermanagementbackend.service;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grille de cellules de {@code cellDeg} degrés indexant les livreurs par position.
+ * Chaque cellule est un ensemble concurrent ; les mises à jour ne verrouillent que la
+ * cellule concernée, jamais la grille entière. Une cellule vide est retirée.
+ */
+public class CourierGrid {
+
+    private final double cellDeg;
+    private final ConcurrentHashMap<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    public CourierGrid(double cellDeg) {
+        this.cellDeg = cellDeg;
+    }
+
+    public double getCellDeg() {
+        return cellDeg;
+    }
+
+    public int row(double lat) {
+        return (int) Math.floor(lat / cellDeg);
+    }
+
+    public int column(double lng) {
+        return (int) Math.floor(lng / cellDeg);
+    }
+
+    public long cellKey(double lat, double lng) {
+        return key(row(lat), column(lng));
+    }
+
+    public static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    public void add(Long id, long cell) {
+        cells.compute(cell, (k, ids) -> {
+            Set<Long> set = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            set.add(id);
+            return set;
+        });
+    }
+
+    public void remove(Long id, long cell) {
+        cells.computeIfPresent(cell, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /** Identifiants présents dans une cellule (vue en lecture, éventuellement vide). */
+    public Set<Long> idsIn(long cell) {
+        Set<Long> ids = cells.get(cell);
+        return ids != null ? Collections.unmodifiableSet(ids) : Set.of();
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.usermanagementbackend.service;
+
+/**
+ * Publié quand une livraison active (TAKE_IT/EN_COURS) est attribuée à un livreur (delta = 1)
+ * ou ne l'est plus (delta = -1). {@link NearestCourierService} ajuste son décompte après le commit.
+ */
+public record CourierLoadChangedEvent(Long livreurId, int delta) {
+}
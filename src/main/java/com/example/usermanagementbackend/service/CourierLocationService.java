@@ -0,0 +1,317 @@
+package com.example.usermanagementbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Positions des livreurs en temps réel.
+ *
+ * Chaque position reçue remplace la précédente en mémoire et met à jour la {@link CourierGrid}.
+ * L'ordre des positions suit l'heure de réception du serveur : l'horloge de l'appareil (parfois
+ * décalée, absente sur l'API REST) sert seulement à dater le point, bornée à l'heure courante.
+ * Les abonnés de {@code /topic/livraisons/{id}} reçoivent au plus une position par livraison et
+ * par intervalle {@code location.push-ms} (la plus récente). Le trajet est écrit en base par lots
+ * toutes les {@code location.track.flush-ms} : aucune écriture par position reçue. Au-delà de
+ * {@code location.track.max-queued} points en attente, les nouveaux points ne sont plus historisés
+ * (la position courante reste à jour). Un livreur qui n'envoie plus de position depuis
+ * {@code courier.position.max-age-seconds} est retiré de la mémoire et de la grille.
+ */
+@Service
+public class CourierLocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CourierLocationService.class);
+
+    private static final String INSERT_POSITION = "INSERT INTO livreur_position "
+            + "(livreur_id, livraison_id, latitude, longitude, recorded_at) VALUES (?, ?, ?, ?, ?)";
+
+    // Même rayon terrestre que RouteDistanceService.haversineKm
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180.0;
+    // Au-delà, la recherche par anneaux coûte plus qu'un parcours de toutes les positions
+    // (près des pôles, les colonnes se resserrent et le rayon en cellules explose)
+    private static final int MAX_RINGS = 500;
+
+    /** {@code timestamp} : heure du point (appareil, bornée à la réception) ; {@code receivedAt} : heure serveur. */
+    public record CourierPosition(Long livreurId, Long livraisonId, double lat, double lng, long timestamp,
+                                  long receivedAt) {
+    }
+
+    public record NearbyCourier(CourierPosition position, double distanceKm) {
+    }
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final CourierGrid grid;
+    private final int trackBatchSize;
+    private final int maxQueued;
+    private final long maxAgeMs;
+
+    private final ConcurrentHashMap<Long, CourierPosition> latest = new ConcurrentHashMap<>();
+    // Dernière position non encore diffusée, par livraison
+    private final ConcurrentHashMap<Long, CourierPosition> pendingPush = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<CourierPosition> pendingTrack = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public CourierLocationService(SimpMessagingTemplate messagingTemplate, JdbcTemplate jdbcTemplate,
+                                  @Value("${location.grid.cell-deg:0.01}") double cellDeg,
+                                  @Value("${location.track.batch-size:1000}") int trackBatchSize,
+                                  @Value("${location.track.max-queued:200000}") int maxQueued,
+                                  @Value("${courier.position.max-age-seconds:300}") long maxAgeSeconds) {
+        this.messagingTemplate = messagingTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.grid = new CourierGrid(cellDeg);
+        this.trackBatchSize = trackBatchSize;
+        this.maxQueued = maxQueued;
+        this.maxAgeMs = maxAgeSeconds * 1000;
+    }
+
+    /**
+     * Enregistre une position. Retourne false si elle est invalide ou si une position reçue
+     * plus tard a déjà été enregistrée pour le livreur.
+     */
+    public boolean update(Long livreurId, Long livraisonId, Double lat, Double lng, Long timestamp) {
+        if (livreurId == null || lat == null || lng == null
+                || lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        // Une horloge d'appareil en avance ne doit pas dater un point dans le futur
+        long ts = timestamp != null ? Math.min(timestamp, now) : now;
+        CourierPosition position = new CourierPosition(livreurId, livraisonId, lat, lng, ts, now);
+
+        CourierPosition stored = latest.compute(livreurId, (id, previous) -> {
+            if (previous != null && previous.receivedAt() > now) {
+                return previous;
+            }
+            long cell = grid.cellKey(lat, lng);
+            if (previous == null) {
+                grid.add(id, cell);
+            } else {
+                long previousCell = grid.cellKey(previous.lat(), previous.lng());
+                if (previousCell != cell) {
+                    grid.remove(id, previousCell);
+                    grid.add(id, cell);
+                }
+            }
+            return position;
+        });
+        if (stored != position) {
+            return false;
+        }
+
+        if (livraisonId != null) {
+            pendingPush.put(livraisonId, position);
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+        } else {
+            pendingTrack.add(position);
+        }
+        return true;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPositionReported(CourierPositionReportedEvent event) {
+        update(event.livreurId(), event.livraisonId(), event.lat(), event.lng(), null);
+    }
+
+    /**
+     * Les {@code k} livreurs les plus proches acceptés par {@code filter}, à moins de {@code maxKm}.
+     *
+     * Parcourt les cellules de la grille en anneaux concentriques autour du point et s'arrête dès
+     * que l'anneau suivant ne peut plus contenir de livreur plus proche que le k-ième trouvé :
+     * le coût dépend du nombre de livreurs à proximité, pas du nombre total.
+     */
+    public List<NearbyCourier> nearest(double lat, double lng, int k, double maxKm, Predicate<CourierPosition> filter) {
+        if (k <= 0) {
+            return List.of();
+        }
+        double cellDeg = grid.getCellDeg();
+        int row = grid.row(lat);
+        int column = grid.column(lng);
+        // Les k meilleurs, le plus éloigné en tête
+        PriorityQueue<NearbyCourier> best = new PriorityQueue<>(k + 1,
+                Comparator.comparingDouble(NearbyCourier::distanceKm).reversed());
+
+        if (ringsWithin(lat, maxKm, cellDeg) > MAX_RINGS) {
+            for (CourierPosition position : latest.values()) {
+                offer(best, k, lat, lng, maxKm, position, filter);
+            }
+            return sorted(best);
+        }
+
+        for (int r = 0; ; r++) {
+            double ringMinKm = ringMinKm(lat, r, cellDeg);
+            if (ringMinKm > maxKm || (best.size() == k && ringMinKm > best.peek().distanceKm())) {
+                break;
+            }
+            for (int dr = -r; dr <= r; dr++) {
+                int step = Math.abs(dr) == r ? 1 : Math.max(1, 2 * r);
+                for (int dc = -r; dc <= r; dc += step) {
+                    for (Long id : grid.idsIn(CourierGrid.key(row + dr, column + dc))) {
+                        offer(best, k, lat, lng, maxKm, latest.get(id), filter);
+                    }
+                }
+            }
+        }
+        return sorted(best);
+    }
+
+    private static void offer(PriorityQueue<NearbyCourier> best, int k, double lat, double lng, double maxKm,
+                              CourierPosition position, Predicate<CourierPosition> filter) {
+        if (position == null || !filter.test(position)) {
+            return;
+        }
+        double km = RouteDistanceService.haversineKm(lat, lng, position.lat(), position.lng());
+        if (km > maxKm) {
+            return;
+        }
+        if (best.size() < k) {
+            best.add(new NearbyCourier(position, km));
+        } else if (km < best.peek().distanceKm()) {
+            best.poll();
+            best.add(new NearbyCourier(position, km));
+        }
+    }
+
+    private static List<NearbyCourier> sorted(PriorityQueue<NearbyCourier> best) {
+        List<NearbyCourier> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(NearbyCourier::distanceKm));
+        return result;
+    }
+
+    /**
+     * Distance minimale (km) entre le point et les cellules de l'anneau {@code r} (et au-delà).
+     *
+     * Une cellule de l'anneau est séparée de la cellule du point par au moins r - 1 cellules
+     * entières, en latitude ou en longitude. En latitude, c'est (r - 1) × cellDeg degrés d'arc.
+     * En longitude, la distance minimale à un méridien écarté de Δλ est
+     * asin(cos φ × sin Δλ) (géodésique, et non la largeur de la cellule sur un parallèle, qui
+     * la surestime loin de l'équateur).
+     */
+    static double ringMinKm(double lat, int r, double cellDeg) {
+        if (r <= 1) {
+            return 0;
+        }
+        double gapDeg = (r - 1) * cellDeg;
+        double latMinKm = gapDeg * KM_PER_DEGREE;
+        double lngMinKm = EARTH_RADIUS_KM * Math.asin(
+                Math.cos(Math.toRadians(lat)) * Math.sin(Math.toRadians(Math.min(90.0, gapDeg))));
+        return Math.min(latMinKm, lngMinKm);
+    }
+
+    /**
+     * Nombre d'anneaux à parcourir au pire pour couvrir maxKm autour de la latitude lat
+     * (Integer.MAX_VALUE si aucun écart en longitude ne dépasse maxKm, près des pôles).
+     */
+    static int ringsWithin(double lat, double maxKm, double cellDeg) {
+        double latRings = maxKm / KM_PER_DEGREE / cellDeg + 1;
+        double sinLng = Math.sin(Math.min(Math.PI / 2, maxKm / EARTH_RADIUS_KM)) / Math.cos(Math.toRadians(lat));
+        if (!(sinLng < 1)) {
+            return Integer.MAX_VALUE;
+        }
+        double lngRings = Math.toDegrees(Math.asin(sinLng)) / cellDeg + 1;
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(Math.max(latRings, lngRings)) + 1);
+    }
+
+    // Livreurs sans position récente : ils ne sont plus parcourus par nearest()
+    @Scheduled(fixedDelayString = "${courier.position.evict-ms:60000}")
+    public void evictStale() {
+        int evicted = evictReceivedBefore(System.currentTimeMillis() - maxAgeMs);
+        if (evicted > 0) {
+            logger.info("{} livreurs sans position récente retirés de la grille", evicted);
+        }
+    }
+
+    int evictReceivedBefore(long cutoff) {
+        int evicted = 0;
+        for (CourierPosition position : latest.values()) {
+            if (position.receivedAt() < cutoff && remove(position.livreurId(), cutoff)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    // Retire le livreur si sa position est toujours antérieure à receivedBefore (une position
+    // reçue entre-temps est conservée)
+    private boolean remove(Long livreurId, long receivedBefore) {
+        boolean[] removed = {false};
+        latest.computeIfPresent(livreurId, (id, position) -> {
+            if (position.receivedAt() >= receivedBefore) {
+                return position;
+            }
+            grid.remove(id, grid.cellKey(position.lat(), position.lng()));
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Scheduled(fixedDelayString = "${location.push-ms:1000}")
+    public void pushUpdates() {
+        for (Long livraisonId : pendingPush.keySet()) {
+            CourierPosition position = pendingPush.remove(livraisonId);
+            if (position != null) {
+                messagingTemplate.convertAndSend("/topic/livraisons/" + livraisonId, position);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${location.track.flush-ms:5000}")
+    public void flushTrack() {
+        List<Object[]> batch = new ArrayList<>(Math.min(trackBatchSize, Math.max(queued.get(), 1)));
+        CourierPosition position;
+        while ((position = pendingTrack.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(new Object[]{position.livreurId(), position.livraisonId(), position.lat(), position.lng(),
+                    new Timestamp(position.timestamp())});
+            if (batch.size() >= trackBatchSize) {
+                writeTrack(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeTrack(batch);
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            logger.warn("{} positions de livreurs non historisées (file d'attente pleine)", lost);
+        }
+    }
+
+    private void writeTrack(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_POSITION, batch);
+        } catch (RuntimeException e) {
+            // Historique perdu pour ce lot, mais on ne bloque pas la réception des positions
+            logger.warn("Écriture de {} positions de livreurs impossible : {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushTrack();
+    }
+}
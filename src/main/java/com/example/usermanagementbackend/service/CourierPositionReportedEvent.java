@@ -0,0 +1,8 @@
+package com.example.usermanagementbackend.service;
+
+/**
+ * Position d'un livreur transmise avec une livraison créée ou modifiée.
+ * {@link CourierLocationService} l'enregistre après le commit de la transaction.
+ */
+public record CourierPositionReportedEvent(Long livreurId, Long livraisonId, double lat, double lng) {
+}
@@ -0,0 +1,207 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.dto.LivraisonEtaDTO;
+import com.example.usermanagementbackend.entity.Commande;
+import com.example.usermanagementbackend.entity.Livraison;
+import com.example.usermanagementbackend.entity.StatusLivraison;
+import com.example.usermanagementbackend.entity.TypeLivraison;
+import com.example.usermanagementbackend.repository.CommandeRepository;
+import com.example.usermanagementbackend.repository.LivraisonRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimation de la durée d'une livraison (création → statut LIVRE) à partir des livraisons passées.
+ *
+ * Les durées observées sont résumées par moyenne et variance glissantes (algorithme de Welford)
+ * dans des cases gouvernorat × type de livraison × heure de création. Chaque livraison terminée
+ * met à jour sa case et les niveaux plus larges (gouvernorat × type, type, global) en O(1), sans
+ * relire la table. Au démarrage, les cases sont initialisées par une seule requête d'agrégat.
+ * Une case avec trop peu d'observations cède la place au niveau plus large.
+ */
+@Service
+public class DeliveryEtaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryEtaService.class);
+
+    private static final String ALL = "*";
+    // Quantile 90 % de la loi normale
+    private static final double Z_90 = 1.2816;
+
+    private static final String BOOTSTRAP = "SELECT c.gouvernement, d.type_livraison, d.heure, COUNT(*) AS n, "
+            + "AVG(d.duree) AS moyenne, VAR_POP(d.duree) AS variance FROM ("
+            + "SELECT l.commande_id, l.type_livraison, HOUR(l.created_at) AS heure, "
+            + "TIMESTAMPDIFF(SECOND, l.created_at, l.updated_at) AS duree FROM livraison l "
+            + "WHERE l.status_livraison = 'LIVRE' AND l.created_at IS NOT NULL AND l.updated_at >= l.created_at) d "
+            + "LEFT JOIN commande c ON c.id = d.commande_id "
+            + "WHERE d.duree <= ? GROUP BY c.gouvernement, d.type_livraison, d.heure";
+
+    /** Moyenne et variance glissantes (Welford), fusionnables (Chan et al.). */
+    public static final class RunningStats {
+        private long count;
+        private double mean;
+        private double m2;
+
+        public synchronized void add(double value) {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        public synchronized void merge(long n, double otherMean, double otherM2) {
+            if (n <= 0) {
+                return;
+            }
+            long total = count + n;
+            double delta = otherMean - mean;
+            mean += delta * n / total;
+            m2 += otherM2 + delta * delta * count * n / total;
+            count = total;
+        }
+
+        /** Copie cohérente {count, moyenne, écart-type}. */
+        public synchronized double[] snapshot() {
+            return new double[]{count, mean, count > 1 ? Math.sqrt(m2 / (count - 1)) : 0};
+        }
+    }
+
+    private final ConcurrentHashMap<String, RunningStats> stats = new ConcurrentHashMap<>();
+    private final LivraisonRepository livraisonRepository;
+    private final CommandeRepository commandeRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${eta.min-samples:5}")
+    private long minSamples;
+
+    @Value("${eta.max-duration-hours:72}")
+    private long maxDurationHours;
+
+    @Value("${eta.default-minutes:120}")
+    private double defaultMinutes;
+
+    public DeliveryEtaService(LivraisonRepository livraisonRepository, CommandeRepository commandeRepository,
+                              JdbcTemplate jdbcTemplate) {
+        this.livraisonRepository = livraisonRepository;
+        this.commandeRepository = commandeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void chargerHistorique() {
+        long started = System.currentTimeMillis();
+        int[] buckets = {0};
+        try {
+            jdbcTemplate.query(BOOTSTRAP, rs -> {
+                String type = rs.getString("type_livraison");
+                if (type == null) {
+                    return;
+                }
+                long n = rs.getLong("n");
+                double mean = rs.getDouble("moyenne") / 60;
+                // VAR_POP × n = somme des carrés des écarts, en minutes²
+                double m2 = rs.getDouble("variance") / 3600 * n;
+                for (String key : keys(rs.getString("gouvernement"), TypeLivraison.valueOf(type), rs.getInt("heure"))) {
+                    stats.computeIfAbsent(key, k -> new RunningStats()).merge(n, mean, m2);
+                }
+                buckets[0]++;
+            }, maxDurationHours * 3600);
+        } catch (DataAccessException | IllegalArgumentException e) {
+            logger.warn("Historique des durées de livraison non chargé : {}", e.getMessage());
+            return;
+        }
+        logger.info("Durées de livraison : {} cases chargées en {} ms", buckets[0], System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onLivraisonDelivered(LivraisonDeliveredEvent event) {
+        recordDelivered(event.gouvernorat(), event.type(), event.createdAt(), event.deliveredAt());
+    }
+
+    /** Enregistre la durée d'une livraison qui vient de passer à LIVRE. */
+    public void recordDelivered(String gouvernorat, TypeLivraison type, LocalDateTime createdAt, LocalDateTime deliveredAt) {
+        if (type == null || createdAt == null || deliveredAt == null || deliveredAt.isBefore(createdAt)) {
+            return;
+        }
+        Duration duration = Duration.between(createdAt, deliveredAt);
+        if (duration.toHours() > maxDurationHours) {
+            return;
+        }
+        double minutes = duration.toSeconds() / 60.0;
+        for (String key : keys(gouvernorat, type, createdAt.getHour())) {
+            stats.computeIfAbsent(key, k -> new RunningStats()).add(minutes);
+        }
+    }
+
+    public LivraisonEtaDTO estimate(Long livraisonId) {
+        Livraison livraison = livraisonRepository.findById(livraisonId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Livraison not found"));
+        String gouvernorat = livraison.getCommandeId() != null
+                ? commandeRepository.findById(livraison.getCommandeId()).map(Commande::getGouvernement).orElse(null)
+                : null;
+        LocalDateTime createdAt = livraison.getCreatedAt() != null ? livraison.getCreatedAt() : LocalDateTime.now();
+
+        LivraisonEtaDTO eta = new LivraisonEtaDTO();
+        eta.setLivraisonId(livraisonId);
+        eta.setStatusLivraison(livraison.getStatusLivraison());
+
+        // Du plus précis au plus large, premier niveau avec assez d'observations
+        String[] keys = keys(gouvernorat, livraison.getTypeLivraison(), createdAt.getHour());
+        String[] levels = {"GOUVERNORAT_TYPE_HEURE", "GOUVERNORAT_TYPE", "TYPE", "GLOBAL"};
+        double[] snapshot = null;
+        for (int i = 0; i < keys.length && snapshot == null; i++) {
+            RunningStats bucket = stats.get(keys[i]);
+            double[] candidate = bucket != null ? bucket.snapshot() : null;
+            if (candidate != null && candidate[0] >= minSamples) {
+                snapshot = candidate;
+                eta.setNiveau(levels[i]);
+            }
+        }
+        if (snapshot == null) {
+            snapshot = new double[]{0, defaultMinutes, 0};
+            eta.setNiveau("DEFAUT");
+        }
+        eta.setEchantillons((long) snapshot[0]);
+        eta.setDureeMoyenneMinutes(round(snapshot[1]));
+        eta.setEcartTypeMinutes(round(snapshot[2]));
+        eta.setDureeP90Minutes(round(snapshot[1] + Z_90 * snapshot[2]));
+
+        StatusLivraison status = livraison.getStatusLivraison();
+        if (status == StatusLivraison.LIVRE || status == StatusLivraison.NON_LIVRE) {
+            eta.setArriveeEstimee(livraison.getUpdatedAt());
+            eta.setMinutesRestantes(0);
+        } else {
+            LocalDateTime arrival = createdAt.plusSeconds(Math.round(snapshot[1] * 60));
+            double remaining = Duration.between(LocalDateTime.now(), arrival).toSeconds() / 60.0;
+            eta.setArriveeEstimee(arrival);
+            eta.setMinutesRestantes(round(Math.max(0, remaining)));
+        }
+        return eta;
+    }
+
+    // Clés du plus précis au plus large ; la même observation alimente les quatre niveaux
+    private static String[] keys(String gouvernorat, TypeLivraison type, int hour) {
+        String g = gouvernorat != null ? AddressGazetteer.normalize(gouvernorat) : "";
+        String t = type != null ? type.name() : ALL;
+        return new String[]{g + "|" + t + "|" + hour, g + "|" + t + "|" + ALL, ALL + "|" + t + "|" + ALL,
+                ALL + "|" + ALL + "|" + ALL};
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.usermanagementbackend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage local des photos de preuve de livraison, adressé par contenu.
+ *
+ * Chaque photo est rangée sous {@code <dir>/ab/<sha256>.<ext>} : la référence ne change que si
+ * le contenu change, deux livraisons avec la même photo partagent le fichier et celui-ci peut
+ * être mis en cache indéfiniment par le navigateur. Seule la référence est gardée en base.
+ */
+@Service
+public class DeliveryPhotoStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryPhotoStore.class);
+
+    public static final String URL_PREFIX = "/api/livraisons/photos/";
+
+    private static final Pattern REF_PATTERN = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif|webp|bin)");
+
+    private final Path root;
+
+    public DeliveryPhotoStore(@Value("${livraison.photo.dir:uploads/livraisons}") String dir) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Enregistre une photo reçue en base64 (data URL {@code data:image/...;base64,} ou base64 brut)
+     * et retourne sa référence.
+     */
+    public String storeBase64(String photo) {
+        int comma = photo.startsWith("data:") ? photo.indexOf(',') : -1;
+        byte[] content;
+        try {
+            content = Base64.getMimeDecoder().decode(comma >= 0 ? photo.substring(comma + 1) : photo);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Photo de livraison invalide : base64 attendu", e);
+        }
+        return store(content);
+    }
+
+    public String store(byte[] content) {
+        String ref = sha256(content) + "." + extension(content);
+        Path target = resolve(ref);
+        if (Files.exists(target)) {
+            return ref;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            // Écriture dans un fichier temporaire puis renommage : un lecteur ne voit jamais une photo partielle
+            Path tmp = Files.createTempFile(target.getParent(), ref, ".tmp");
+            try {
+                Files.write(tmp, content);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Même contenu écrit en parallèle par une autre requête
+                logger.debug("Photo {} déjà présente", ref);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible d'enregistrer la photo " + ref, e);
+        }
+        return ref;
+    }
+
+    /** Chemin du fichier pour une référence, ou null si la référence est invalide ou inconnue. */
+    public Path find(String ref) {
+        if (ref == null || !isRef(ref)) {
+            return null;
+        }
+        Path path = resolve(ref);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    public static boolean isRef(String value) {
+        return REF_PATTERN.matcher(value).matches();
+    }
+
+    public static String url(String ref) {
+        return ref != null ? URL_PREFIX + ref : null;
+    }
+
+    private Path resolve(String ref) {
+        return root.resolve(ref.substring(0, 2)).resolve(ref);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Type d'image d'après les premiers octets
+    private static String extension(byte[] b) {
+        if (b.length >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (b.length >= 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') {
+            return "png";
+        }
+        if (b.length >= 6 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8') {
+            return "gif";
+        }
+        if (b.length >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') {
+            return "webp";
+        }
+        return "bin";
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.Commande;
+import com.example.usermanagementbackend.entity.StatusLivraison;
+import com.example.usermanagementbackend.entity.TypeLivraison;
+import com.example.usermanagementbackend.repository.CommandeRepository;
+import com.example.usermanagementbackend.repository.LivraisonRepository;
+import com.example.usermanagementbackend.repository.LivreurRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Répartition automatique des commandes payées ou confirmées en tournées de livraison.
+ *
+ * Les commandes sont localisées par {@link AddressGazetteer}, regroupées par gouvernorat, puis
+ * chaque groupe est découpé en tournées par {@link VehicleRoutePlanner} (économies + 2-opt,
+ * groupes et tournées traités en parallèle). Les tournées sont attribuées aux livreurs selon la
+ * place qu'il leur reste, puis les livraisons sont insérées par un batch JDBC unique.
+ * Les commandes qui ne trouvent pas de livreur restent en attente du prochain passage.
+ *
+ * Le calcul se fait hors transaction : avant l'insertion, les commandes retenues sont verrouillées
+ * (SELECT ... FOR UPDATE) et celles qui ont reçu une livraison entre-temps sont écartées.
+ */
+@Service
+public class DispatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DispatchService.class);
+
+    private static final List<Commande.OrderStatus> DISPATCHABLE =
+            List.of(Commande.OrderStatus.PAID, Commande.OrderStatus.CONFIRMED);
+    private static final List<StatusLivraison> ACTIVE = List.of(StatusLivraison.TAKE_IT, StatusLivraison.EN_COURS);
+
+    private static final String INSERT_LIVRAISON = "INSERT INTO livraison (date_livraison, status_livraison, "
+            + "type_livraison, livreur_id, commande_id, address, carbon_footprint, carbon_emission_factor, "
+            + "origin_lat, origin_lng, destination_lat, destination_lng, tournee_id, ordre_tournee, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int LOCK_CHUNK = 500;
+
+    public record RoutePlan(String tourneeId, Long livreurId, String gouvernorat, List<Long> commandeIds,
+                            double distanceKm) {
+    }
+
+    public record DispatchReport(int commandes, int nonLocalisees, int affectees, int enAttente,
+                                 List<RoutePlan> tournees, long durationMs) {
+    }
+
+    private record Stop(Long commandeId, String address, double lat, double lng) {
+    }
+
+    private record PlannedRoute(String gouvernorat, List<Stop> stops) {
+    }
+
+    private final CommandeRepository commandeRepository;
+    private final LivraisonRepository livraisonRepository;
+    private final LivreurRepository livreurRepository;
+    private final AddressGazetteer addressGazetteer;
+    private final NearestCourierService nearestCourierService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${dispatch.capacity:20}")
+    private int capacity;
+
+    @Value("${dispatch.neighbours:20}")
+    private int neighbours;
+
+    @Value("${dispatch.type-livraison:VOITURE}")
+    private TypeLivraison typeLivraison;
+
+    @Value("${carbon.emission-factor:0.2}")
+    private double emissionFactor;
+
+    public DispatchService(CommandeRepository commandeRepository, LivraisonRepository livraisonRepository,
+                           LivreurRepository livreurRepository, AddressGazetteer addressGazetteer,
+                           NearestCourierService nearestCourierService, JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager) {
+        this.commandeRepository = commandeRepository;
+        this.livraisonRepository = livraisonRepository;
+        this.livreurRepository = livreurRepository;
+        this.addressGazetteer = addressGazetteer;
+        this.nearestCourierService = nearestCourierService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Calcule les tournées et crée les livraisons ({@code dryRun} : calcul seul, rien n'est écrit).
+     * Lève IllegalStateException si une répartition est déjà en cours.
+     */
+    public DispatchReport dispatch(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Une répartition est déjà en cours");
+        }
+        try {
+            return doDispatch(dryRun);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private DispatchReport doDispatch(boolean dryRun) {
+        long startedAt = System.currentTimeMillis();
+        double depotLat = addressGazetteer.getDepotLat();
+        double depotLng = addressGazetteer.getDepotLng();
+
+        // 1. Localisation des commandes, regroupées par gouvernorat
+        List<Object[]> orders = commandeRepository.findDispatchableOrders(DISPATCHABLE);
+        Map<String, List<Stop>> byGouvernorat = new HashMap<>();
+        int nonLocalisees = 0;
+        for (Object[] order : orders) {
+            AddressGazetteer.Place place = addressGazetteer.resolve((String) order[1], (String) order[2]);
+            if (place == null) {
+                nonLocalisees++;
+                continue;
+            }
+            byGouvernorat.computeIfAbsent(place.gouvernorat(), g -> new ArrayList<>())
+                    .add(new Stop((Long) order[0], (String) order[1], place.lat(), place.lng()));
+        }
+
+        // 2. Tournées par gouvernorat, calculées en parallèle
+        List<PlannedRoute> planned = byGouvernorat.entrySet().parallelStream()
+                .flatMap(e -> planGroup(e.getKey(), e.getValue(), depotLat, depotLng).stream())
+                .sorted(Comparator.comparingInt((PlannedRoute r) -> -r.stops().size())
+                        .thenComparing(r -> r.stops().get(0).commandeId()))
+                .collect(Collectors.toList());
+
+        // 3. Attribution : la plus grande tournée au livreur qui a le plus de place
+        Map<Long, Long> active = new HashMap<>();
+        for (Object[] row : livraisonRepository.countByLivreurAndStatusIn(ACTIVE)) {
+            active.put((Long) row[0], (Long) row[1]);
+        }
+        PriorityQueue<long[]> livreurs = new PriorityQueue<>((a, b) -> a[1] != b[1]
+                ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+        for (Long livreurId : livreurRepository.findAllIds()) {
+            long free = capacity - active.getOrDefault(livreurId, 0L);
+            if (free > 0) {
+                livreurs.add(new long[]{livreurId, free});
+            }
+        }
+
+        List<RoutePlan> plans = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int affectees = 0;
+        int ignorees = 0;
+        for (PlannedRoute route : planned) {
+            long[] livreur = livreurs.poll();
+            if (livreur == null) {
+                break;
+            }
+            int take = (int) Math.min(route.stops().size(), livreur[1]);
+            List<Stop> stops = route.stops().subList(0, take);
+            String tourneeId = UUID.randomUUID().toString();
+
+            double prevLat = depotLat;
+            double prevLng = depotLng;
+            double routeKm = 0;
+            List<Long> commandeIds = new ArrayList<>(take);
+            for (int rank = 0; rank < take; rank++) {
+                Stop stop = stops.get(rank);
+                double legKm = RouteDistanceService.haversineKm(prevLat, prevLng, stop.lat(), stop.lng())
+                        * addressGazetteer.getRoadFactor();
+                routeKm += legKm;
+                inserts.add(new Object[]{today, StatusLivraison.TAKE_IT.name(), typeLivraison.name(), livreur[0],
+                        stop.commandeId(), stop.address(), Math.round(legKm * emissionFactor * 100) / 100.0,
+                        emissionFactor, prevLat, prevLng, stop.lat(), stop.lng(), tourneeId, rank + 1, now, now});
+                commandeIds.add(stop.commandeId());
+                prevLat = stop.lat();
+                prevLng = stop.lng();
+            }
+            plans.add(new RoutePlan(tourneeId, livreur[0], route.gouvernorat(), commandeIds,
+                    Math.round(routeKm * 100) / 100.0));
+            affectees += take;
+
+            livreur[1] -= take;
+            if (livreur[1] > 0) {
+                livreurs.add(livreur);
+            }
+        }
+
+        if (!dryRun && !inserts.isEmpty()) {
+            Set<Long> dejaLivrees = transactionTemplate.execute(status -> {
+                Set<Long> deja = verrouillerCommandes(inserts);
+                List<Object[]> rows = deja.isEmpty() ? inserts
+                        : inserts.stream().filter(row -> !deja.contains((Long) row[4])).toList();
+                jdbcTemplate.batchUpdate(INSERT_LIVRAISON, rows);
+                return deja;
+            });
+            if (!dejaLivrees.isEmpty()) {
+                // Traitées par une autre répartition (ou une création manuelle) pendant le calcul
+                logger.warn("Répartition : {} commande(s) déjà livrée(s) entre-temps, ignorée(s)", dejaLivrees.size());
+                plans.forEach(plan -> plan.commandeIds().removeIf(dejaLivrees::contains));
+                affectees -= dejaLivrees.size();
+                ignorees = dejaLivrees.size();
+            }
+            nearestCourierService.refreshAvailability();
+        }
+
+        int localisees = orders.size() - nonLocalisees;
+        DispatchReport report = new DispatchReport(orders.size(), nonLocalisees, affectees,
+                localisees - affectees - ignorees, plans, System.currentTimeMillis() - startedAt);
+        logger.info("Répartition{} : {} commandes, {} affectées en {} tournées, {} en attente, {} non localisées ({} ms)",
+                dryRun ? " (simulation)" : "", report.commandes(), affectees, plans.size(), report.enAttente(),
+                nonLocalisees, report.durationMs());
+        return report;
+    }
+
+    /**
+     * Verrouille les commandes à insérer, toutes avant la moindre lecture et dans l'ordre des ids,
+     * puis retourne celles qui ont déjà une livraison. Une répartition concurrente qui les a
+     * traitées a commité avant qu'on obtienne les verrous : sa livraison est donc visible.
+     */
+    private Set<Long> verrouillerCommandes(List<Object[]> inserts) {
+        List<Long> commandeIds = new ArrayList<>(inserts.size());
+        for (Object[] row : inserts) {
+            commandeIds.add((Long) row[4]);
+        }
+        Collections.sort(commandeIds);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < commandeIds.size(); from += LOCK_CHUNK) {
+            chunks.add(commandeIds.subList(from, Math.min(commandeIds.size(), from + LOCK_CHUNK)));
+        }
+        for (List<Long> chunk : chunks) {
+            jdbcTemplate.queryForList("SELECT id FROM commande WHERE id IN (" + placeholders(chunk.size())
+                    + ") ORDER BY id FOR UPDATE", Long.class, chunk.toArray());
+        }
+        Set<Long> deja = new HashSet<>();
+        for (List<Long> chunk : chunks) {
+            deja.addAll(jdbcTemplate.queryForList("SELECT DISTINCT commande_id FROM livraison WHERE commande_id IN ("
+                    + placeholders(chunk.size()) + ")", Long.class, chunk.toArray()));
+        }
+        return deja;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private List<PlannedRoute> planGroup(String gouvernorat, List<Stop> stops, double depotLat, double depotLng) {
+        int n = stops.size();
+        double[] lat = new double[n];
+        double[] lng = new double[n];
+        for (int i = 0; i < n; i++) {
+            lat[i] = stops.get(i).lat();
+            lng[i] = stops.get(i).lng();
+        }
+        List<int[]> routes = VehicleRoutePlanner.plan(depotLat, depotLng, lat, lng, capacity, neighbours);
+        routes.parallelStream().forEach(route -> VehicleRoutePlanner.twoOpt(route, depotLat, depotLng, lat, lng));
+
+        List<PlannedRoute> result = new ArrayList<>(routes.size());
+        for (int[] route : routes) {
+            List<Stop> ordered = new ArrayList<>(route.length);
+            for (int index : route) {
+                ordered.add(stops.get(index));
+            }
+            result.add(new PlannedRoute(gouvernorat, ordered));
+        }
+        return result;
+    }
+}
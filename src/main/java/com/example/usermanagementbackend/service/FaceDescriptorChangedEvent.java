@@ -0,0 +1,10 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.User;
+
+/**
+ * Publié quand le descripteur facial d'un utilisateur est enregistré (user renseigné) ou que
+ * l'utilisateur est supprimé (user = null). {@link FaceDescriptorIndex} se met à jour après le commit.
+ */
+public record FaceDescriptorChangedEvent(Long userId, User user) {
+}
@@ -0,0 +1,465 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.User;
+import com.example.usermanagementbackend.mapper.FaceDescriptorCodec;
+import com.example.usermanagementbackend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index en mémoire des descripteurs faciaux pour la connexion par visage.
+ *
+ * Les descripteurs sont stockés dans des blocs {@code float[]} contigus (128 floats par utilisateur)
+ * et organisés en VP-tree, ce qui permet une recherche du plus proche voisin sans parcourir
+ * toute la table {@code users} ni décoder les descripteurs à chaque tentative.
+ *
+ * Les ajouts et mises à jour arrivent dans un petit tampon parcouru linéairement ; les anciennes
+ * positions de l'arbre sont marquées comme supprimées. Quand le tampon ou les suppressions
+ * deviennent trop importants, un nouvel arbre est construit en tâche de fond à partir des
+ * tableaux de l'arbre courant (jamais modifiés après construction) ; les recherches continuent
+ * sur l'arbre courant et les modifications faites pendant la construction sont rejouées sur le
+ * nouvel arbre au moment de l'échange.
+ */
+@Service
+public class FaceDescriptorIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(FaceDescriptorIndex.class);
+
+    public static final int DIMENSION = FaceDescriptorCodec.DIMENSION;
+    private static final int MIN_PENDING_BEFORE_REBUILD = 1024;
+    // Tampon de décodage réutilisé par thread : le vecteur est recopié dans le tampon de l'index
+    private static final ThreadLocal<float[]> DECODE_BUFFER = ThreadLocal.withInitial(() -> new float[DIMENSION]);
+
+    private final UserRepository userRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadPoolTaskExecutor rebuildExecutor;
+
+    // VP-tree : le noeud en position i a pour point de vantage items[i],
+    // le sous-arbre intérieur [i + 1, split[i]) et le sous-arbre extérieur [split[i], fin).
+    // Ces tableaux ne sont plus modifiés après construction, seul treeDeleted l'est (sous verrou).
+    private record Tree(float[] vectors, long[] ids, float[] thresholds, int[] splits, int size) {}
+
+    private Tree tree = new Tree(new float[0], new long[0], new float[0], new int[0], 0);
+    private boolean[] treeDeleted = new boolean[0];
+    private int deletedCount = 0;
+    // Incrémenté à chaque installation d'arbre : une reconstruction dépassée est abandonnée
+    private long generation = 0;
+
+    // Reconstruction en cours : modifications à rejouer sur le nouvel arbre (vecteur null = retrait)
+    private record Change(Long userId, float[] vector) {}
+
+    private List<Change> journal;
+
+    // Tampon des descripteurs ajoutés depuis la dernière reconstruction
+    private float[] pendingVectors = new float[DIMENSION * 64];
+    private long[] pendingIds = new long[64];
+    private int pendingSize = 0;
+
+    // id utilisateur -> position (>= 0 dans l'arbre, < 0 dans le tampon : -(pos + 1))
+    private final Map<Long, Integer> positions = new HashMap<>();
+
+    public FaceDescriptorIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+
+        this.rebuildExecutor = new ThreadPoolTaskExecutor();
+        this.rebuildExecutor.setCorePoolSize(1);
+        this.rebuildExecutor.setMaxPoolSize(1);
+        this.rebuildExecutor.setQueueCapacity(0);
+        this.rebuildExecutor.setThreadNamePrefix("face-index-");
+        this.rebuildExecutor.initialize();
+    }
+
+    /** Résultat d'une recherche : l'utilisateur le plus proche et sa distance euclidienne. */
+    public record Match(Long userId, float distance) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromDatabase() {
+        long start = System.currentTimeMillis();
+        List<Object[]> rows = userRepository.findAllFaceDescriptors();
+
+        float[] vectors = new float[rows.size() * DIMENSION];
+        long[] ids = new long[rows.size()];
+        int count = 0;
+        for (Object[] row : rows) {
+            Long userId = (Long) row[0];
+            try {
+                if (row[2] != null) {
+                    FaceDescriptorCodec.decodeInto((byte[]) row[2], vectors, count * DIMENSION);
+                } else {
+                    FaceDescriptorCodec.parseInto((String) row[1], vectors, count * DIMENSION);
+                }
+                ids[count++] = userId;
+            } catch (IllegalArgumentException e) {
+                logger.warn("Descripteur facial ignoré pour l'utilisateur {} : {}", userId, e.getMessage());
+            }
+        }
+
+        Tree built = build(vectors, ids, count);
+        lock.writeLock().lock();
+        try {
+            install(built);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Index facial chargé : {} descripteurs en {} ms", count, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Cherche l'utilisateur dont le descripteur est le plus proche de {@code query},
+     * à condition que la distance soit strictement inférieure à {@code maxDistance}.
+     */
+    public Match findNearest(float[] query, float maxDistance) {
+        if (query.length != DIMENSION) {
+            throw new IllegalArgumentException("Descripteur facial invalide");
+        }
+        lock.readLock().lock();
+        try {
+            Search search = new Search(query, maxDistance);
+            searchTree(search, tree, 0, tree.size());
+            for (int i = 0; i < pendingSize; i++) {
+                float d = distance(query, pendingVectors, i * DIMENSION);
+                if (d < search.bestDistance) {
+                    search.bestDistance = d;
+                    search.bestId = pendingIds[i];
+                    search.found = true;
+                }
+            }
+            return search.found ? new Match(search.bestId, search.bestDistance) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Après le commit : un rollback ne laisse pas d'entrée vers un utilisateur inexistant
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFaceDescriptorChanged(FaceDescriptorChangedEvent event) {
+        if (event.user() != null) {
+            put(event.user());
+        } else {
+            remove(event.userId());
+        }
+    }
+
+    /** Ajoute ou remplace le descripteur d'un utilisateur ; un utilisateur sans descripteur est retiré de l'index. */
+    public void put(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        Long userId = user.getId();
+        float[] vector = DECODE_BUFFER.get();
+        try {
+            if (!user.decodeFaceDescriptorInto(vector)) {
+                remove(userId);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Descripteur facial invalide pour l'utilisateur {} : {}", userId, e.getMessage());
+            remove(userId);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            putLocked(userId, vector);
+            if (journal != null) {
+                journal.add(new Change(userId, vector.clone()));
+            }
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(userId);
+            if (journal != null) {
+                journal.add(new Change(userId, null));
+            }
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return positions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void putLocked(Long userId, float[] vector) {
+        removeLocked(userId);
+        if (pendingSize == pendingIds.length) {
+            pendingIds = Arrays.copyOf(pendingIds, pendingIds.length * 2);
+            pendingVectors = Arrays.copyOf(pendingVectors, pendingVectors.length * 2);
+        }
+        System.arraycopy(vector, 0, pendingVectors, pendingSize * DIMENSION, DIMENSION);
+        pendingIds[pendingSize] = userId;
+        positions.put(userId, -(pendingSize + 1));
+        pendingSize++;
+    }
+
+    private void removeLocked(Long userId) {
+        Integer position = positions.remove(userId);
+        if (position == null) {
+            return;
+        }
+        if (position >= 0) {
+            treeDeleted[position] = true;
+            deletedCount++;
+        } else {
+            // Retrait du tampon : on déplace le dernier élément à la place libérée
+            int slot = -position - 1;
+            int last = pendingSize - 1;
+            if (slot != last) {
+                System.arraycopy(pendingVectors, last * DIMENSION, pendingVectors, slot * DIMENSION, DIMENSION);
+                pendingIds[slot] = pendingIds[last];
+                positions.put(pendingIds[slot], -(slot + 1));
+            }
+            pendingSize--;
+        }
+    }
+
+    /** Lance une reconstruction en tâche de fond si nécessaire. Appelé sous le verrou d'écriture. */
+    private void rebuildIfNeeded() {
+        int treeSize = tree.size();
+        int threshold = Math.max(MIN_PENDING_BEFORE_REBUILD, treeSize / 8);
+        if (journal != null
+                || (pendingSize < threshold && deletedCount < Math.max(MIN_PENDING_BEFORE_REBUILD, treeSize / 4))) {
+            return;
+        }
+        // Copie de l'état courant : les tableaux de l'arbre sont partagés, seuls les marqueurs et le tampon sont copiés
+        Tree source = tree;
+        boolean[] deleted = treeDeleted.clone();
+        int live = treeSize - deletedCount + pendingSize;
+        float[] pending = Arrays.copyOf(pendingVectors, pendingSize * DIMENSION);
+        long[] pendingUserIds = Arrays.copyOf(pendingIds, pendingSize);
+        long startGeneration = generation;
+        journal = new ArrayList<>();
+        try {
+            rebuildExecutor.execute(() -> rebuildInBackground(source, deleted, live, pending, pendingUserIds, startGeneration));
+        } catch (RejectedExecutionException e) {
+            journal = null;
+            logger.warn("Reconstruction de l'index facial non lancée : {}", e.getMessage());
+        }
+    }
+
+    private void rebuildInBackground(Tree source, boolean[] deleted, int live, float[] pending, long[] pendingUserIds,
+                                     long startGeneration) {
+        long start = System.currentTimeMillis();
+        Tree built = null;
+        try {
+            float[] vectors = new float[live * DIMENSION];
+            long[] ids = new long[live];
+            int count = 0;
+            for (int i = 0; i < source.size(); i++) {
+                if (!deleted[i]) {
+                    System.arraycopy(source.vectors(), i * DIMENSION, vectors, count * DIMENSION, DIMENSION);
+                    ids[count++] = source.ids()[i];
+                }
+            }
+            System.arraycopy(pending, 0, vectors, count * DIMENSION, pending.length);
+            System.arraycopy(pendingUserIds, 0, ids, count, pendingUserIds.length);
+            count += pendingUserIds.length;
+            built = build(vectors, ids, count);
+        } catch (RuntimeException e) {
+            logger.error("Reconstruction de l'index facial en échec : {}", e.getMessage(), e);
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<Change> changes = journal;
+            journal = null;
+            if (built == null || generation != startGeneration) {
+                return;
+            }
+            install(built);
+            for (Change change : changes) {
+                if (change.vector() != null) {
+                    putLocked(change.userId(), change.vector());
+                } else {
+                    removeLocked(change.userId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Index facial reconstruit : {} descripteurs en {} ms", built.size(), System.currentTimeMillis() - start);
+    }
+
+    /** Construit le VP-tree sur les {@code count} premiers descripteurs, sans verrou. */
+    private static Tree build(float[] vectors, long[] ids, int count) {
+        int[] items = new int[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = i;
+        }
+        float[] scratch = new float[count];
+        float[] nodeThresholds = new float[count];
+        int[] nodeSplits = new int[count];
+        buildNode(vectors, items, scratch, nodeThresholds, nodeSplits, 0, count);
+
+        // Réorganise les vecteurs dans l'ordre des noeuds pour des accès séquentiels pendant la recherche
+        float[] ordered = new float[count * DIMENSION];
+        long[] orderedIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(vectors, items[i] * DIMENSION, ordered, i * DIMENSION, DIMENSION);
+            orderedIds[i] = ids[items[i]];
+        }
+        return new Tree(ordered, orderedIds, nodeThresholds, nodeSplits, count);
+    }
+
+    /** Remplace l'arbre courant et vide le tampon. Appelé sous le verrou d'écriture. */
+    private void install(Tree built) {
+        tree = built;
+        treeDeleted = new boolean[built.size()];
+        deletedCount = 0;
+        pendingSize = 0;
+        generation++;
+
+        positions.clear();
+        long[] ids = built.ids();
+        for (int i = 0; i < built.size(); i++) {
+            positions.put(ids[i], i);
+        }
+    }
+
+    private static void buildNode(float[] vectors, int[] items, float[] scratch,
+                           float[] nodeThresholds, int[] nodeSplits, int lo, int hi) {
+        while (hi - lo > 1) {
+            // Point de vantage choisi au hasard puis placé en tête de l'intervalle
+            swap(items, lo, lo + ThreadLocalRandom.current().nextInt(hi - lo));
+            int vantage = items[lo] * DIMENSION;
+            for (int i = lo + 1; i < hi; i++) {
+                scratch[i] = distance(vectors, vantage, vectors, items[i] * DIMENSION);
+            }
+            int mid = (lo + 1 + hi) >>> 1;
+            select(items, scratch, lo + 1, hi - 1, mid);
+            nodeThresholds[lo] = scratch[mid];
+            nodeSplits[lo] = mid;
+            buildNode(vectors, items, scratch, nodeThresholds, nodeSplits, lo + 1, mid);
+            lo = mid;
+        }
+        if (hi - lo == 1) {
+            nodeSplits[lo] = hi;
+        }
+    }
+
+    private void searchTree(Search search, Tree tree, int lo, int hi) {
+        float[] treeVectors = tree.vectors();
+        while (lo < hi) {
+            float d = distance(search.query, treeVectors, lo * DIMENSION);
+            if (d < search.bestDistance && !treeDeleted[lo]) {
+                search.bestDistance = d;
+                search.bestId = tree.ids()[lo];
+                search.found = true;
+            }
+            int mid = tree.splits()[lo];
+            if (mid >= hi) {
+                return;
+            }
+            float mu = tree.thresholds()[lo];
+            if (d < mu) {
+                searchTree(search, tree, lo + 1, mid);
+                if (d + search.bestDistance < mu) {
+                    return;
+                }
+                lo = mid;
+            } else {
+                searchTree(search, tree, mid, hi);
+                if (d - search.bestDistance > mu) {
+                    return;
+                }
+                hi = mid;
+                lo = lo + 1;
+            }
+        }
+    }
+
+    /** Quickselect : place en position k l'élément de rang k selon {@code keys}, sur [left, right]. */
+    private static void select(int[] items, float[] keys, int left, int right, int k) {
+        while (left < right) {
+            float pivot = keys[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    swap(items, i, j);
+                    float tmp = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] items, int i, int j) {
+        int tmp = items[i];
+        items[i] = items[j];
+        items[j] = tmp;
+    }
+
+    private static float distance(float[] query, float[] block, int offset) {
+        return distance(query, 0, block, offset);
+    }
+
+    private static float distance(float[] a, int aOffset, float[] b, int bOffset) {
+        float sum = 0f;
+        for (int i = 0; i < DIMENSION; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    private static final class Search {
+        final float[] query;
+        float bestDistance;
+        long bestId;
+        boolean found;
+
+        Search(float[] query, float maxDistance) {
+            this.query = query;
+            this.bestDistance = maxDistance;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdown();
+    }
+}
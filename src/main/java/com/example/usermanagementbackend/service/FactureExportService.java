@@ -0,0 +1,85 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.repository.FactureRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export des PDF de factures en archive ZIP écrite directement dans le flux de réponse.
+ * Seul un PDF à la fois est en mémoire (et seulement s'il doit être rendu à la volée).
+ */
+@Service
+public class FactureExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FactureExportService.class);
+
+    private final FactureRepository factureRepository;
+    private final FacturePdfService facturePdfService;
+
+    public FactureExportService(FactureRepository factureRepository, FacturePdfService facturePdfService) {
+        this.factureRepository = factureRepository;
+        this.facturePdfService = facturePdfService;
+    }
+
+    public List<Long> findFactureIds(LocalDate from, LocalDate to, Long userId) {
+        return factureRepository.findIdsForExport(from, to, userId);
+    }
+
+    public void writeZip(List<Long> factureIds, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Les PDF sont déjà compressés : compression minimale pour ne pas payer de CPU pour rien
+        zip.setLevel(Deflater.BEST_SPEED);
+        List<String> erreurs = new ArrayList<>();
+        ByteArrayOutputStream rendu = new ByteArrayOutputStream();
+
+        for (Long id : factureIds) {
+            String nom = "invoice_" + id + ".pdf";
+            Path pdfPath = FacturePdfService.pdfPath(id);
+            if (Files.isRegularFile(pdfPath)) {
+                zip.putNextEntry(new ZipEntry(nom));
+                Files.copy(pdfPath, zip);
+                zip.closeEntry();
+                continue;
+            }
+
+            // PDF absent du disque : rendu à la volée, complet en mémoire avant écriture
+            // pour qu'un échec ne laisse pas d'entrée tronquée dans l'archive
+            rendu.reset();
+            try {
+                if (!facturePdfService.renderInto(id, rendu)) {
+                    erreurs.add(nom + " : facture introuvable");
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Export ZIP : rendu impossible pour la facture {} : {}", id, e.getMessage());
+                erreurs.add(nom + " : " + e.getMessage());
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry(nom));
+            rendu.writeTo(zip);
+            zip.closeEntry();
+        }
+
+        if (!erreurs.isEmpty()) {
+            zip.putNextEntry(new ZipEntry("erreurs.txt"));
+            zip.write(String.join("\n", erreurs).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+}
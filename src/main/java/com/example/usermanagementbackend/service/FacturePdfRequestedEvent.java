@@ -0,0 +1,8 @@
+package com.example.usermanagementbackend.service;
+
+/**
+ * Publié quand le PDF d'une facture doit être (re)généré.
+ * Traité par {@link FacturePdfService} après le commit de la transaction.
+ */
+public record FacturePdfRequestedEvent(Long factureId) {
+}
@@ -0,0 +1,237 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.Facture;
+import com.example.usermanagementbackend.entity.LigneFacture;
+import com.example.usermanagementbackend.enums.PdfStatus;
+import com.example.usermanagementbackend.repository.FactureRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Rendu des PDF de factures hors de la transaction qui crée ou modifie la facture.
+ *
+ * Les demandes arrivent par {@link FacturePdfRequestedEvent} après le commit et sont traitées
+ * par un pool de threads borné. Une facture déjà en cours de rendu n'est pas soumise deux fois :
+ * elle est simplement re-rendue une fois le rendu courant terminé.
+ *
+ * Un rendu en échec (FAILED) est retenté par le balayage périodique avec une attente exponentielle,
+ * jusqu'à {@code facture.pdf.max-attempts} échecs consécutifs.
+ */
+@Service
+public class FacturePdfService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacturePdfService.class);
+
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+    public static final Path INVOICES_DIR = Paths.get("invoices");
+
+    private final FactureRepository factureRepository;
+    private final LigneFactureService ligneFactureService;
+    private final InvoicePdfRenderer invoicePdfRenderer;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolTaskExecutor executor;
+    private final int maxAttempts;
+    private final long retryBaseSeconds;
+
+    // Factures soumises au pool ; la valeur indique qu'un nouveau rendu a été demandé entre-temps
+    private final ConcurrentHashMap<Long, Boolean> enCours = new ConcurrentHashMap<>();
+
+    public FacturePdfService(FactureRepository factureRepository, LigneFactureService ligneFactureService,
+                             InvoicePdfRenderer invoicePdfRenderer, PlatformTransactionManager transactionManager,
+                             @Value("${facture.pdf.workers:2}") int workers,
+                             @Value("${facture.pdf.queue-capacity:1000}") int queueCapacity,
+                             @Value("${facture.pdf.max-attempts:5}") int maxAttempts,
+                             @Value("${facture.pdf.retry-base-seconds:60}") long retryBaseSeconds) {
+        this.factureRepository = factureRepository;
+        this.ligneFactureService = ligneFactureService;
+        this.invoicePdfRenderer = invoicePdfRenderer;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxAttempts = maxAttempts;
+        this.retryBaseSeconds = retryBaseSeconds;
+
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(workers);
+        this.executor.setMaxPoolSize(workers);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("facture-pdf-");
+        this.executor.initialize();
+    }
+
+    public static Path pdfPath(Long factureId) {
+        return INVOICES_DIR.resolve("invoice_" + factureId + ".pdf");
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPdfRequested(FacturePdfRequestedEvent event) {
+        demanderRendu(event.factureId());
+    }
+
+    /** Soumet le rendu au pool, ou le replanifie si la facture est déjà en cours de rendu. */
+    public void demanderRendu(Long factureId) {
+        boolean[] nouveau = {false};
+        enCours.compute(factureId, (id, encore) -> {
+            if (encore == null) {
+                nouveau[0] = true;
+                return Boolean.FALSE;
+            }
+            return Boolean.TRUE;
+        });
+        if (!nouveau[0]) {
+            return;
+        }
+        try {
+            executor.execute(() -> rendre(factureId));
+        } catch (RejectedExecutionException e) {
+            // File pleine : la facture reste PENDING et sera reprise par reprendreRendusEnAttente
+            enCours.remove(factureId);
+            logger.warn("File de rendu PDF pleine, facture {} reportée", factureId);
+        }
+    }
+
+    /** Vrai tant que le rendu de la facture n'a pas atteint le plafond d'échecs consécutifs. */
+    public boolean peutRelancer(Facture facture) {
+        return facture.getPdfAttempts() < maxAttempts;
+    }
+
+    // Reprend les factures restées PENDING (file pleine, redémarrage de l'application)
+    // et les rendus en échec dont l'attente est écoulée
+    @Scheduled(fixedDelayString = "${facture.pdf.sweep-ms:60000}")
+    public void reprendreRendusEnAttente() {
+        for (Long factureId : factureRepository.findIdsByPdfStatus(PdfStatus.PENDING)) {
+            if (!enCours.containsKey(factureId)) {
+                demanderRendu(factureId);
+            }
+        }
+        for (Long factureId : factureRepository.findIdsToRetry(PdfStatus.FAILED, maxAttempts, LocalDateTime.now())) {
+            if (!enCours.containsKey(factureId)) {
+                factureRepository.updatePdfStatus(factureId, PdfStatus.PENDING);
+                demanderRendu(factureId);
+            }
+        }
+    }
+
+    private void rendre(Long factureId) {
+        boolean encore;
+        do {
+            rendreEtMarquer(factureId);
+            boolean[] relancer = {false};
+            enCours.computeIfPresent(factureId, (id, demande) -> {
+                if (demande) {
+                    relancer[0] = true;
+                    return Boolean.FALSE;
+                }
+                return null;
+            });
+            encore = relancer[0];
+        } while (encore);
+    }
+
+    private void rendreEtMarquer(Long factureId) {
+        int[] echecs = {0};
+        try {
+            Boolean rendu = readOnlyTransaction.execute(tx -> factureRepository.findById(factureId)
+                    .map(facture -> {
+                        echecs[0] = facture.getPdfAttempts();
+                        generateInvoicePDF(facture);
+                        return Boolean.TRUE;
+                    })
+                    .orElse(Boolean.FALSE));
+            if (!Boolean.TRUE.equals(rendu)) {
+                return; // facture supprimée entre-temps
+            }
+            if (Boolean.TRUE.equals(enCours.get(factureId))) {
+                return; // modifiée pendant le rendu : reste PENDING jusqu'au rendu suivant
+            }
+            factureRepository.markPdfRendered(factureId, PdfStatus.READY);
+        } catch (Exception e) {
+            int attempts = echecs[0] + 1;
+            long delay = Math.min(MAX_RETRY_DELAY_SECONDS, retryBaseSeconds << Math.min(attempts - 1, 20));
+            logger.error("Erreur lors de la génération du PDF pour la facture ID {} (échec {}/{}): {}",
+                    factureId, attempts, maxAttempts, e.getMessage());
+            factureRepository.markPdfFailed(factureId, PdfStatus.FAILED, LocalDateTime.now().plusSeconds(delay));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    void generateInvoicePDF(Facture facture) {
+        Path pdfPath = pdfPath(facture.getId());
+        // Écriture dans un fichier temporaire puis renommage : un lecteur ne voit jamais un PDF partiel
+        Path tmpPath = pdfPath.resolveSibling(pdfPath.getFileName() + ".tmp");
+        try {
+            Path invoicesDir = INVOICES_DIR;
+            if (!Files.exists(invoicesDir)) {
+                Files.createDirectories(invoicesDir);
+                logger.info("Created 'invoices' directory at: {}", invoicesDir.toAbsolutePath());
+            }
+
+            try (OutputStream out = Files.newOutputStream(tmpPath)) {
+                writeInvoicePdf(facture, out);
+            }
+            Files.move(tmpPath, pdfPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("PDF generated successfully at: {}", pdfPath);
+        } catch (Exception e) {
+            try {
+                Files.deleteIfExists(tmpPath);
+            } catch (IOException ignored) {
+                // le fichier temporaire sera écrasé au prochain rendu
+            }
+            logger.error("Erreur lors de la génération du PDF: {} ({})", pdfPath, e.getMessage());
+            throw new RuntimeException("Erreur lors de la génération du PDF: " + pdfPath, e);
+        }
+    }
+
+    /**
+     * Charge la facture et écrit son PDF dans {@code out} sans passer par le disque.
+     * Retourne false si la facture n'existe pas.
+     */
+    public boolean renderInto(Long factureId, OutputStream out) {
+        return Boolean.TRUE.equals(readOnlyTransaction.execute(tx -> factureRepository.findById(factureId)
+                .map(facture -> {
+                    writeInvoicePdf(facture, out);
+                    return Boolean.TRUE;
+                })
+                .orElse(Boolean.FALSE)));
+    }
+
+    /** Écrit le PDF de la facture dans {@code out}, sans fermer le flux. */
+    void writeInvoicePdf(Facture facture, OutputStream out) {
+        if (facture == null || facture.getCommande() == null) {
+            throw new IllegalArgumentException("Facture ou commande invalide");
+        }
+
+        // Validate critical data
+        if (facture.getUser() == null) {
+            logger.warn("Utilisateur manquant pour la facture ID {}", facture.getId());
+            throw new IllegalStateException("Utilisateur manquant pour la facture ID " + facture.getId());
+        }
+
+        List<LigneFacture> lignesFacture = ligneFactureService.getLignesFactureByFactureId(facture.getId());
+        invoicePdfRenderer.render(facture, lignesFacture, out);
+    }
+}
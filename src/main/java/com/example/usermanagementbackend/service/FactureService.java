@@ -1,27 +1,19 @@
 package com.example.usermanagementbackend.service;
 
 import com.example.usermanagementbackend.entity.*;
+import com.example.usermanagementbackend.enums.PdfStatus;
 import com.example.usermanagementbackend.repository.CommandeRepository;
 import com.example.usermanagementbackend.repository.FactureRepository;
 import com.example.usermanagementbackend.repository.TransactionPaiementRepository;
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfWriter;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Cell;
-import com.itextpdf.layout.element.Paragraph;
-import com.itextpdf.layout.element.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 @Service
 public class FactureService {
@@ -33,13 +25,18 @@ public class FactureService {
     private final CommandeRepository commandeRepository;
     private final LigneFactureService ligneFactureService;
     private final TransactionPaiementRepository transactionPaiementRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FacturePdfService facturePdfService;
 
     public FactureService(FactureRepository factureRepository, CommandeRepository commandeRepository,
-                          LigneFactureService ligneFactureService, TransactionPaiementRepository transactionPaiementRepository) {
+                          LigneFactureService ligneFactureService, TransactionPaiementRepository transactionPaiementRepository,
+                          ApplicationEventPublisher eventPublisher, FacturePdfService facturePdfService) {
         this.factureRepository = factureRepository;
         this.commandeRepository = commandeRepository;
         this.ligneFactureService = ligneFactureService;
         this.transactionPaiementRepository = transactionPaiementRepository;
+        this.eventPublisher = eventPublisher;
+        this.facturePdfService = facturePdfService;
     }
 
     public List<Facture> getAllFactures() {
@@ -106,6 +103,8 @@ public class FactureService {
             facture.setNumeroFacture("FACT-" + System.currentTimeMillis());
         }
 
+        facture.setPdfStatus(PdfStatus.PENDING);
+        facture.setPdfAttempts(0);
         Facture savedFacture = factureRepository.save(facture);
 
         // Save LigneFacture entries
@@ -114,18 +113,13 @@ public class FactureService {
             ligneFactureService.saveLigneFacture(ligne);
         }
 
-        // Log the facture data before generating PDF
         logger.info("Facture saved: ID={}, User={}, Commande ID={}",
                 savedFacture.getId(),
                 savedFacture.getUser() != null ? savedFacture.getUser().getNom() : "null",
                 savedFacture.getCommande().getId());
 
-        try {
-            generateInvoicePDF(savedFacture);
-        } catch (Exception e) {
-            logger.error("Erreur lors de la génération du PDF pour la facture ID {}: {}", savedFacture.getId(), e.getMessage());
-            throw new RuntimeException("Échec de la génération du PDF pour la facture", e);
-        }
+        // Rendu du PDF après le commit, hors de la transaction (voir FacturePdfService)
+        eventPublisher.publishEvent(new FacturePdfRequestedEvent(savedFacture.getId()));
 
         return savedFacture;
     }
@@ -150,20 +144,18 @@ public class FactureService {
             existing.setUser(existing.getCommande().getUser());
         }
 
+        // Contenu modifié : le compteur d'échecs du rendu repart de zéro
+        existing.setPdfStatus(PdfStatus.PENDING);
+        existing.setPdfAttempts(0);
+        existing.setPdfRetryAt(null);
         Facture savedFacture = factureRepository.save(existing);
 
-        // Log the facture data before generating PDF
         logger.info("Facture updated: ID={}, User={}, Commande ID={}",
                 savedFacture.getId(),
                 savedFacture.getUser() != null ? savedFacture.getUser().getNom() : "null",
                 savedFacture.getCommande().getId());
 
-        try {
-            generateInvoicePDF(savedFacture);
-        } catch (Exception e) {
-            logger.error("Erreur lors de la génération du PDF pour la facture mise à jour ID {}: {}", savedFacture.getId(), e.getMessage());
-            throw new RuntimeException("Échec de la génération du PDF pour la facture mise à jour", e);
-        }
+        eventPublisher.publishEvent(new FacturePdfRequestedEvent(savedFacture.getId()));
 
         return savedFacture;
     }
@@ -175,102 +167,18 @@ public class FactureService {
         factureRepository.deleteById(id);
     }
 
-    private void generateInvoicePDF(Facture facture) {
-        String pdfPath = "invoices/invoice_" + facture.getId() + ".pdf";
-        try {
-            if (facture == null || facture.getCommande() == null) {
-                throw new IllegalArgumentException("Facture ou commande invalide");
-            }
-
-            // Validate critical data
-            if (facture.getUser() == null) {
-                logger.warn("Utilisateur manquant pour la facture ID {}", facture.getId());
-                throw new IllegalStateException("Utilisateur manquant pour la facture ID " + facture.getId());
-            }
-
-            Path invoicesDir = Paths.get("invoices");
-            if (!Files.exists(invoicesDir)) {
-                Files.createDirectories(invoicesDir);
-                logger.info("Created 'invoices' directory at: {}", invoicesDir.toAbsolutePath());
-            }
-
-            PdfDocument pdfDoc = new PdfDocument(new PdfWriter(pdfPath));
-            Document doc = new Document(pdfDoc);
-
-            // User Information
-            doc.add(new Paragraph("Détails de la Facture").setBold());
-            doc.add(new Paragraph(""));
-            doc.add(new Paragraph("Informations Utilisateur").setBold());
-            String userName = facture.getUser().getNom() != null ? facture.getUser().getNom() : "N/A";
-            doc.add(new Paragraph("Nom: " + userName));
-            String userEmail = facture.getUser().getEmail() != null ? facture.getUser().getEmail() : "N/A";
-            doc.add(new Paragraph("Email: " + userEmail));
-            String userPhone = facture.getUser().getNumeroDeTelephone() != null ? facture.getUser().getNumeroDeTelephone() : "N/A";
-            doc.add(new Paragraph("Téléphone: " + userPhone));
-            doc.add(new Paragraph(""));
-
-            // Delivery Information
-            Commande commande = facture.getCommande();
-            doc.add(new Paragraph("Informations de Livraison").setBold());
-            doc.add(new Paragraph("Téléphone: " + (commande.getTelephone() != null ? commande.getTelephone() : "N/A")));
-            doc.add(new Paragraph("Gouvernorat: " + (commande.getGouvernement() != null ? commande.getGouvernement() : "N/A")));
-            doc.add(new Paragraph("Adresse: " + (commande.getAdresse() != null ? commande.getAdresse() : "N/A")));
-            doc.add(new Paragraph(""));
-
-            // Invoice Details
-            doc.add(new Paragraph("Détails de la Facture").setBold());
-            doc.add(new Paragraph("Numéro de Facture: " + (facture.getNumeroFacture() != null ? facture.getNumeroFacture() : "N/A")));
-            doc.add(new Paragraph("Date de Facture: " + (facture.getDateFacture() != null ? facture.getDateFacture().toString() : "N/A")));
-            doc.add(new Paragraph("Commande ID: " + commande.getId()));
-            doc.add(new Paragraph("Statut: " + (commande.getStatus() != null ? commande.getStatus().toString() : "N/A")));
-            doc.add(new Paragraph(""));
-
-            // Payment Status
-            Set<TransactionPaiement> transactions = commande.getTransactions();
-            String paymentStatus = transactions.isEmpty() ? "Non payé" : transactions.iterator().next().getPaymentStatus();
-            doc.add(new Paragraph("Statut du paiement: " + paymentStatus));
-            if (!transactions.isEmpty()) {
-                TransactionPaiement transaction = transactions.iterator().next();
-                if (transaction.getPaymentIntentId() != null) {
-                    doc.add(new Paragraph("ID Paiement Stripe: " + transaction.getPaymentIntentId()));
-                }
-            }
-            doc.add(new Paragraph(""));
-
-            // Invoice Lines Table
-            List<LigneFacture> lignesFacture = ligneFactureService.getLignesFactureByFactureId(facture.getId());
-            if (!lignesFacture.isEmpty()) {
-                Table table = new Table(new float[]{2, 2, 1, 1, 1, 1});
-                table.addHeaderCell(new Cell().add(new Paragraph("Produit").setBold()));
-                table.addHeaderCell(new Cell().add(new Paragraph("Description").setBold()));
-                table.addHeaderCell(new Cell().add(new Paragraph("Quantité").setBold()));
-                table.addHeaderCell(new Cell().add(new Paragraph("Prix Unitaire").setBold()));
-                table.addHeaderCell(new Cell().add(new Paragraph("Total HT").setBold()));
-                table.addHeaderCell(new Cell().add(new Paragraph("TTC").setBold()));
-
-                for (LigneFacture ligne : lignesFacture) {
-                    table.addCell(new Cell().add(new Paragraph(ligne.getProduit() != null && ligne.getProduit().getNom() != null ? ligne.getProduit().getNom() : "N/A")));
-                    table.addCell(new Cell().add(new Paragraph(ligne.getProduit() != null && ligne.getProduit().getDescription() != null ? ligne.getProduit().getDescription() : "N/A")));
-                    table.addCell(new Cell().add(new Paragraph(String.valueOf(ligne.getQte()))));
-                    table.addCell(new Cell().add(new Paragraph(String.format("%.2f", ligne.getPrixUnitaire()))));
-                    table.addCell(new Cell().add(new Paragraph(String.format("%.2f", ligne.getTotal() != null ? ligne.getTotal() : 0.0))));
-                    table.addCell(new Cell().add(new Paragraph(String.format("%.2f", ligne.getTtc() != null ? ligne.getTtc() : 0.0))));
-                }
-
-                doc.add(table);
-                doc.add(new Paragraph(""));
-            } else {
-                doc.add(new Paragraph("Aucune ligne de facture disponible."));
-                doc.add(new Paragraph(""));
-            }
+    /** Relance le rendu du PDF d'une facture existante (PDF absent du disque). */
+    public void regenererPdf(Long id) {
+        factureRepository.updatePdfStatus(id, PdfStatus.PENDING);
+        facturePdfService.demanderRendu(id);
+    }
 
-            // Total Amount
-            doc.add(new Paragraph("Montant Total: TND " + String.format("%.2f", facture.getMontantTotal() != null ? facture.getMontantTotal() : 0.0)).setBold());
-            doc.close();
-            logger.info("PDF generated successfully at: {}", pdfPath);
-        } catch (Exception e) {
-            logger.error("Erreur lors de la génération du PDF: {} ({})", pdfPath, e.getMessage());
-            throw new RuntimeException("Erreur lors de la génération du PDF: " + pdfPath, e);
+    /** Relance un rendu en échec si le plafond de tentatives n'est pas atteint ; faux sinon. */
+    public boolean relancerRenduEchoue(Facture facture) {
+        if (!facturePdfService.peutRelancer(facture)) {
+            return false;
         }
+        regenererPdf(facture.getId());
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -10,7 +10,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -30,6 +32,9 @@ public class FideliteService implements IFideliteService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     // --- CRUD Operations ---
     @Override
     @Transactional(readOnly = true)
@@ -152,21 +157,24 @@ public class FideliteService implements IFideliteService {
     }
 
     // --- Scheduled Task for Birthday Points ---
+    // Parcours par lots ; chaque bonus est ajouté dans sa propre transaction
+    // pour qu'un échec isolé n'annule pas les autres.
     @Scheduled(cron = "0 0 9 * * *") // Runs daily at 9:00 AM
-    @Transactional
     public void checkAndAddBirthdayPoints() {
-        List<User> allUsers = userService.getAllUsers();
         LocalDate today = LocalDate.now();
-        for (User user : allUsers) {
-            if (user.getDateOfBirth() != null &&
-                    user.getDateOfBirth().getMonthValue() == today.getMonthValue() &&
-                    user.getDateOfBirth().getDayOfMonth() == today.getDayOfMonth()) {
-                try {
-                    addBirthdayPoints(user.getId());
-                } catch (Exception e) {
-                    logger.error("Error adding birthday points for user {}: {}", user.getId(), e.getMessage(), e);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        userService.processUsersInChunks(users -> {
+            for (User user : users) {
+                if (user.getDateOfBirth() != null &&
+                        user.getDateOfBirth().getMonthValue() == today.getMonthValue() &&
+                        user.getDateOfBirth().getDayOfMonth() == today.getDayOfMonth()) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> addBirthdayPoints(user.getId()));
+                    } catch (Exception e) {
+                        logger.error("Error adding birthday points for user {}: {}", user.getId(), e.getMessage(), e);
+                    }
                 }
             }
-        }
+        });
     }
-}
\ No newline at end of file
+}
@@ -1,33 +1,128 @@
 package com.example.usermanagementbackend.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Distance entre deux endroits via l'API Distance Matrix de Google, sans bloquer de thread.
+ *
+ * L'appel passe par {@link OutboundHttpClient}. Si Google ne répond pas (erreur, timeout,
+ * HTTP non 2xx ou disjoncteur ouvert), la réponse est calculée localement au même format :
+ * distance à vol d'oiseau corrigée du facteur de détour, durée à vitesse moyenne, et
+ * {@code "fallback": true}. Les endroits sont soit des coordonnées "lat,lng", soit des
+ * adresses reconnues par {@link AddressGazetteer}.
+ */
 @Service
 public class GoogleMapsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(GoogleMapsService.class);
+
+    private static final Pattern LAT_LNG = Pattern.compile("\\s*(-?\\d+(?:\\.\\d+)?)\\s*,\\s*(-?\\d+(?:\\.\\d+)?)\\s*");
+
+    private final OutboundHttpClient outboundHttpClient;
+    private final AddressGazetteer addressGazetteer;
+    private final ObjectMapper objectMapper;
+
     // Clé API injectée depuis application.properties
     @Value("${google.maps.api.key}")
     private String apiKey;
 
-    private static final String BASE_URL = "https://maps.googleapis.com/maps/api/distancematrix/json";
+    @Value("${google.maps.base-url:https://maps.googleapis.com/maps/api/distancematrix/json}")
+    private String baseUrl;
+
+    @Value("${google.maps.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${google.maps.fallback.speed-kmh:40}")
+    private double fallbackSpeedKmh;
+
+    public GoogleMapsService(OutboundHttpClient outboundHttpClient, AddressGazetteer addressGazetteer,
+                             ObjectMapper objectMapper) {
+        this.outboundHttpClient = outboundHttpClient;
+        this.addressGazetteer = addressGazetteer;
+        this.objectMapper = objectMapper;
+    }
+
+    // Méthode pour obtenir la distance entre deux endroits (réponse JSON Distance Matrix)
+    public CompletableFuture<String> getDistance(String origin, String destination) {
+        String url = String.format("%s?origins=%s&destinations=%s&key=%s", baseUrl,
+                encode(origin), encode(destination), encode(apiKey));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+
+        return outboundHttpClient.sendAsync("google.distancematrix", request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                        throw new IllegalStateException("Google Maps a répondu HTTP " + response.statusCode());
+                    }
+                    return response.body();
+                })
+                .exceptionally(e -> {
+                    logger.warn("Distance Google Maps indisponible ({} → {}), repli local : {}",
+                            origin, destination, OutboundHttpClient.rootMessage(e));
+                    return fallback(origin, destination);
+                });
+    }
 
-    // Méthode pour obtenir la distance entre deux endroits
-    public String getDistance(String origin, String destination) {
-        // Construction de l'URL avec les paramètres
-        String url = String.format("%s?origins=%s&destinations=%s&key=%s", BASE_URL, origin, destination, apiKey);
+    /** Réponse au format Distance Matrix calculée sans appel réseau. */
+    String fallback(String origin, String destination) {
+        double[] from = locate(origin);
+        double[] to = locate(destination);
 
-        RestTemplate restTemplate = new RestTemplate();
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("status", "OK");
+        root.putArray("origin_addresses").add(origin);
+        root.putArray("destination_addresses").add(destination);
+        ArrayNode elements = root.putArray("rows").addObject().putArray("elements");
+        ObjectNode element = elements.addObject();
+        if (from == null || to == null) {
+            element.put("status", "NOT_FOUND");
+        } else {
+            double km = RouteDistanceService.haversineKm(from[0], from[1], to[0], to[1]) * addressGazetteer.getRoadFactor();
+            long seconds = Math.round(km / fallbackSpeedKmh * 3600);
+            element.put("status", "OK");
+            ObjectNode distance = element.putObject("distance");
+            distance.put("text", String.format(Locale.US, "%.1f km", km));
+            distance.put("value", Math.round(km * 1000));
+            ObjectNode duration = element.putObject("duration");
+            duration.put("text", Math.max(1, Math.round(seconds / 60.0)) + " mins");
+            duration.put("value", seconds);
+        }
+        root.put("fallback", true);
+        return root.toString();
+    }
 
-        try {
-            // Effectuer la requête HTTP GET
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
-            return response.getBody();
-        } catch (Exception e) {
-            // Gérer les erreurs, par exemple, une clé API invalide
-            return "Erreur lors de l'appel à l'API Google Maps : " + e.getMessage();
+    private double[] locate(String place) {
+        if (place == null) {
+            return null;
+        }
+        Matcher matcher = LAT_LNG.matcher(place);
+        if (matcher.matches()) {
+            return new double[]{Double.parseDouble(matcher.group(1)), Double.parseDouble(matcher.group(2))};
         }
+        AddressGazetteer.Place resolved = addressGazetteer.resolve(place, null);
+        return resolved != null ? new double[]{resolved.lat(), resolved.lng()} : null;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value != null ? value : "", StandardCharsets.UTF_8);
     }
 }
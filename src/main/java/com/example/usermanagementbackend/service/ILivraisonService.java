@@ -1,12 +1,21 @@
 package com.example.usermanagementbackend.service;
 
+import com.example.usermanagementbackend.dto.CursorPage;
 import com.example.usermanagementbackend.dto.LivraisonDTO;
+import com.example.usermanagementbackend.dto.LivraisonListItemDTO;
+import com.example.usermanagementbackend.entity.StatusLivraison;
+import com.example.usermanagementbackend.entity.TypeLivraison;
+
+import java.time.LocalDate;
 import java.util.List;
 
 public interface ILivraisonService {
     LivraisonDTO addLivraison(LivraisonDTO livraisonDTO);
     LivraisonDTO getLivraisonById(Long id);
     List<LivraisonDTO> getAllLivraisons();
+    CursorPage<LivraisonListItemDTO> getLivraisonsPage(Long cursor, int size, StatusLivraison status, TypeLivraison type,
+                                                       Long livreurId, LocalDate from, LocalDate to);
+    List<LivraisonDTO> getTournee(String tourneeId);
     LivraisonDTO updateLivraison(Long id, LivraisonDTO livraisonDTO);
     void deleteLivraison(Long id);
 
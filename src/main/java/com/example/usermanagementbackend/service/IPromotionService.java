@@ -14,8 +14,8 @@ public interface IPromotionService {
     Promotion updatePromotion(Integer id, Promotion promotion);
     void deletePromotion(Integer id);
     void appliquerPromotionExpirationProduit();
-    void bulkActivate(List<Integer> ids);
-    void bulkDeactivate(List<Integer> ids);
+    int bulkActivate(List<Integer> ids);
+    int bulkDeactivate(List<Integer> ids);
     void bulkDelete(List<Integer> ids);
     List<Produit> getProduitsProchesExpiration();
     // Nouvelle méthode pour récupérer les promotions dynamiques
@@ -0,0 +1,190 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.*;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rendu du PDF d'une facture vers n'importe quel {@link OutputStream}.
+ *
+ * Les polices sont chargées une seule fois : une {@link PdfFont} est liée à un document,
+ * on garde donc en cache les {@link FontProgram} (métriques déjà lues) et on n'en dérive
+ * qu'une PdfFont légère par document. Le tableau des lignes est écrit en mode "large table"
+ * et vidé régulièrement, pour qu'une facture de plusieurs centaines de lignes ne garde pas
+ * toute sa mise en page en mémoire. Les montants sont formatés sans {@code String.format}.
+ */
+@Service
+public class InvoicePdfRenderer {
+
+    private static final float[] COLUMN_WIDTHS = {2, 2, 1, 1, 1, 1};
+    private static final String[] COLUMN_HEADERS = {"Produit", "Description", "Quantité", "Prix Unitaire", "Total HT", "TTC"};
+    private static final int TABLE_FLUSH_ROWS = 50;
+    private static final String NA = "N/A";
+
+    private final FontProgram regularFontProgram;
+    private final FontProgram boldFontProgram;
+
+    public InvoicePdfRenderer() {
+        try {
+            this.regularFontProgram = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+            this.boldFontProgram = FontProgramFactory.createFont(StandardFonts.HELVETICA_BOLD);
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de charger les polices PDF", e);
+        }
+    }
+
+    /** Écrit le PDF de la facture dans {@code out}, sans fermer le flux. */
+    public void render(Facture facture, List<LigneFacture> lignesFacture, OutputStream out) {
+        PdfWriter writer = new PdfWriter(out, new WriterProperties().setCompressionLevel(CompressionConstants.BEST_SPEED));
+        writer.setCloseStream(false);
+        PdfDocument pdfDoc = new PdfDocument(writer);
+        PdfFont regular = PdfFontFactory.createFont(regularFontProgram, PdfEncodings.WINANSI);
+        PdfFont bold = PdfFontFactory.createFont(boldFontProgram, PdfEncodings.WINANSI);
+        Document doc = new Document(pdfDoc);
+        doc.setFont(regular);
+        StringBuilder sb = new StringBuilder(64);
+
+        // User Information
+        User user = facture.getUser();
+        doc.add(new Paragraph("Détails de la Facture").setFont(bold));
+        doc.add(new Paragraph(""));
+        doc.add(new Paragraph("Informations Utilisateur").setFont(bold));
+        doc.add(new Paragraph("Nom: " + orNA(user.getNom())));
+        doc.add(new Paragraph("Email: " + orNA(user.getEmail())));
+        doc.add(new Paragraph("Téléphone: " + orNA(user.getNumeroDeTelephone())));
+        doc.add(new Paragraph(""));
+
+        // Delivery Information
+        Commande commande = facture.getCommande();
+        doc.add(new Paragraph("Informations de Livraison").setFont(bold));
+        doc.add(new Paragraph("Téléphone: " + orNA(commande.getTelephone())));
+        doc.add(new Paragraph("Gouvernorat: " + orNA(commande.getGouvernement())));
+        doc.add(new Paragraph("Adresse: " + orNA(commande.getAdresse())));
+        doc.add(new Paragraph(""));
+
+        // Invoice Details
+        doc.add(new Paragraph("Détails de la Facture").setFont(bold));
+        doc.add(new Paragraph("Numéro de Facture: " + orNA(facture.getNumeroFacture())));
+        doc.add(new Paragraph("Date de Facture: " + (facture.getDateFacture() != null ? facture.getDateFacture().toString() : NA)));
+        doc.add(new Paragraph("Commande ID: " + commande.getId()));
+        doc.add(new Paragraph("Statut: " + (commande.getStatus() != null ? commande.getStatus().toString() : NA)));
+        doc.add(new Paragraph(""));
+
+        // Payment Status
+        Set<TransactionPaiement> transactions = commande.getTransactions();
+        TransactionPaiement transaction = transactions == null || transactions.isEmpty() ? null : transactions.iterator().next();
+        doc.add(new Paragraph("Statut du paiement: " + (transaction == null ? "Non payé" : transaction.getPaymentStatus())));
+        if (transaction != null && transaction.getPaymentIntentId() != null) {
+            doc.add(new Paragraph("ID Paiement Stripe: " + transaction.getPaymentIntentId()));
+        }
+        doc.add(new Paragraph(""));
+
+        // Invoice Lines Table
+        if (lignesFacture != null && !lignesFacture.isEmpty()) {
+            Table table = new Table(COLUMN_WIDTHS, true);
+            for (String header : COLUMN_HEADERS) {
+                table.addHeaderCell(new Cell().add(new Paragraph(header).setFont(bold)));
+            }
+            doc.add(table);
+
+            int rows = 0;
+            for (LigneFacture ligne : lignesFacture) {
+                Produit produit = ligne.getProduit();
+                table.addCell(cell(produit != null ? orNA(produit.getNom()) : NA));
+                table.addCell(cell(produit != null ? orNA(produit.getDescription()) : NA));
+                table.addCell(cell(String.valueOf(ligne.getQte())));
+                table.addCell(cell(amount(sb, ligne.getPrixUnitaire())));
+                table.addCell(cell(amount(sb, ligne.getTotal() != null ? ligne.getTotal() : 0.0)));
+                table.addCell(cell(amount(sb, ligne.getTtc() != null ? ligne.getTtc() : 0.0)));
+                if (++rows % TABLE_FLUSH_ROWS == 0) {
+                    table.flush();
+                }
+            }
+            table.complete();
+            doc.add(new Paragraph(""));
+        } else {
+            doc.add(new Paragraph("Aucune ligne de facture disponible."));
+            doc.add(new Paragraph(""));
+        }
+
+        // Total Amount
+        sb.setLength(0);
+        sb.append("Montant Total: TND ");
+        appendAmount(sb, facture.getMontantTotal() != null ? facture.getMontantTotal() : 0.0);
+        doc.add(new Paragraph(sb.toString()).setFont(bold));
+        doc.close();
+    }
+
+    private static Cell cell(String text) {
+        return new Cell().add(new Paragraph(text));
+    }
+
+    private static String orNA(String value) {
+        return value != null ? value : NA;
+    }
+
+    private static String amount(StringBuilder sb, Double value) {
+        if (value == null) {
+            // même rendu qu'avant pour un prix unitaire absent
+            return "null";
+        }
+        sb.setLength(0);
+        appendAmount(sb, value);
+        return sb.toString();
+    }
+
+    /**
+     * Ajoute {@code value} arrondi à deux décimales (demi supérieur, séparateur '.').
+     * Chemin rapide en entiers ; les valeurs à égale distance de deux centimes passent par
+     * BigDecimal pour arrondir comme {@code String.format("%.2f")}.
+     */
+    static void appendAmount(StringBuilder sb, double value) {
+        if (!Double.isFinite(value)) {
+            sb.append(value);
+            return;
+        }
+        if (Math.abs(value) >= 1e13) {
+            sb.append(BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+        double scaled = Math.abs(value) * 100;
+        long cents = (long) scaled;
+        double fraction = scaled - cents;
+        if (Math.abs(fraction - 0.5) < 1e-6) {
+            sb.append(BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+        if (fraction > 0.5) {
+            cents++;
+        }
+        if (value < 0 && cents != 0) {
+            sb.append('-');
+        }
+        sb.append(cents / 100).append('.');
+        long rest = cents % 100;
+        if (rest < 10) {
+            sb.append('0');
+        }
+        sb.append(rest);
+    }
+}
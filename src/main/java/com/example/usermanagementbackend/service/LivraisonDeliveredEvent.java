@@ -0,0 +1,13 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.TypeLivraison;
+
+import java.time.LocalDateTime;
+
+/**
+ * Publié quand une livraison passe à LIVRE. {@link DeliveryEtaService} ajoute sa durée
+ * aux statistiques d'ETA après le commit.
+ */
+public record LivraisonDeliveredEvent(String gouvernorat, TypeLivraison type, LocalDateTime createdAt,
+                                      LocalDateTime deliveredAt) {
+}
@@ -1,6 +1,8 @@
 package com.example.usermanagementbackend.service;
 
+import com.example.usermanagementbackend.dto.CursorPage;
 import com.example.usermanagementbackend.dto.LivraisonDTO;
+import com.example.usermanagementbackend.dto.LivraisonListItemDTO;
 import com.example.usermanagementbackend.entity.Commande;
 import com.example.usermanagementbackend.entity.Livraison;
 import com.example.usermanagementbackend.entity.StatusLivraison;
@@ -10,11 +12,16 @@ import com.example.usermanagementbackend.repository.CommandeRepository;
 import com.example.usermanagementbackend.repository.LivraisonRepository;
 import com.example.usermanagementbackend.repository.LivreurRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,8 +31,18 @@ public class LivraisonService implements ILivraisonService {
     private final LivraisonRepository livraisonRepository;
     private final LivreurRepository livreurRepository;
     private final CommandeRepository commandeRepository;
+    private final RouteDistanceService routeDistanceService;
+    private final AddressGazetteer addressGazetteer;
+    private final DeliveryPhotoStore deliveryPhotoStore;
+    // Décompte des livraisons actives, positions et statistiques d'ETA : appliqués seulement après le commit
+    private final ApplicationEventPublisher eventPublisher;
 
-    private static final double CAR_EMISSION_FACTOR = 0.2;
+    // kg CO2 par km ; après un changement, CarbonFootprintBatchService recalcule l'historique
+    @Value("${carbon.emission-factor:0.2}")
+    private double carEmissionFactor;
+
+    @Value("${livraison.page.max-size:200}")
+    private int maxPageSize;
 
     @Override
     @Transactional
@@ -45,6 +62,7 @@ public class LivraisonService implements ILivraisonService {
 
         // Set address from Commande
         livraison.setAddress(commande.getAdresse());
+        livraison.setPhotoRef(photoRef(dto.getPhoto()));
 
         // Calculate and set carbon footprint using GPS coordinates if available from DTO
         Double currentLat = dto.getCurrentLat();
@@ -61,7 +79,7 @@ public class LivraisonService implements ILivraisonService {
                         destinationLat, destinationLng);
             } else {
                 // Fallback to address-based calculation
-                carbonFootprint = calculateCarbonFootprint(livraison.getTypeLivraison(), commande.getAdresse());
+                carbonFootprint = calculateCarbonFootprint(livraison.getTypeLivraison(), commande.getAdresse(), commande.getGouvernement());
             }
 
             // Extra validation to ensure we store a non-null value
@@ -77,6 +95,13 @@ public class LivraisonService implements ILivraisonService {
         }
 
         livraison.setCarbonFootprint(carbonFootprint);
+        livraison.setCarbonEmissionFactor(carEmissionFactor);
+        if (currentLat != null && currentLng != null && destinationLat != null && destinationLng != null) {
+            livraison.setOriginLat(currentLat);
+            livraison.setOriginLng(currentLng);
+            livraison.setDestinationLat(destinationLat);
+            livraison.setDestinationLng(destinationLng);
+        }
 
         // Validate livreur exists
         livreurRepository.findById(livraison.getLivreur().getId())
@@ -90,6 +115,13 @@ public class LivraisonService implements ILivraisonService {
         }
 
         Livraison savedLivraison = livraisonRepository.save(livraison);
+        Long livreurId = savedLivraison.getLivreur().getId();
+        if (isActive(savedLivraison.getStatusLivraison())) {
+            eventPublisher.publishEvent(new CourierLoadChangedEvent(livreurId, 1));
+        }
+        if (currentLat != null && currentLng != null) {
+            eventPublisher.publishEvent(new CourierPositionReportedEvent(livreurId, savedLivraison.getId(), currentLat, currentLng));
+        }
         return LivraisonMapper.toDTO(savedLivraison);
     }
 
@@ -107,6 +139,34 @@ public class LivraisonService implements ILivraisonService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<LivraisonDTO> getTournee(String tourneeId) {
+        List<LivraisonDTO> arrets = livraisonRepository.findByTourneeIdOrderByOrdreTourneeAsc(tourneeId).stream()
+                .map(LivraisonMapper::toDTO)
+                .collect(Collectors.toList());
+        if (arrets.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tournée introuvable : " + tourneeId);
+        }
+        return arrets;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<LivraisonListItemDTO> getLivraisonsPage(Long cursor, int size, StatusLivraison status, TypeLivraison type,
+                                                              Long livreurId, LocalDate from, LocalDate to) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        // Une ligne de plus que demandé pour savoir s'il reste une page
+        List<LivraisonListItemDTO> items = livraisonRepository.findListItems(cursor, status, type, livreurId, from, to,
+                PageRequest.of(0, pageSize + 1));
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+        Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
     @Override
     @Transactional
     public LivraisonDTO updateLivraison(Long id, LivraisonDTO dto) {
@@ -119,7 +179,11 @@ public class LivraisonService implements ILivraisonService {
 
         Livraison updated = LivraisonMapper.toEntity(dto);
         updated.setId(id);
+        updated.setCreatedAt(existing.getCreatedAt()); // Absent du DTO, le merge l'effacerait
+        updated.setTourneeId(existing.getTourneeId()); // Tournée fixée par DispatchService
+        updated.setOrdreTournee(existing.getOrdreTournee());
         updated.setAddress(commande.getAdresse()); // Set address from Commande
+        updated.setPhotoRef(photoRef(dto.getPhoto()));
 
         // Calculate and set carbon footprint using GPS coordinates if available from DTO
         Double currentLat = dto.getCurrentLat();
@@ -172,35 +236,43 @@ public class LivraisonService implements ILivraisonService {
                         carbonFootprint = existingLivraison.getCarbonFootprint();
                         System.out.println("DEBUG - Using existing carbon footprint: " + carbonFootprint + " kg CO2");
                     } else {
-                        // Fallback to address-based calculation using geocoding
-                        System.out.println("DEBUG - GPS coordinates missing, using geocoding with address: " + commande.getAdresse());
-                        // Try to geocode the address if we have one
-                        if (commande.getAdresse() != null && !commande.getAdresse().trim().isEmpty()) {
-                            carbonFootprint = calculateCarbonFootprintWithAddress(updated.getTypeLivraison(), commande.getAdresse());
-                        } else {
-                            // Last resort fallback
-                            System.out.println("DEBUG - Address is also missing, using default distance estimation");
-                            carbonFootprint = calculateCarbonFootprint(updated.getTypeLivraison(), commande.getAdresse());
-                        }
+                        // Fallback to address-based calculation using the gazetteer
+                        System.out.println("DEBUG - GPS coordinates missing, using gazetteer with address: " + commande.getAdresse());
+                        carbonFootprint = calculateCarbonFootprint(updated.getTypeLivraison(), commande.getAdresse(), commande.getGouvernement());
                     }
                 }
             } catch (Exception e) {
                 System.err.println("Error during carbon footprint calculation: " + e.getMessage());
                 e.printStackTrace();
                 // Fallback to default calculation if anything fails
-                carbonFootprint = calculateCarbonFootprint(updated.getTypeLivraison(), commande.getAdresse());
+                carbonFootprint = calculateCarbonFootprint(updated.getTypeLivraison(), commande.getAdresse(), commande.getGouvernement());
             }
         }
 
         // Ensure we never have a null carbon footprint
         if (carbonFootprint == null) {
-            carbonFootprint = calculateCarbonFootprint(updated.getTypeLivraison(), commande.getAdresse());
+            carbonFootprint = calculateCarbonFootprint(updated.getTypeLivraison(), commande.getAdresse(), commande.getGouvernement());
         }
 
         System.out.println("DEBUG - Final calculated carbon footprint: " + carbonFootprint + " kg CO2");
         System.out.println("DEBUG - Is based on GPS coordinates: " + (isExistingGpsBased || currentLat != null));
         updated.setCarbonFootprint(carbonFootprint);
 
+        // Conserve le trajet GPS et le facteur d'émission associés à l'empreinte stockée
+        if (currentLat != null && currentLng != null && destinationLat != null && destinationLng != null) {
+            updated.setOriginLat(currentLat);
+            updated.setOriginLng(currentLng);
+            updated.setDestinationLat(destinationLat);
+            updated.setDestinationLng(destinationLng);
+        } else if (existingLivraison != null) {
+            updated.setOriginLat(existingLivraison.getOriginLat());
+            updated.setOriginLng(existingLivraison.getOriginLng());
+            updated.setDestinationLat(existingLivraison.getDestinationLat());
+            updated.setDestinationLng(existingLivraison.getDestinationLng());
+        }
+        boolean keptExisting = existingLivraison != null && carbonFootprint.equals(existingLivraison.getCarbonFootprint());
+        updated.setCarbonEmissionFactor(keptExisting ? existingLivraison.getCarbonEmissionFactor() : carEmissionFactor);
+
         // Prevent changing status from LIVRE or NON_LIVRE
         if (existing.getStatusLivraison() == StatusLivraison.LIVRE && updated.getStatusLivraison() != StatusLivraison.LIVRE) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot change status from LIVRE");
@@ -228,10 +300,33 @@ public class LivraisonService implements ILivraisonService {
         // Still save the commande to ensure other potential changes are persisted
         commandeRepository.save(commande);
 
+        // Lus avant save : le merge recopie le nouvel état dans l'entité gérée
+        boolean wasActive = isActive(existing.getStatusLivraison());
+        boolean wasDelivered = existing.getStatusLivraison() == StatusLivraison.LIVRE;
+        Long previousLivreurId = existing.getLivreur() != null ? existing.getLivreur().getId() : null;
+
         Livraison savedLivraison = livraisonRepository.save(updated);
+        Long livreurId = savedLivraison.getLivreur().getId();
+        if (wasActive && previousLivreurId != null) {
+            eventPublisher.publishEvent(new CourierLoadChangedEvent(previousLivreurId, -1));
+        }
+        if (isActive(savedLivraison.getStatusLivraison())) {
+            eventPublisher.publishEvent(new CourierLoadChangedEvent(livreurId, 1));
+        }
+        if (!wasDelivered && savedLivraison.getStatusLivraison() == StatusLivraison.LIVRE) {
+            eventPublisher.publishEvent(new LivraisonDeliveredEvent(commande.getGouvernement(),
+                    savedLivraison.getTypeLivraison(), savedLivraison.getCreatedAt(), LocalDateTime.now()));
+        }
+        if (currentLat != null && currentLng != null) {
+            eventPublisher.publishEvent(new CourierPositionReportedEvent(livreurId, id, currentLat, currentLng));
+        }
         return LivraisonMapper.toDTO(savedLivraison);
     }
 
+    private static boolean isActive(StatusLivraison status) {
+        return status == StatusLivraison.TAKE_IT || status == StatusLivraison.EN_COURS;
+    }
+
     @Override
     @Transactional
     public void deleteLivraison(Long id) {
@@ -243,171 +338,27 @@ public class LivraisonService implements ILivraisonService {
         commande.setLivreurId(null); // Clear livreur_id when deleting livraison
         commandeRepository.save(commande);
         livraisonRepository.deleteById(id);
-    }
-
-    /**
-     * Calculate driving distance using OSRM routing API for accurate road distances
-     */
-    private Double calculateDrivingDistance(Double startLat, Double startLng, Double endLat, Double endLng) {
-        try {
-            // Create the OSRM API URL for driving directions
-            // Must use Locale.US to ensure decimal points (not commas) in coordinates
-            String osrmUrl = String.format(java.util.Locale.US,
-                    "https://router.project-osrm.org/route/v1/driving/%.6f,%.6f;%.6f,%.6f?overview=false",
-                    startLng, startLat, endLng, endLat
-            );
-
-            System.out.println("DEBUG - Calling OSRM API: " + osrmUrl);
-
-            // Create HTTP connection
-            java.net.URL url = new java.net.URL(osrmUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(10000); // 10 second timeout
-            connection.setReadTimeout(10000);    // 10 second timeout
-
-            // Get response
-            int responseCode = connection.getResponseCode();
-
-            if (responseCode == 200) {
-                // Read and parse the response
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(connection.getInputStream())
-                );
-                StringBuilder response = new StringBuilder();
-                String line;
-
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                String jsonResponse = response.toString();
-                System.out.println("DEBUG - OSRM response received");
-
-                // Extract the distance value more carefully from JSON
-                // Looking for pattern like "distance":12345.6 in the JSON
-                try {
-                    // Simple regex-based approach to extract the distance
-                    java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\"distance\"\s*:\s*(\\d+\\.?\\d*)");
-                    java.util.regex.Matcher matcher = pattern.matcher(jsonResponse);
-
-                    if (matcher.find()) {
-                        String distanceStr = matcher.group(1);
-                        double distanceMeters = Double.parseDouble(distanceStr);
-                        double distanceKm = distanceMeters / 1000.0;
-
-                        System.out.println("DEBUG - OSRM returned driving distance: " + distanceKm + " km");
-                        return distanceKm;
-                    } else {
-                        System.out.println("DEBUG - Could not find distance value in OSRM response");
-                        System.out.println("DEBUG - Response sample: " +
-                                (jsonResponse.length() > 200 ? jsonResponse.substring(0, 200) + "..." : jsonResponse));
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error parsing OSRM response: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            } else {
-                System.err.println("DEBUG - OSRM API error: " + responseCode);
-            }
-
-            return null; // Return null to trigger fallback to Haversine
-        } catch (Exception e) {
-            System.err.println("Error calculating driving distance: " + e.getMessage());
-            e.printStackTrace();
-            return null; // Return null to trigger fallback to Haversine
+        if (isActive(livraison.getStatusLivraison()) && livraison.getLivreur() != null) {
+            eventPublisher.publishEvent(new CourierLoadChangedEvent(livraison.getLivreur().getId(), -1));
         }
     }
 
-    private Double calculateHaversineDistance(Double lat1, Double lng1, Double lat2, Double lng2) {
-        // Radius of the Earth in kilometers
-        final double EARTH_RADIUS = 6371.0;
-
-        // Convert degrees to radians
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lngDistance = Math.toRadians(lng2 - lng1);
-
-        // Apply Haversine formula
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lngDistance / 2) * Math.sin(lngDistance / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        // Distance in kilometers
-        return EARTH_RADIUS * c;
-    }
-
     /**
-     * Calculate carbon footprint using address-based geocoding approach
-     * This method will attempt to extract useful location information from the address
-     * and create a more varied carbon footprint value than the simple keyword-based method
+     * Référence de la photo envoyée par le client : une nouvelle image en base64 est enregistrée
+     * dans le stockage, l'URL d'une photo déjà enregistrée est conservée telle quelle.
      */
-    private Double calculateCarbonFootprintWithAddress(TypeLivraison typeLivraison, String address) {
+    private String photoRef(String photo) {
+        if (photo == null || photo.isBlank()) {
+            return null;
+        }
+        if (photo.startsWith(DeliveryPhotoStore.URL_PREFIX)) {
+            String ref = photo.substring(DeliveryPhotoStore.URL_PREFIX.length());
+            return DeliveryPhotoStore.isRef(ref) ? ref : null;
+        }
         try {
-            System.out.println("DEBUG - Using enhanced address-based calculation: " + address);
-
-            // Extract meaningful location values from the address
-            String lowerCaseAddress = address.toLowerCase();
-            double estimatedDistanceKm;
-
-            // Create a more dynamic distance based on address contents
-            if (lowerCaseAddress.contains("tunis") || lowerCaseAddress.contains("sfax") ||
-                    lowerCaseAddress.contains("sousse") || lowerCaseAddress.contains("city")) {
-                // Larger cities typically have shorter delivery distances
-                estimatedDistanceKm = 4.0 + (Math.random() * 4.0); // 4-8km
-                System.out.println("DEBUG - Major city detected in address, distance: " + estimatedDistanceKm + " km");
-            } else if (lowerCaseAddress.contains("village") || lowerCaseAddress.contains("town") ||
-                    lowerCaseAddress.contains("quartier")) {
-                // Small towns have medium distances
-                estimatedDistanceKm = 7.0 + (Math.random() * 5.0); // 7-12km
-                System.out.println("DEBUG - Town/village detected in address, distance: " + estimatedDistanceKm + " km");
-            } else if (lowerCaseAddress.contains("zone") || lowerCaseAddress.contains("parc") ||
-                    lowerCaseAddress.contains("industriel") || lowerCaseAddress.contains("industrial")) {
-                // Industrial zones typically require medium-long trips
-                estimatedDistanceKm = 12.0 + (Math.random() * 6.0); // 12-18km
-                System.out.println("DEBUG - Industrial zone detected in address, distance: " + estimatedDistanceKm + " km");
-            } else if (lowerCaseAddress.contains("rural") || lowerCaseAddress.contains("campagne") ||
-                    lowerCaseAddress.contains("farm") || lowerCaseAddress.contains("ferme")) {
-                // Rural areas have longest distances
-                estimatedDistanceKm = 15.0 + (Math.random() * 10.0); // 15-25km
-                System.out.println("DEBUG - Rural area detected in address, distance: " + estimatedDistanceKm + " km");
-            } else {
-                // For any other address, generate a reasonable random value that's NOT just 10km
-                estimatedDistanceKm = 8.0 + (Math.random() * 8.0); // 8-16km
-                System.out.println("DEBUG - Generic address, using varied distance: " + estimatedDistanceKm + " km");
-            }
-
-            // Apply some basic street-level analysis if possible
-            if (lowerCaseAddress.contains("avenue") || lowerCaseAddress.contains("boulevard")) {
-                // Major streets tend to be in more central areas
-                estimatedDistanceKm *= 0.85; // Reduce distance by 15%
-                System.out.println("DEBUG - Major street detected, adjusted distance: " + estimatedDistanceKm + " km");
-            } else if (lowerCaseAddress.contains("route") || lowerCaseAddress.contains("highway")) {
-                // Highways tend to be longer routes
-                estimatedDistanceKm *= 1.2; // Increase distance by 20%
-                System.out.println("DEBUG - Highway/route detected, adjusted distance: " + estimatedDistanceKm + " km");
-            }
-
-            // Always use car emission factor (0.2 kg CO2/km)
-            double emissionFactor = CAR_EMISSION_FACTOR;
-            System.out.println("DEBUG - Using emission factor: " + emissionFactor + " kg CO2/km");
-
-            // Calculate carbon footprint
-            double carbonFootprint = estimatedDistanceKm * emissionFactor;
-            System.out.println("DEBUG - Raw carbon footprint with address analysis: " + carbonFootprint + " kg CO2");
-
-            // Round to 2 decimal places
-            double roundedFootprint = Math.round(carbonFootprint * 100) / 100.0;
-            System.out.println("DEBUG - Final carbon footprint with address analysis: " + roundedFootprint + " kg CO2");
-
-            return roundedFootprint;
-        } catch (Exception e) {
-            System.err.println("Error in address-based carbon calculation: " + e.getMessage());
-            e.printStackTrace();
-            // Fall back to the standard method
-            return calculateCarbonFootprint(typeLivraison, address);
+            return deliveryPhotoStore.storeBase64(photo);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
@@ -429,8 +380,8 @@ public class LivraisonService implements ILivraisonService {
                     currentLat + ", " + currentLng + "] to [" +
                     destinationLat + ", " + destinationLng + "]");
 
-            // First try to get actual driving route distance using OSRM API
-            Double drivingDistanceKm = calculateDrivingDistance(currentLat, currentLng, destinationLat, destinationLng);
+            // First try to get actual driving route distance (OSRM, cached by neighbourhood)
+            Double drivingDistanceKm = routeDistanceService.getDrivingDistanceKm(currentLat, currentLng, destinationLat, destinationLng);
 
             // If driving distance calculation fails, fall back to Haversine
             double estimatedDistanceKm;
@@ -439,14 +390,14 @@ public class LivraisonService implements ILivraisonService {
                 System.out.println("DEBUG - Using actual road distance: " + estimatedDistanceKm + " km");
             } else {
                 // Calculate distance using Haversine formula as fallback
-                estimatedDistanceKm = calculateHaversineDistance(
+                estimatedDistanceKm = RouteDistanceService.haversineKm(
                         currentLat, currentLng, destinationLat, destinationLng
                 );
                 System.out.println("DEBUG - Using fallback Haversine distance: " + estimatedDistanceKm + " km");
             }
 
-            // Always use car emission factor (0.2 kg CO2/km)
-            double emissionFactor = CAR_EMISSION_FACTOR;
+            // Always use car emission factor (carbon.emission-factor)
+            double emissionFactor = carEmissionFactor;
             System.out.println("DEBUG - Using emission factor: " + emissionFactor + " kg CO2/km");
 
             // Calculate carbon footprint
@@ -469,75 +420,15 @@ public class LivraisonService implements ILivraisonService {
     }
 
     /**
-     * Calculate carbon footprint based on delivery type and distance
+     * Calculate carbon footprint from the delivery address, using the governorate/delegation
+     * gazetteer (deterministic: the same address always gives the same value)
      * @param typeLivraison the type of delivery vehicle
      * @param address the delivery address to estimate distance
+     * @param gouvernement the order's governorate, used as a hint and fallback
      * @return estimated carbon footprint in kg CO2
      */
-    private Double calculateCarbonFootprint(TypeLivraison typeLivraison, String address) {
-        try {
-            System.out.println("DEBUG - Address-based distance estimation using address: " + address);
-
-            // Set default distance away from 10km to avoid carbon footprint of 2.0
-            double estimatedDistanceKm = 16.5; // Will give carbon footprint of 3.3 kg CO₂
-
-            // Adjust distance based on address keywords if available
-            if (address != null && !address.trim().isEmpty()) {
-                String lowerCaseAddress = address.toLowerCase();
-                System.out.println("DEBUG - Checking address keywords in: " + lowerCaseAddress);
-
-                if (lowerCaseAddress.contains("centre ville") || lowerCaseAddress.contains("downtown") ||
-                        lowerCaseAddress.contains("center") || lowerCaseAddress.contains("central")) {
-                    estimatedDistanceKm = 5.0; // Shorter distance for downtown deliveries
-                    System.out.println("DEBUG - Downtown address detected, using distance: " + 5.0 + " km");
-                } else if (lowerCaseAddress.contains("rural") || lowerCaseAddress.contains("campagne") ||
-                        lowerCaseAddress.contains("farm") || lowerCaseAddress.contains("ferme")) {
-                    estimatedDistanceKm = 20.0; // Longer distance for rural deliveries
-                    System.out.println("DEBUG - Rural address detected, using distance: " + 20.0 + " km");
-                } else if (lowerCaseAddress.contains("industrial") || lowerCaseAddress.contains("industriel") ||
-                        lowerCaseAddress.contains("zone") || lowerCaseAddress.contains("parc")) {
-                    estimatedDistanceKm = 15.0; // Medium distance for industrial areas
-                    System.out.println("DEBUG - Industrial area detected, using distance: " + 15.0 + " km");
-                } else if (lowerCaseAddress.contains("suburb") || lowerCaseAddress.contains("banlieue")) {
-                    estimatedDistanceKm = 8.0; // Typical distance for suburbs
-                    System.out.println("DEBUG - Suburb detected, using distance: " + 8.0 + " km");
-                } else {
-                    // Use a higher range to avoid any values that would give carbon footprint of 2.0
-                    // Generate a value between 14 and 22 km
-                    estimatedDistanceKm = 14.0 + (Math.random() * 8.0);
-                    System.out.println("DEBUG - No special keywords, using randomized default distance: " + estimatedDistanceKm + " km");
-                }
-            } else {
-                // Use a higher default distance range to completely avoid getting 2.0
-                // Generate a value between 15 and 25 km
-                estimatedDistanceKm = 15.0 + (Math.random() * 10.0);
-                System.out.println("DEBUG - No address provided, using randomized default distance: " + estimatedDistanceKm + " km");
-            }
-
-            // Always use car emission factor (0.2 kg CO2/km)
-            double emissionFactor = CAR_EMISSION_FACTOR;
-            System.out.println("DEBUG - Using emission factor: " + emissionFactor + " kg CO2/km");
-
-            // Calculate carbon footprint
-            double carbonFootprint = estimatedDistanceKm * emissionFactor;
-            System.out.println("DEBUG - Raw carbon footprint: " + carbonFootprint + " kg CO2");
-
-            // Calculate and round to 2 decimal places
-            double roundedFootprint = Math.round(carbonFootprint * 100) / 100.0;
-            System.out.println("DEBUG - Rounded carbon footprint: " + roundedFootprint + " kg CO2");
-
-            return roundedFootprint;
-        } catch (Exception e) {
-            // Log the error but don't crash
-            System.err.println("Error calculating carbon footprint: " + e.getMessage());
-            e.printStackTrace();
-
-            // Return a calculated value based on randomized default distance and car emission factor
-            // Generate a value between 17 and 27 km to completely avoid carbon footprint near 2.0
-            double defaultDistance = 17.0 + (Math.random() * 10.0); // Default distance in km
-            double result = Math.round(defaultDistance * CAR_EMISSION_FACTOR * 100) / 100.0;
-            System.out.println("DEBUG - Error in carbon calculation, using randomized default value: " + result + " kg CO2");
-            return result;
-        }
+    private Double calculateCarbonFootprint(TypeLivraison typeLivraison, String address, String gouvernement) {
+        double estimatedDistanceKm = addressGazetteer.estimateDistanceKm(address, gouvernement);
+        return Math.round(estimatedDistanceKm * carEmissionFactor * 100) / 100.0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.OutgoingMail;
+import com.example.usermanagementbackend.repository.OutgoingMailRepository;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Met les emails en file d'attente (table outgoing_mail) au lieu de les envoyer pendant la requête.
+ * L'envoi réel est fait par {@code MailDispatcher}.
+ */
+@Service
+public class MailOutboxService {
+
+    private final OutgoingMailRepository outgoingMailRepository;
+    private final ITemplateEngine templateEngine;
+
+    public MailOutboxService(OutgoingMailRepository outgoingMailRepository, ITemplateEngine templateEngine) {
+        this.outgoingMailRepository = outgoingMailRepository;
+        this.templateEngine = templateEngine;
+    }
+
+    /**
+     * Rend le template {@code templates/mail/<template>.html} (mis en cache par Thymeleaf)
+     * et enregistre l'email à envoyer.
+     */
+    public OutgoingMail enqueue(String to, String subject, String template, Map<String, Object> variables) {
+        String html = templateEngine.process("mail/" + template, new Context(Locale.FRENCH, variables));
+        return outgoingMailRepository.save(new OutgoingMail(to, subject, html));
+    }
+}
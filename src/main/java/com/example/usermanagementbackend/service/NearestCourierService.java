@@ -0,0 +1,133 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.dto.NearbyLivreurDTO;
+import com.example.usermanagementbackend.entity.Commande;
+import com.example.usermanagementbackend.entity.Livreur;
+import com.example.usermanagementbackend.entity.StatusLivraison;
+import com.example.usermanagementbackend.repository.CommandeRepository;
+import com.example.usermanagementbackend.repository.LivraisonRepository;
+import com.example.usermanagementbackend.repository.LivreurRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Livreurs disponibles les plus proches d'un point ou d'une commande.
+ *
+ * La recherche se fait sur les positions en mémoire de {@link CourierLocationService}. Un livreur
+ * est disponible si sa position a moins de {@code courier.position.max-age-seconds} et s'il a
+ * moins de {@code courier.max-active-livraisons} livraisons TAKE_IT/EN_COURS. Ce décompte est
+ * tenu en mémoire : ajusté à chaque livraison créée ou terminée, et recalculé périodiquement
+ * depuis la base pour corriger les écarts.
+ */
+@Service
+public class NearestCourierService {
+
+    private static final List<StatusLivraison> ACTIVE = List.of(StatusLivraison.TAKE_IT, StatusLivraison.EN_COURS);
+
+    private final CourierLocationService courierLocationService;
+    private final LivraisonRepository livraisonRepository;
+    private final LivreurRepository livreurRepository;
+    private final CommandeRepository commandeRepository;
+    private final AddressGazetteer addressGazetteer;
+
+    private volatile ConcurrentHashMap<Long, Long> activeCounts = new ConcurrentHashMap<>();
+
+    @Value("${courier.max-active-livraisons:5}")
+    private long maxActive;
+
+    @Value("${courier.position.max-age-seconds:300}")
+    private long maxAgeSeconds;
+
+    @Value("${courier.search.max-km:50}")
+    private double maxKm;
+
+    public NearestCourierService(CourierLocationService courierLocationService, LivraisonRepository livraisonRepository,
+                                 LivreurRepository livreurRepository, CommandeRepository commandeRepository,
+                                 AddressGazetteer addressGazetteer) {
+        this.courierLocationService = courierLocationService;
+        this.livraisonRepository = livraisonRepository;
+        this.livreurRepository = livreurRepository;
+        this.commandeRepository = commandeRepository;
+        this.addressGazetteer = addressGazetteer;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${courier.availability.refresh-ms:30000}",
+            fixedDelayString = "${courier.availability.refresh-ms:30000}")
+    public void refreshAvailability() {
+        ConcurrentHashMap<Long, Long> counts = new ConcurrentHashMap<>();
+        for (Object[] row : livraisonRepository.countByLivreurAndStatusIn(ACTIVE)) {
+            if (row[0] != null) {
+                counts.put((Long) row[0], (Long) row[1]);
+            }
+        }
+        activeCounts = counts;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCourierLoadChanged(CourierLoadChangedEvent event) {
+        adjustActive(event.livreurId(), event.delta());
+    }
+
+    /** Une livraison active de plus (delta = 1) ou de moins (delta = -1) pour ce livreur. */
+    public void adjustActive(Long livreurId, int delta) {
+        if (livreurId != null) {
+            activeCounts.compute(livreurId, (id, count) -> Math.max(0L, (count != null ? count : 0L) + delta));
+        }
+    }
+
+    public boolean isAvailable(CourierLocationService.CourierPosition position) {
+        return position.receivedAt() >= System.currentTimeMillis() - maxAgeSeconds * 1000
+                && activeCounts.getOrDefault(position.livreurId(), 0L) < maxActive;
+    }
+
+    public List<CourierLocationService.NearbyCourier> nearest(double lat, double lng, int k) {
+        return courierLocationService.nearest(lat, lng, k, maxKm, this::isAvailable);
+    }
+
+    /** Les k livreurs disponibles les plus proches, avec leurs coordonnées de contact. */
+    public List<NearbyLivreurDTO> nearestLivreurs(double lat, double lng, int k) {
+        List<CourierLocationService.NearbyCourier> nearby = nearest(lat, lng, k);
+        Map<Long, Livreur> livreurs = livreurRepository.findAllById(
+                        nearby.stream().map(n -> n.position().livreurId()).toList())
+                .stream().collect(Collectors.toMap(Livreur::getId, Function.identity()));
+
+        List<NearbyLivreurDTO> result = new ArrayList<>(nearby.size());
+        for (CourierLocationService.NearbyCourier n : nearby) {
+            Livreur livreur = livreurs.get(n.position().livreurId());
+            if (livreur == null) {
+                continue; // livreur supprimé entre-temps
+            }
+            result.add(new NearbyLivreurDTO(livreur.getId(), livreur.getNom(), livreur.getTelephone(),
+                    n.position().lat(), n.position().lng(), Math.round(n.distanceKm() * 100) / 100.0,
+                    n.position().timestamp()));
+        }
+        return result;
+    }
+
+    /** Les k livreurs disponibles les plus proches de l'adresse d'une commande. */
+    public List<NearbyLivreurDTO> nearestLivreursForCommande(Long commandeId, int k) {
+        Commande commande = commandeRepository.findById(commandeId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Commande not found with id: " + commandeId));
+        AddressGazetteer.Place place = addressGazetteer.resolve(commande.getAdresse(), commande.getGouvernement());
+        if (place == null) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Adresse de la commande " + commandeId + " non localisée");
+        }
+        return nearestLivreurs(place.lat(), place.lng(), k);
+    }
+}
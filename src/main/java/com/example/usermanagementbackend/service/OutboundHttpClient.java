@@ -0,0 +1,304 @@
+package com.example.usermanagementbackend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client HTTP sortant partagé (Google Maps, OSRM, modèle IA).
+ *
+ * Un seul {@link HttpClient} garde les connexions keep-alive ouvertes pour tous les appels, qui
+ * sont asynchrones de bout en bout. Par hôte, le nombre de requêtes simultanées est borné : les
+ * requêtes en trop attendent dans une file (bornée elle aussi) sans bloquer de thread. Par point
+ * d'appel (nom logique, ex. "osrm.route"), un disjoncteur coupe les appels après
+ * {@code outbound.http.circuit.failure-threshold} échecs consécutifs (erreur réseau, timeout ou
+ * HTTP 5xx) pendant {@code outbound.http.circuit.open-ms}, puis laisse passer un appel d'essai.
+ * Les appelants ont ainsi une erreur immédiate et passent à leur solution de repli. Les latences
+ * sont comptées par point d'appel et consultables via {@link #metrics()}.
+ */
+@Service
+public class OutboundHttpClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+    // Bornes supérieures (ms) des classes de l'histogramme de latence ; la dernière est ouverte
+    private static final long[] LATENCY_BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, Long.MAX_VALUE};
+
+    /** Appel refusé sans être envoyé (disjoncteur ouvert ou file de l'hôte pleine). */
+    public static class CallRejectedException extends RejectedExecutionException {
+        public CallRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    public record EndpointMetrics(String endpoint, long calls, long errors, long rejected, double avgMs,
+                                  long p50Ms, long p95Ms, long maxMs, String circuit) {
+    }
+
+    private final HttpClient httpClient;
+    private final Duration defaultTimeout;
+    private final int maxPerHost;
+    private final int maxQueuedPerHost;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final ConcurrentHashMap<String, HostLimiter> hosts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public OutboundHttpClient(@Value("${outbound.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+                              @Value("${outbound.http.timeout-ms:10000}") long timeoutMs,
+                              @Value("${outbound.http.max-per-host:16}") int maxPerHost,
+                              @Value("${outbound.http.max-queued-per-host:500}") int maxQueuedPerHost,
+                              @Value("${outbound.http.circuit.failure-threshold:5}") int failureThreshold,
+                              @Value("${outbound.http.circuit.open-ms:30000}") long openMillis) {
+        this.defaultTimeout = Duration.ofMillis(timeoutMs);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.maxQueuedPerHost = Math.max(0, maxQueuedPerHost);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Envoie la requête sans bloquer. Le futur échoue avec {@link CallRejectedException} si l'appel
+     * n'a pas pu partir, et avec l'erreur réseau sinon ; les réponses HTTP (même 5xx) sont rendues
+     * telles quelles, le 5xx étant seulement compté comme échec par le disjoncteur.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(String endpoint, HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> handler) {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, Endpoint::new);
+        if (!stats.tryAcquire()) {
+            stats.rejected.increment();
+            return CompletableFuture.failedFuture(new CallRejectedException("Disjoncteur ouvert pour " + endpoint));
+        }
+
+        URI uri = request.uri();
+        HostLimiter limiter = hosts.computeIfAbsent(uri.getHost() + ":" + uri.getPort(), h -> new HostLimiter());
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        boolean accepted = limiter.submit(() -> {
+            long started = System.nanoTime();
+            CompletableFuture<HttpResponse<T>> call;
+            try {
+                call = httpClient.sendAsync(request, handler);
+            } catch (RuntimeException e) {
+                limiter.release();
+                stats.cancelTrial();
+                result.completeExceptionally(e);
+                return;
+            }
+            if (request.timeout().isEmpty()) {
+                call = call.orTimeout(defaultTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            call.whenComplete((response, error) -> {
+                limiter.release();
+                boolean failed = error != null || response.statusCode() >= 500;
+                stats.record(System.nanoTime() - started, failed);
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+        if (!accepted) {
+            stats.cancelTrial();
+            stats.rejected.increment();
+            return CompletableFuture.failedFuture(new CallRejectedException("Trop de requêtes en attente vers " + uri.getHost()));
+        }
+        return result;
+    }
+
+    /** Version bloquante pour les appelants synchrones : null si l'appel a échoué ou a été refusé. */
+    public <T> HttpResponse<T> send(String endpoint, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        try {
+            return sendAsync(endpoint, request, handler).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.warn("Appel {} vers {} en échec : {}", endpoint, request.uri().getHost(), rootMessage(cause));
+            return null;
+        }
+    }
+
+    /** Message de la cause première d'une erreur (CompletionException, ExecutionException, ...). */
+    public static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public List<EndpointMetrics> metrics() {
+        List<EndpointMetrics> result = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints.values()) {
+            result.add(endpoint.snapshot());
+        }
+        result.sort(Comparator.comparing(EndpointMetrics::endpoint));
+        return result;
+    }
+
+    /** File d'attente par hôte : au plus maxPerHost requêtes en vol, les suivantes attendent leur tour. */
+    private final class HostLimiter {
+        private final Semaphore permits = new Semaphore(maxPerHost);
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+
+        boolean submit(Runnable call) {
+            if (permits.tryAcquire()) {
+                call.run();
+                return true;
+            }
+            if (queued.incrementAndGet() > maxQueuedPerHost) {
+                queued.decrementAndGet();
+                return false;
+            }
+            waiting.add(call);
+            // Un permis a pu se libérer entre tryAcquire et add
+            drain();
+            return true;
+        }
+
+        void release() {
+            permits.release();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiting.isEmpty() && permits.tryAcquire()) {
+                Runnable next = waiting.poll();
+                if (next == null) {
+                    permits.release();
+                    continue;
+                }
+                queued.decrementAndGet();
+                next.run();
+            }
+        }
+    }
+
+    /** Disjoncteur et mesures d'un point d'appel. */
+    private final class Endpoint {
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(LATENCY_BOUNDS_MS.length);
+
+        // Disjoncteur : échecs consécutifs, fin de la coupure (0 = fermé), appel d'essai en cours
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInFlight;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        synchronized boolean tryAcquire() {
+            if (openUntil == 0) {
+                return true;
+            }
+            if (System.currentTimeMillis() < openUntil || trialInFlight) {
+                return false;
+            }
+            // Coupure écoulée : un seul appel d'essai (demi-ouvert)
+            trialInFlight = true;
+            return true;
+        }
+
+        synchronized void cancelTrial() {
+            trialInFlight = false;
+        }
+
+        void record(long nanos, boolean failed) {
+            calls.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (millis > LATENCY_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+            if (failed) {
+                errors.increment();
+            }
+            synchronized (this) {
+                trialInFlight = false;
+                if (!failed) {
+                    consecutiveFailures = 0;
+                    openUntil = 0;
+                } else if (++consecutiveFailures >= failureThreshold || openUntil != 0) {
+                    if (openUntil == 0) {
+                        logger.warn("Disjoncteur ouvert pour {} après {} échecs consécutifs", name, consecutiveFailures);
+                    }
+                    openUntil = System.currentTimeMillis() + openMillis;
+                }
+            }
+        }
+
+        EndpointMetrics snapshot() {
+            long count = calls.sum();
+            String circuit;
+            synchronized (this) {
+                circuit = openUntil == 0 ? "FERME" : System.currentTimeMillis() < openUntil ? "OUVERT" : "DEMI_OUVERT";
+            }
+            return new EndpointMetrics(name, count, errors.sum(), rejected.sum(),
+                    count > 0 ? Math.round(totalNanos.sum() / 1e4 / count) / 100.0 : 0,
+                    percentile(0.50), percentile(0.95), TimeUnit.NANOSECONDS.toMillis(maxNanos.get()), circuit);
+        }
+
+        // Borne supérieure de la classe qui atteint le quantile demandé
+        private long percentile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < histogram.length(); i++) {
+                total += histogram.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < histogram.length(); i++) {
+                seen += histogram.get(i);
+                if (seen >= rank) {
+                    return i == LATENCY_BOUNDS_MS.length - 1
+                            ? TimeUnit.NANOSECONDS.toMillis(maxNanos.get()) : LATENCY_BOUNDS_MS[i];
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.PromotionUsage;
+import com.example.usermanagementbackend.repository.PromotionUsageDailyRepository;
+import com.example.usermanagementbackend.repository.PromotionUsageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistiques d'utilisation des promotions.
+ *
+ * Chaque application de promotion incrémente le cumul du jour dans promotion_usage_daily
+ * ({@link #recordUsage}). Le jour est DATE(date_application) calculé par la base, à l'écriture
+ * comme à la reconstruction, pour que les deux tombent sur la même ligne quel que soit le
+ * fuseau de la JVM. Les statistiques sont une seule requête GROUP BY sur ces cumuls,
+ * jointe aux promotions : son coût dépend du nombre de promotions et de jours, pas du nombre
+ * d'utilisations. Au premier démarrage, les cumuls sont construits depuis promotion_usage.
+ */
+@Service
+public class PromotionAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromotionAnalyticsService.class);
+
+    private final PromotionUsageDailyRepository dailyRepository;
+    private final PromotionUsageRepository promotionUsageRepository;
+
+    public PromotionAnalyticsService(PromotionUsageDailyRepository dailyRepository,
+                                     PromotionUsageRepository promotionUsageRepository) {
+        this.dailyRepository = dailyRepository;
+        this.promotionUsageRepository = promotionUsageRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiserCumuls() {
+        if (dailyRepository.count() == 0 && promotionUsageRepository.count() > 0) {
+            int rows = dailyRepository.rebuildFromUsages();
+            logger.info("Cumuls journaliers des promotions initialisés : {} lignes", rows);
+        }
+    }
+
+    public void recordUsage(PromotionUsage usage) {
+        dailyRepository.increment(usage.getPromotion().getId(), usage.getDateApplication(),
+                usage.getMontantInitial() - usage.getMontantApresReduction());
+    }
+
+    /**
+     * Recalcule tous les cumuls depuis promotion_usage (après une correction manuelle des données).
+     *
+     * L'historique est d'abord verrouillé en partage jusqu'au commit : les utilisations en cours
+     * (insertion et incrément dans la même transaction) sont validées avant la suppression, les
+     * nouvelles attendent la fin de la reconstruction et incrémentent ensuite les cumuls recalculés.
+     */
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public int rebuild() {
+        promotionUsageRepository.lockAllInShareMode();
+        dailyRepository.deleteAllInBatch();
+        return dailyRepository.rebuildFromUsages();
+    }
+
+    /** Statistiques par promotion sur la période (bornes incluses, null = sans limite). */
+    public Map<String, Object> getAnalytics(LocalDate from, LocalDate to) {
+        List<Map<String, Object>> promotionStats = new ArrayList<>();
+        long totalApplied = 0;
+        for (Object[] row : dailyRepository.aggregateByPromotion(from, to)) {
+            long usageCount = ((Number) row[2]).longValue();
+            Map<String, Object> stat = new HashMap<>();
+            stat.put("promotionId", row[0]);
+            stat.put("promotionName", row[1]);
+            stat.put("usageCount", usageCount);
+            stat.put("totalRevenueImpact", ((Number) row[3]).doubleValue());
+            promotionStats.add(stat);
+            totalApplied += usageCount;
+        }
+
+        Map<String, Object> analytics = new HashMap<>();
+        analytics.put("promotionStats", promotionStats);
+        analytics.put("totalPromotionsApplied", totalApplied);
+        return analytics;
+    }
+}
@@ -0,0 +1,506 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.Produit;
+import com.example.usermanagementbackend.enums.Category;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoublePredicate;
+
+/**
+ * Condition de promotion compilée en arbre de prédicats.
+ *
+ * Syntaxe : comparaisons sur les attributs produit ({@code stock}, {@code ventes},
+ * {@code jours_expiration}, {@code prix}, {@code categorie}) et commande ({@code panier}),
+ * combinées par {@code AND}/{@code ET}, {@code OR}/{@code OU}, {@code NOT}/{@code NON} et parenthèses.
+ * Opérateurs : {@code < <= > >= = !=}, {@code BETWEEN a AND b}, {@code IN (...)}. Exemple :
+ * {@code ventes < 10 AND jours_expiration BETWEEN 0 AND 10 AND categorie IN (FRUITS, LEGUMES)}.
+ * Les anciennes conditions (ACHAT_GROUPE, MONTANT_MIN, ...) sont des alias de leur expression.
+ *
+ * L'évaluation est en logique à trois valeurs : une comparaison sur un attribut absent du
+ * contexte (ou NULL en base) est inconnue, et une condition n'est remplie que si elle vaut TRUE.
+ * Au passage de commande, la condition complète est évaluée sur le produit et le panier réels
+ * ({@link #matches}). Le ciblage de nuit, sans panier, n'évalue que la partie produit de la
+ * condition : les comparaisons sur le panier en sont retirées ({@link #matchesProduit}). Ainsi
+ * {@code stock < 5 OR panier > 100} ne lie que les produits dont le stock est inférieur à 5.
+ */
+public final class PromotionCondition {
+
+    /** Attributs disponibles pour l'évaluation ; null = inconnu. */
+    public record Facts(Integer stock, Integer ventes, Long joursExpiration, Category categorie, Double prix,
+                        Double panier) {
+
+        public static Facts panier(double montant) {
+            return new Facts(null, null, null, null, null, montant);
+        }
+
+        /** Attributs d'un produit au jour {@code today}, avec le total du panier (null si inconnu). */
+        public static Facts of(Produit produit, LocalDate today, Double panier) {
+            Long joursExpiration = null;
+            if (produit.getDateExpiration() != null) {
+                // getTime() : la date peut être un java.sql.Date, sans toInstant()
+                LocalDate expiration = Instant.ofEpochMilli(produit.getDateExpiration().getTime())
+                        .atZone(ZoneId.systemDefault()).toLocalDate();
+                joursExpiration = ChronoUnit.DAYS.between(today, expiration);
+            }
+            return new Facts(produit.getStock(), produit.getSalesCount(), joursExpiration, produit.getCategory(),
+                    produit.getPrix(), panier);
+        }
+    }
+
+    private static final Map<String, String> ALIASES = Map.of(
+            "ACHAT_GROUPE", "panier >= 3",
+            "MONTANT_MIN", "panier > 100",
+            "EXPIRATION_PRODUIT", "jours_expiration BETWEEN 0 AND 5",
+            "EXPIRATION_AND_LOW_SALES", "ventes < 10 AND jours_expiration BETWEEN 0 AND 10");
+
+    private static final int MAX_CACHED = 1000;
+    private static final ConcurrentHashMap<String, PromotionCondition> CACHE = new ConcurrentHashMap<>();
+
+    private final String source;
+    private final Node root;
+    // Partie produit de la condition (comparaisons sur le panier retirées), null s'il n'y en a pas
+    private final Node produit;
+    private final boolean alias;
+    private final String erreur;
+
+    private PromotionCondition(String source, Node root, Node produit, boolean alias, String erreur) {
+        this.source = source;
+        this.root = root;
+        this.produit = produit;
+        this.alias = alias;
+        this.erreur = erreur;
+    }
+
+    /**
+     * Condition compilée (mise en cache par texte). Ne lève pas d'exception : une condition
+     * vide ou invalide n'est jamais remplie, comme les conditions inconnues auparavant.
+     */
+    public static PromotionCondition compile(String condition) {
+        String key = condition != null ? condition.trim() : "";
+        PromotionCondition cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        PromotionCondition compiled;
+        try {
+            compiled = parse(key);
+        } catch (IllegalArgumentException e) {
+            compiled = new PromotionCondition(key, facts -> Boolean.FALSE, null, false, e.getMessage());
+        }
+        if (CACHE.size() >= MAX_CACHED) {
+            CACHE.clear();
+        }
+        CACHE.put(key, compiled);
+        return compiled;
+    }
+
+    /** Compile une condition ou lève {@link IllegalArgumentException} avec la position de l'erreur. */
+    public static PromotionCondition parse(String condition) {
+        String key = condition != null ? condition.trim() : "";
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("Condition vide");
+        }
+        String expression = ALIASES.get(key.toUpperCase(Locale.ROOT));
+        Branch root = new Parser(expression != null ? expression : key).parse();
+        return new PromotionCondition(key, root.node(), root.produit(), expression != null, null);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isValid() {
+        return erreur == null;
+    }
+
+    public String getErreur() {
+        return erreur;
+    }
+
+    /** Ancienne condition nommée, traitée par son code dédié et non par le ciblage de nuit. */
+    public boolean isAlias() {
+        return alias;
+    }
+
+    /** La condition porte sur au moins un attribut produit. */
+    public boolean isCiblageProduit() {
+        return produit != null;
+    }
+
+    /** TRUE, FALSE, ou null si la condition dépend d'attributs absents. */
+    public Boolean evaluate(Facts facts) {
+        return root.eval(facts);
+    }
+
+    /** Remplie avec certitude ; une condition indéterminée n'est pas remplie. */
+    public boolean matches(Facts facts) {
+        return Boolean.TRUE.equals(root.eval(facts));
+    }
+
+    /** Partie produit remplie avec certitude (ciblage de nuit, sans panier). */
+    public boolean matchesProduit(Facts facts) {
+        return produit != null && Boolean.TRUE.equals(produit.eval(facts));
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    // --- Arbre compilé ---
+
+    @FunctionalInterface
+    private interface Node {
+        Boolean eval(Facts facts);
+    }
+
+    @FunctionalInterface
+    private interface Combiner {
+        Boolean apply(Node[] children, Facts facts);
+    }
+
+    // Sous-arbre analysé et sa partie produit (null : ne porte que sur le panier)
+    private record Branch(Node node, Node produit) {
+    }
+
+    private static Node not(Node child) {
+        return facts -> {
+            Boolean value = child.eval(facts);
+            return value == null ? null : !value;
+        };
+    }
+
+    // AND/OR des enfants ; la partie produit ne garde que les enfants qui en ont une
+    private static Branch combine(List<Branch> children, Combiner combiner) {
+        if (children.size() == 1) {
+            return children.get(0);
+        }
+        Node[] nodes = new Node[children.size()];
+        List<Node> produits = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = children.get(i).node();
+            if (children.get(i).produit() != null) {
+                produits.add(children.get(i).produit());
+            }
+        }
+        Node produit;
+        if (produits.isEmpty()) {
+            produit = null;
+        } else if (produits.size() == 1) {
+            produit = produits.get(0);
+        } else {
+            Node[] array = produits.toArray(new Node[0]);
+            produit = facts -> combiner.apply(array, facts);
+        }
+        return new Branch(facts -> combiner.apply(nodes, facts), produit);
+    }
+
+    private enum Attribute {
+        STOCK(true), VENTES(true), JOURS_EXPIRATION(true), PRIX(true), CATEGORIE(true), PANIER(false);
+
+        final boolean produit;
+
+        Attribute(boolean produit) {
+            this.produit = produit;
+        }
+
+        Double number(Facts facts) {
+            switch (this) {
+                case STOCK:
+                    return facts.stock() != null ? facts.stock().doubleValue() : null;
+                case VENTES:
+                    return facts.ventes() != null ? facts.ventes().doubleValue() : null;
+                case JOURS_EXPIRATION:
+                    return facts.joursExpiration() != null ? facts.joursExpiration().doubleValue() : null;
+                case PRIX:
+                    return facts.prix();
+                case PANIER:
+                    return facts.panier();
+                default:
+                    throw new IllegalStateException(name());
+            }
+        }
+
+        static Attribute of(String name) {
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "stock":
+                    return STOCK;
+                case "ventes":
+                case "salescount":
+                case "sales_count":
+                    return VENTES;
+                case "jours_expiration":
+                case "daystoexpiry":
+                    return JOURS_EXPIRATION;
+                case "prix":
+                case "price":
+                    return PRIX;
+                case "categorie":
+                case "category":
+                    return CATEGORIE;
+                case "panier":
+                case "carttotal":
+                case "montant":
+                    return PANIER;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static Boolean and(Node[] children, Facts facts) {
+        Boolean result = Boolean.TRUE;
+        for (Node child : children) {
+            Boolean value = child.eval(facts);
+            if (Boolean.FALSE.equals(value)) {
+                return Boolean.FALSE;
+            }
+            if (value == null) {
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    private static Boolean or(Node[] children, Facts facts) {
+        Boolean result = Boolean.FALSE;
+        for (Node child : children) {
+            Boolean value = child.eval(facts);
+            if (Boolean.TRUE.equals(value)) {
+                return Boolean.TRUE;
+            }
+            if (value == null) {
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    // --- Analyse syntaxique (descente récursive) ---
+
+    private static final class Parser {
+        private final String text;
+        private final List<String> tokens = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+            tokenize();
+        }
+
+        Branch parse() {
+            Branch node = orExpr();
+            if (pos < tokens.size()) {
+                throw error("Élément inattendu '" + tokens.get(pos) + "'");
+            }
+            return node;
+        }
+
+        private Branch orExpr() {
+            List<Branch> children = new ArrayList<>();
+            children.add(andExpr());
+            while (accept("OR", "OU")) {
+                children.add(andExpr());
+            }
+            return combine(children, PromotionCondition::or);
+        }
+
+        private Branch andExpr() {
+            List<Branch> children = new ArrayList<>();
+            children.add(notExpr());
+            while (accept("AND", "ET")) {
+                children.add(notExpr());
+            }
+            return combine(children, PromotionCondition::and);
+        }
+
+        private Branch notExpr() {
+            if (accept("NOT", "NON")) {
+                Branch child = notExpr();
+                return new Branch(not(child.node()), child.produit() != null ? not(child.produit()) : null);
+            }
+            return primary();
+        }
+
+        private Branch primary() {
+            if (accept("(")) {
+                Branch node = orExpr();
+                expect(")");
+                return node;
+            }
+            if (accept("TRUE", "VRAI")) {
+                return new Branch(facts -> Boolean.TRUE, null);
+            }
+            String name = next("attribut");
+            Attribute attribute = Attribute.of(name);
+            if (attribute == null) {
+                throw error("Attribut inconnu '" + name + "'", pos - 1);
+            }
+            Node node = attribute == Attribute.CATEGORIE ? categorie() : comparison(attribute);
+            return new Branch(node, attribute.produit ? node : null);
+        }
+
+        private Node categorie() {
+            boolean negate;
+            Set<Category> values = EnumSet.noneOf(Category.class);
+            if (accept("IN", "DANS")) {
+                negate = false;
+                expect("(");
+                do {
+                    values.add(category(next("catégorie")));
+                } while (accept(","));
+                expect(")");
+            } else {
+                String op = next("opérateur");
+                if (op.equals("=")) {
+                    negate = false;
+                } else if (op.equals("!=") || op.equals("<>")) {
+                    negate = true;
+                } else {
+                    throw error("Opérateur '" + op + "' impossible sur categorie", pos - 1);
+                }
+                values.add(category(next("catégorie")));
+            }
+            return facts -> facts.categorie() == null ? null : values.contains(facts.categorie()) != negate;
+        }
+
+        private Node comparison(Attribute attribute) {
+            if (accept("BETWEEN", "ENTRE")) {
+                double low = number();
+                if (!accept("AND", "ET")) {
+                    throw error("AND attendu après BETWEEN");
+                }
+                double high = number();
+                return facts -> {
+                    Double value = attribute.number(facts);
+                    return value == null ? null : value >= low && value <= high;
+                };
+            }
+            String op = next("opérateur");
+            double bound = number();
+            switch (op) {
+                case "<":
+                    return facts -> test(attribute.number(facts), v -> v < bound);
+                case "<=":
+                    return facts -> test(attribute.number(facts), v -> v <= bound);
+                case ">":
+                    return facts -> test(attribute.number(facts), v -> v > bound);
+                case ">=":
+                    return facts -> test(attribute.number(facts), v -> v >= bound);
+                case "=":
+                    return facts -> test(attribute.number(facts), v -> v == bound);
+                case "!=":
+                case "<>":
+                    return facts -> test(attribute.number(facts), v -> v != bound);
+                default:
+                    throw error("Opérateur inconnu '" + op + "'", pos - 2);
+            }
+        }
+
+        private static Boolean test(Double value, DoublePredicate predicate) {
+            return value == null ? null : predicate.test(value);
+        }
+
+        private double number() {
+            String token = next("nombre");
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw error("Nombre attendu au lieu de '" + token + "'", pos - 1);
+            }
+        }
+
+        private Category category(String token) {
+            String name = token.startsWith("'") ? token.substring(1, token.length() - 1) : token;
+            try {
+                return Category.valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw error("Catégorie inconnue '" + name + "'", pos - 1);
+            }
+        }
+
+        private boolean accept(String... expected) {
+            if (pos < tokens.size()) {
+                for (String candidate : expected) {
+                    if (tokens.get(pos).equalsIgnoreCase(candidate)) {
+                        pos++;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void expect(String expected) {
+            if (!accept(expected)) {
+                throw error("'" + expected + "' attendu");
+            }
+        }
+
+        private String next(String what) {
+            if (pos >= tokens.size()) {
+                throw error(what + " attendu en fin de condition");
+            }
+            return tokens.get(pos++);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return error(message, pos);
+        }
+
+        private IllegalArgumentException error(String message, int tokenIndex) {
+            int column = tokenIndex < positions.size() ? positions.get(tokenIndex) : text.length();
+            return new IllegalArgumentException(message + " (position " + (column + 1) + ") dans : " + text);
+        }
+
+        private void tokenize() {
+            int i = 0;
+            while (i < text.length()) {
+                char c = text.charAt(i);
+                int start = i;
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                if (Character.isLetter(c) || c == '_') {
+                    while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                        i++;
+                    }
+                } else if (Character.isDigit(c) || ((c == '-' || c == '.') && i + 1 < text.length()
+                        && Character.isDigit(text.charAt(i + 1)))) {
+                    i++;
+                    while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+                        i++;
+                    }
+                } else if (c == '\'') {
+                    i = text.indexOf('\'', i + 1);
+                    if (i < 0) {
+                        throw new IllegalArgumentException("Apostrophe non fermée (position " + (start + 1) + ") dans : " + text);
+                    }
+                    i++;
+                } else if ((c == '<' || c == '>' || c == '!') && i + 1 < text.length()
+                        && (text.charAt(i + 1) == '=' || (c == '<' && text.charAt(i + 1) == '>'))) {
+                    i += 2;
+                } else if ("<>=(),".indexOf(c) >= 0) {
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("Caractère inattendu '" + c + "' (position " + (start + 1)
+                            + ") dans : " + text);
+                }
+                tokens.add(text.substring(start, i));
+                positions.add(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.Produit;
+import com.example.usermanagementbackend.repository.PromotionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Calcul des prix remisés sans lecture des promotions en base.
+ *
+ * Les promotions actives sont chargées (une requête) dans un index immuable produit → règles,
+ * remplacé d'un bloc à chaque {@link PromotionsChangedEvent} et au passage d'une date de début
+ * ou de fin. Les lectures ({@link #priceFor}, {@link #activeRule}) ne prennent aucun verrou :
+ * elles lisent la référence volatile de l'index courant.
+ *
+ * Quand plusieurs promotions visent le même produit, elles ne se cumulent pas : la plus
+ * avantageuse pour le client l'emporte (à égalité, la plus ancienne). Les promotions déjà
+ * répercutées sur {@code Produit.prix} (expiration produit) sont ignorées pour ne pas
+ * remiser deux fois. Au passage de commande, la condition de chaque promotion est évaluée sur
+ * les attributs réels du produit et sur le total de la commande au prix catalogue (et non sur
+ * le montant de la ligne) ; elle doit valoir TRUE ({@link #priceOrder}).
+ */
+@Service
+public class PromotionPricingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromotionPricingEngine.class);
+
+    // Conditions dont la remise est appliquée directement au prix catalogue
+    private static final Set<String> CATALOGUE_CONDITIONS = Set.of("EXPIRATION_PRODUIT");
+
+    public record Rule(Integer promotionId, String nom, double pourcentageReduction, String condition,
+                       PromotionCondition compiled, long debutMs, long finMs) {
+
+        /** En vigueur de la date de début (incluse) à la date de fin (exclue), comme le balayage de minuit. */
+        public boolean enVigueur(long instantMs) {
+            return instantMs >= debutMs && instantMs < finMs;
+        }
+    }
+
+    public record Price(Long produitId, int qte, double prixUnitaire, double prixRemise, double total,
+                        Integer promotionId, String promotionNom) {
+    }
+
+    /** Ligne d'une commande à tarifer (prix catalogue du produit). */
+    public record Item(Produit produit, int qte) {
+    }
+
+    /** Montants avant et après remise des lignes d'une commande remisées par une même promotion. */
+    public record Applied(Integer promotionId, double montantInitial, double montantApresReduction) {
+    }
+
+    /** Prix d'une commande : lignes dans l'ordre des articles, panier au prix catalogue, promotions appliquées. */
+    public record Quote(List<Price> lignes, double panier, double total, Map<Integer, Applied> promotions) {
+    }
+
+    private record Index(Map<Long, Rule[]> byProduit, Map<Integer, Rule> byId, long nextRebuildMs) {
+    }
+
+    private final PromotionRepository promotionRepository;
+    private volatile Index index = new Index(Map.of(), Map.of(), 0);
+
+    @Value("${promotion.pricing.max-age-ms:900000}")
+    private long maxAgeMs;
+
+    // Remises appliquées au passage de commande (false : prix catalogue, comme avant l'index)
+    @Value("${promotion.pricing.checkout-enabled:true}")
+    private boolean checkoutEnabled;
+
+    public PromotionPricingEngine(PromotionRepository promotionRepository) {
+        this.promotionRepository = promotionRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPromotionsChanged(PromotionsChangedEvent event) {
+        rebuild();
+    }
+
+    // Début ou fin d'une promotion atteint, ou index trop ancien (filet de sécurité)
+    @Scheduled(fixedDelayString = "${promotion.pricing.boundary-check-ms:60000}")
+    public void checkBoundaries() {
+        if (System.currentTimeMillis() >= index.nextRebuildMs()) {
+            rebuild();
+        }
+    }
+
+    public synchronized void rebuild() {
+        long now = System.currentTimeMillis();
+        long next = now + maxAgeMs;
+        Map<Integer, Rule> byId = new HashMap<>();
+        Map<Long, List<Rule>> byProduit = new HashMap<>();
+        for (Object[] row : promotionRepository.findActivePromotionProducts()) {
+            Integer promotionId = (Integer) row[0];
+            Rule rule = byId.computeIfAbsent(promotionId, id -> new Rule(id, (String) row[1],
+                    ((Number) row[2]).doubleValue(), (String) row[3], PromotionCondition.compile((String) row[3]),
+                    row[4] != null ? ((Date) row[4]).getTime() : Long.MIN_VALUE,
+                    row[5] != null ? ((Date) row[5]).getTime() : Long.MAX_VALUE));
+            if (row[6] != null) {
+                byProduit.computeIfAbsent((Long) row[6], id -> new ArrayList<>()).add(rule);
+            }
+        }
+        // Règles expirées retirées au prochain passage, futures prises en compte dès leur début
+        for (Rule rule : byId.values()) {
+            if (rule.debutMs() > now) {
+                next = Math.min(next, rule.debutMs());
+            }
+            if (rule.finMs() > now) {
+                next = Math.min(next, rule.finMs());
+            }
+        }
+
+        Map<Long, Rule[]> frozen = new HashMap<>(byProduit.size() * 2);
+        for (Map.Entry<Long, List<Rule>> entry : byProduit.entrySet()) {
+            Rule[] rules = entry.getValue().toArray(new Rule[0]);
+            Arrays.sort(rules, Comparator.comparing(Rule::promotionId));
+            frozen.put(entry.getKey(), rules);
+        }
+        index = new Index(frozen, Map.copyOf(byId), next);
+        logger.info("Index des promotions reconstruit : {} promotions actives, {} produits", byId.size(), frozen.size());
+    }
+
+    /** Règle d'une promotion active et en vigueur, ou null. */
+    public Rule activeRule(Integer promotionId, Instant instant) {
+        Rule rule = index.byId().get(promotionId);
+        return rule != null && rule.enVigueur(instant.toEpochMilli()) ? rule : null;
+    }
+
+    /**
+     * Prix d'une commande : le total au prix catalogue sert de panier pour les conditions de
+     * chaque ligne. Les montants par promotion servent à enregistrer les utilisations.
+     */
+    public Quote priceOrder(List<Item> items, Instant instant) {
+        double panier = 0;
+        for (Item item : items) {
+            panier += item.produit().getPrix() * item.qte();
+        }
+        List<Price> lignes = new ArrayList<>(items.size());
+        Map<Integer, Applied> promotions = new LinkedHashMap<>();
+        double total = 0;
+        LocalDate today = instant.atZone(ZoneId.systemDefault()).toLocalDate();
+        for (Item item : items) {
+            Produit produit = item.produit();
+            Price price = checkoutEnabled
+                    ? priceFor(produit.getId(), produit.getPrix(), item.qte(),
+                            PromotionCondition.Facts.of(produit, today, panier), instant)
+                    : new Price(produit.getId(), item.qte(), produit.getPrix(), produit.getPrix(),
+                            produit.getPrix() * item.qte(), null, null);
+            lignes.add(price);
+            total += price.total();
+            if (price.promotionId() != null) {
+                promotions.merge(price.promotionId(),
+                        new Applied(price.promotionId(), price.prixUnitaire() * price.qte(), price.total()),
+                        (a, b) -> new Applied(a.promotionId(), a.montantInitial() + b.montantInitial(),
+                                a.montantApresReduction() + b.montantApresReduction()));
+            }
+        }
+        return new Quote(List.copyOf(lignes), panier, total, promotions);
+    }
+
+    /**
+     * Prix d'une ligne (produit × quantité) avec la meilleure promotion applicable ; les
+     * conditions sont évaluées sur {@code facts} (produit et total de la commande).
+     */
+    public Price priceFor(Long produitId, double prixUnitaire, int qte, PromotionCondition.Facts facts,
+                          Instant instant) {
+        double montant = prixUnitaire * qte;
+        Rule[] rules = index.byProduit().get(produitId);
+        Rule best = null;
+        double bestMontant = montant;
+        if (rules != null) {
+            long t = instant.toEpochMilli();
+            for (Rule rule : rules) {
+                if (!rule.enVigueur(t) || CATALOGUE_CONDITIONS.contains(rule.condition())
+                        || !rule.compiled().matches(facts)) {
+                    continue;
+                }
+                double remise = montant * (1 - rule.pourcentageReduction() / 100);
+                if (remise < bestMontant) {
+                    best = rule;
+                    bestMontant = remise;
+                }
+            }
+        }
+        return new Price(produitId, qte, prixUnitaire, qte > 0 ? bestMontant / qte : prixUnitaire, bestMontant,
+                best != null ? best.promotionId() : null, best != null ? best.nom() : null);
+    }
+
+    /**
+     * Montant après réduction si la condition de la promotion est remplie pour ce montant
+     * (montant inchangé sinon, ou si la condition est invalide). Sans produit, une condition
+     * sur les attributs produit est indéterminée et donc non remplie. Voir {@link PromotionCondition}.
+     *
+     * Exception : les conditions répercutées sur le prix catalogue (EXPIRATION_PRODUIT) remisent
+     * le montant sans condition, comme l'ancien code nommé. Les produits visés sont choisis par
+     * le balayage de nuit, et un montant seul n'a pas de date d'expiration à comparer.
+     */
+    public static double montantApresReduction(String condition, double pourcentageReduction, double montant) {
+        PromotionCondition compiled = PromotionCondition.compile(condition);
+        boolean catalogue = compiled.isAlias()
+                && CATALOGUE_CONDITIONS.contains(compiled.getSource().toUpperCase(Locale.ROOT));
+        if (catalogue || compiled.matches(PromotionCondition.Facts.panier(montant))) {
+            return montant * (1 - pourcentageReduction / 100);
+        }
+        return montant;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.enums.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ciblage des promotions dont la condition est une expression ({@link PromotionCondition}).
+ *
+ * Une évaluation lit le catalogue une seule fois, par lots ordonnés sur l'id. Chaque condition
+ * distincte est évaluée une fois par produit, quel que soit le nombre de promotions qui la
+ * partagent : le coût reste linéaire en produits × conditions. Les liens promotion_produit sont
+ * ensuite alignés sur les produits éligibles (ajouts et retraits), une transaction par promotion.
+ *
+ * Le résultat est mémorisé pour la fenêtre d'évaluation (le jour) : une nouvelle demande dans la
+ * même fenêtre, avec les mêmes règles actives, renvoie le résultat mémorisé sans relire le catalogue.
+ * Les anciennes conditions nommées (ACHAT_GROUPE, EXPIRATION_PRODUIT, ...) gardent leur traitement dédié.
+ */
+@Service
+public class PromotionRuleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromotionRuleEngine.class);
+
+    private static final String SELECT_RULES = "SELECT id, condition_promotion FROM promotion "
+            + "WHERE active = TRUE AND condition_promotion IS NOT NULL "
+            + "AND (date_debut IS NULL OR date_debut <= ?) AND (date_fin IS NULL OR date_fin > ?) ORDER BY id";
+    private static final String SELECT_PRODUITS = "SELECT id, stock, sales_count, date_expiration, category, prix "
+            + "FROM produit WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_LINKS = "SELECT produit_id FROM promotion_produit WHERE promotion_id = ? ORDER BY produit_id";
+    private static final String DELETE_LINK = "DELETE FROM promotion_produit WHERE promotion_id = ? AND produit_id = ?";
+    private static final String INSERT_LINK = "INSERT INTO promotion_produit (promotion_id, produit_id) VALUES (?, ?)";
+
+    public record Evaluation(LocalDate fenetre, int regles, long produits, Map<Integer, Integer> eligibles,
+                             long liensAjoutes, long liensRetires, Map<Integer, String> conditionsInvalides,
+                             long durationMs) {
+    }
+
+    // Résultat mémorisé d'une fenêtre : règles évaluées (id → condition) et comptes d'éligibles
+    private record Memo(LocalDate fenetre, Map<Integer, String> regles, Evaluation evaluation) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private volatile Memo memo;
+
+    @Value("${promotion.rules.chunk-size:2000}")
+    private int chunkSize;
+
+    public PromotionRuleEngine(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Après les traitements de minuit (expiration, suggestions)
+    @Scheduled(cron = "${promotion.rules.cron:0 15 0 * * ?}")
+    public void evaluerNuit() {
+        evaluer(false);
+    }
+
+    /** Évalue les règles actives ; sans {@code force}, réutilise le résultat de la fenêtre courante. */
+    public synchronized Evaluation evaluer(boolean force) {
+        long started = System.currentTimeMillis();
+        LocalDate fenetre = LocalDate.now();
+        Timestamp now = new Timestamp(started);
+
+        Map<Integer, String> regles = new LinkedHashMap<>();
+        Map<Integer, String> invalides = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_RULES, rs -> {
+            int id = rs.getInt("id");
+            PromotionCondition condition = PromotionCondition.compile(rs.getString("condition_promotion"));
+            if (!condition.isValid()) {
+                // Texte libre historique (ex. nom de campagne) : signalé seulement s'il ressemble à une expression
+                if (condition.getSource().matches(".*[<>=(].*")) {
+                    invalides.put(id, condition.getErreur());
+                }
+            } else if (!condition.isAlias() && condition.isCiblageProduit()) {
+                regles.put(id, condition.getSource());
+            }
+        }, now, now);
+
+        Memo current = memo;
+        if (!force && current != null && current.fenetre().equals(fenetre) && current.regles().equals(regles)) {
+            return current.evaluation();
+        }
+
+        // Conditions distinctes et promotions qui les partagent
+        Map<String, List<Integer>> parCondition = new LinkedHashMap<>();
+        regles.forEach((id, source) -> parCondition.computeIfAbsent(source, s -> new ArrayList<>()).add(id));
+        PromotionCondition[] conditions = new PromotionCondition[parCondition.size()];
+        LongList[] matches = new LongList[conditions.length];
+        int c = 0;
+        for (String source : parCondition.keySet()) {
+            conditions[c] = PromotionCondition.compile(source);
+            matches[c++] = new LongList();
+        }
+
+        long produits = conditions.length > 0 ? scanCatalogue(fenetre, conditions, matches) : 0;
+
+        Map<Integer, long[]> eligibles = new LinkedHashMap<>();
+        c = 0;
+        for (List<Integer> ids : parCondition.values()) {
+            long[] produitIds = matches[c++].toArray();
+            for (Integer id : ids) {
+                eligibles.put(id, produitIds);
+            }
+        }
+
+        long[] changes = {0, 0};
+        eligibles.forEach((promotionId, produitIds) -> {
+            try {
+                long[] result = transactionTemplate.execute(status -> synchroniserLiens(promotionId, produitIds));
+                changes[0] += result[0];
+                changes[1] += result[1];
+            } catch (RuntimeException e) {
+                logger.error("Liens de la promotion {} non mis à jour : {}", promotionId, e.getMessage(), e);
+            }
+        });
+        if (changes[0] + changes[1] > 0) {
+            eventPublisher.publishEvent(new PromotionsChangedEvent());
+        }
+
+        Map<Integer, Integer> comptes = new LinkedHashMap<>();
+        eligibles.forEach((id, produitIds) -> comptes.put(id, produitIds.length));
+        Evaluation evaluation = new Evaluation(fenetre, regles.size(), produits, comptes, changes[0], changes[1],
+                invalides, System.currentTimeMillis() - started);
+        memo = new Memo(fenetre, Map.copyOf(regles), evaluation);
+        logger.info("Règles de promotion évaluées : {}", evaluation);
+        return evaluation;
+    }
+
+    public Evaluation getDerniereEvaluation() {
+        Memo current = memo;
+        return current != null ? current.evaluation() : null;
+    }
+
+    // Parcours unique du catalogue ; la partie produit de chaque condition distincte est évaluée
+    // une fois par produit (le panier est vérifié au passage de commande)
+    private long scanCatalogue(LocalDate today, PromotionCondition[] conditions, LongList[] matches) {
+        long count = 0;
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = new ArrayList<>(chunkSize);
+            jdbcTemplate.query(SELECT_PRODUITS, rs -> {
+                long id = rs.getLong("id");
+                Date expiration = rs.getDate("date_expiration");
+                // getObject : une colonne NULL reste inconnue (getInt/getDouble la liraient comme 0)
+                PromotionCondition.Facts facts = new PromotionCondition.Facts(
+                        rs.getObject("stock", Integer.class),
+                        rs.getObject("sales_count", Integer.class),
+                        expiration != null ? ChronoUnit.DAYS.between(today, expiration.toLocalDate()) : null,
+                        category(rs.getString("category")),
+                        rs.getObject("prix", Double.class),
+                        null);
+                for (int i = 0; i < conditions.length; i++) {
+                    if (conditions[i].matchesProduit(facts)) {
+                        matches[i].add(id);
+                    }
+                }
+                ids.add(id);
+            }, lastId, chunkSize);
+            count += ids.size();
+            if (ids.size() < chunkSize) {
+                return count;
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    // Aligne les liens sur les produits éligibles (deux listes triées) : {ajoutés, retirés}
+    private long[] synchroniserLiens(Integer promotionId, long[] eligibles) {
+        List<Long> existants = jdbcTemplate.queryForList(SELECT_LINKS, Long.class, promotionId);
+        List<Object[]> ajouts = new ArrayList<>();
+        List<Object[]> retraits = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < eligibles.length || j < existants.size()) {
+            if (j >= existants.size() || (i < eligibles.length && eligibles[i] < existants.get(j))) {
+                ajouts.add(new Object[]{promotionId, eligibles[i++]});
+            } else if (i >= eligibles.length || existants.get(j) < eligibles[i]) {
+                retraits.add(new Object[]{promotionId, existants.get(j++)});
+            } else {
+                i++;
+                j++;
+            }
+        }
+        if (!retraits.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_LINK, retraits);
+        }
+        if (!ajouts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_LINK, ajouts);
+        }
+        return new long[]{ajouts.size(), retraits.size()};
+    }
+
+    private static Category category(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Category.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Liste de long sans boxing, remplie dans l'ordre croissant des ids. */
+    private static final class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
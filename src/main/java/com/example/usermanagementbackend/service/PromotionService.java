@@ -6,15 +6,15 @@ import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class PromotionService implements IPromotionService {
@@ -31,6 +31,21 @@ public class PromotionService implements IPromotionService {
     @Autowired
     private PromotionUsageRepository promotionUsageRepository;
 
+    @Autowired
+    private PromotionAnalyticsService promotionAnalyticsService;
+
+    @Autowired
+    private PromotionPricingEngine promotionPricingEngine;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PromotionSuggestionBatchService promotionSuggestionBatchService;
+
+    @Autowired
+    private PromotionRuleEngine promotionRuleEngine;
+
     @Override
     public List<Promotion> getAllPromotions() {
         List<Promotion> promotions = promotionRepository.findAll();
@@ -84,6 +99,7 @@ public class PromotionService implements IPromotionService {
         System.out.println("Promotion sauvegardée : " + savedPromotion);
         System.out.println("Produits associés à la promotion sauvegardée : " + savedPromotion.getProduits());
 
+        promotionsModifiees();
         return savedPromotion;
     }
 
@@ -117,6 +133,7 @@ public class PromotionService implements IPromotionService {
 
             Promotion updatedPromotion = promotionRepository.save(existing);
             Hibernate.initialize(updatedPromotion.getProduits());
+            promotionsModifiees();
             return updatedPromotion;
         }).orElseThrow(() -> new RuntimeException("Promotion not found"));
     }
@@ -126,6 +143,7 @@ public class PromotionService implements IPromotionService {
             existing.setActive(active);
             Promotion updatedPromotion = promotionRepository.save(existing);
             Hibernate.initialize(updatedPromotion.getProduits());
+            promotionsModifiees();
             return updatedPromotion;
         }).orElseThrow(() -> new RuntimeException("Promotion not found"));
     }
@@ -133,45 +151,66 @@ public class PromotionService implements IPromotionService {
     @Override
     public void deletePromotion(Integer id) {
         promotionRepository.deleteById(id);
+        promotionsModifiees();
     }
 
+    @Transactional
     public double appliquerPromotion(double montantTotal, Promotion promotion) {
         if (promotion == null || promotion.getConditionPromotion() == null || !promotion.isActive()) {
             return montantTotal;
         }
 
-        String condition = promotion.getConditionPromotion();
-        double reduction = promotion.getPourcentageReduction() / 100;
-        double montantApresReduction = montantTotal;
+        double montantApresReduction = PromotionPricingEngine.montantApresReduction(
+                promotion.getConditionPromotion(), promotion.getPourcentageReduction(), montantTotal);
+        enregistrerUtilisation(promotion, montantTotal, montantApresReduction);
+        return montantApresReduction;
+    }
 
-        if ("ACHAT_GROUPE".equals(condition) && montantTotal >= 3) {
-            montantApresReduction = montantTotal * (1 - reduction);
-        } else if ("MONTANT_MIN".equals(condition) && montantTotal > 100) {
-            montantApresReduction = montantTotal * (1 - reduction);
-        } else if ("EXPIRATION_PRODUIT".equals(condition)) {
-            montantApresReduction = montantTotal * (1 - reduction);
+    /**
+     * Applique une promotion d'après l'index en mémoire (aucune lecture de promotion en base).
+     * Retourne null si la promotion n'est pas active ou pas en vigueur.
+     */
+    @Transactional
+    public Double appliquerPromotion(double montantTotal, Integer promotionId) {
+        PromotionPricingEngine.Rule rule = promotionPricingEngine.activeRule(promotionId, Instant.now());
+        if (rule == null || rule.condition() == null) {
+            return null;
         }
+        double montantApresReduction = PromotionPricingEngine.montantApresReduction(
+                rule.condition(), rule.pourcentageReduction(), montantTotal);
+        enregistrerUtilisation(promotionRepository.getReferenceById(promotionId), montantTotal, montantApresReduction);
+        return montantApresReduction;
+    }
 
+    /** Utilisations des promotions appliquées au passage d'une commande (une par promotion). */
+    @Transactional
+    public void enregistrerUtilisations(Collection<PromotionPricingEngine.Applied> appliquees) {
+        for (PromotionPricingEngine.Applied applied : appliquees) {
+            enregistrerUtilisation(promotionRepository.getReferenceById(applied.promotionId()),
+                    applied.montantInitial(), applied.montantApresReduction());
+        }
+    }
+
+    private void enregistrerUtilisation(Promotion promotion, double montantTotal, double montantApresReduction) {
         PromotionUsage usage = new PromotionUsage();
         usage.setPromotion(promotion);
         usage.setMontantInitial(montantTotal);
         usage.setMontantApresReduction(montantApresReduction);
         usage.setDateApplication(new Date());
         promotionUsageRepository.save(usage);
+        promotionAnalyticsService.recordUsage(usage);
+    }
 
-        return montantApresReduction;
+    private void promotionsModifiees() {
+        eventPublisher.publishEvent(new PromotionsChangedEvent());
     }
 
     @Scheduled(cron = "0 0 0 * * ?")
     public void verifierPromotionsActives() {
-        List<Promotion> promotions = promotionRepository.findAll();
-        Date today = new Date();
-
-        for (Promotion promo : promotions) {
-            if (promo.getDateFin() != null && promo.getDateFin().before(today)) {
-                promo.setActive(false);
-                promotionRepository.save(promo);
-            }
+        int expired = promotionRepository.deactivateExpired(new Date());
+        logger.info("Promotions expirées désactivées : {}", expired);
+        if (expired > 0) {
+            promotionsModifiees();
         }
     }
 
@@ -216,6 +255,7 @@ public class PromotionService implements IPromotionService {
                 }
             }
         }
+        promotionsModifiees();
     }
 
     public void appliquerPromotionSurProduit(Produit produit, Promotion promo) {
@@ -238,209 +278,113 @@ public class PromotionService implements IPromotionService {
     }
 
     @Scheduled(cron = "0 0 0 25 11 ?")
+    @Transactional
     public void appliquerPromoBlackFriday() {
         Optional<Promotion> blackFridayPromoOpt = promotionRepository.findByNom("Black Friday");
         if (blackFridayPromoOpt.isPresent()) {
             Promotion blackFridayPromo = blackFridayPromoOpt.get();
             if (blackFridayPromo.isActive()) {
                 List<Produit> produits = produitRepository.findAll();
+                List<Produit> modifies = new ArrayList<>();
                 for (Produit produit : produits) {
                     if (produit.getPromotions().stream().noneMatch(p -> p.isActive() && !p.equals(blackFridayPromo))) {
                         double prixAvecReduction = produit.getPrix() * (1 - blackFridayPromo.getPourcentageReduction() / 100);
                         produit.setPrix(prixAvecReduction);
                         produit.getPromotions().add(blackFridayPromo);
-                        produitRepository.save(produit);
+                        modifies.add(produit);
                     }
                 }
+                // Une seule transaction : les UPDATE partent par lots JDBC (hibernate.jdbc.batch_size)
+                produitRepository.saveAll(modifies);
+                promotionsModifiees();
             }
         }
     }
 
     @Scheduled(cron = "0 0 0 28 11 ?")
     public void desactiverPromoBlackFriday() {
-        Optional<Promotion> blackFridayPromoOpt = promotionRepository.findByNom("Black Friday");
-        blackFridayPromoOpt.ifPresent(promo -> {
-            promo.setActive(false);
-            promotionRepository.save(promo);
-        });
+        int updated = promotionRepository.deactivateByNom("Black Friday");
+        logger.info("Promotion Black Friday désactivée : {}", updated);
+        if (updated > 0) {
+            promotionsModifiees();
+        }
     }
 
     @Override
-    public void bulkActivate(List<Integer> ids) {
-        List<Promotion> promotions = promotionRepository.findAllById(ids);
-        for (Promotion promo : promotions) {
-            promo.setActive(true);
-            promotionRepository.save(promo);
-        }
+    public int bulkActivate(List<Integer> ids) {
+        int updated = promotionRepository.updateActive(ids, true);
+        promotionsModifiees();
+        return updated;
     }
 
     @Override
-    public void bulkDeactivate(List<Integer> ids) {
-        List<Promotion> promotions = promotionRepository.findAllById(ids);
-        for (Promotion promo : promotions) {
-            promo.setActive(false);
-            promotionRepository.save(promo);
-        }
+    public int bulkDeactivate(List<Integer> ids) {
+        int updated = promotionRepository.updateActive(ids, false);
+        promotionsModifiees();
+        return updated;
     }
 
     @Override
     public void bulkDelete(List<Integer> ids) {
         promotionRepository.deleteAllById(ids);
+        promotionsModifiees();
     }
 
-    public Map<String, Object> getPromotionAnalytics() {
-        // Récupérer toutes les utilisations de promotions
-        List<PromotionUsage> usageList = promotionUsageRepository.findAll();
-        logger.info("Nombre d'entrées dans promotion_usage: {}", usageList.size());
-        Map<Integer, List<PromotionUsage>> usageByPromotion = usageList.stream()
-                .collect(Collectors.groupingBy(usage -> usage.getPromotion().getId()));
-        logger.info("Promotions avec utilisations (usageByPromotion): {}", usageByPromotion.keySet());
-
-        // Récupérer toutes les promotions actives
-        List<Promotion> activePromotions = promotionRepository.findByActiveTrue();
-        logger.info("Nombre de promotions actives: {}", activePromotions.size());
-        activePromotions.forEach(promo ->
-                logger.info("Promotion active - ID: {}, Nom: {}, Active: {}", promo.getId(), promo.getNom(), promo.isActive())
-        );
-
-        Map<String, Object> analytics = new HashMap<>();
-        List<Map<String, Object>> promotionStats = new ArrayList<>();
-
-        // Ajouter les statistiques pour les promotions qui ont été appliquées
-        for (Map.Entry<Integer, List<PromotionUsage>> entry : usageByPromotion.entrySet()) {
-            Integer promoId = entry.getKey();
-            List<PromotionUsage> usages = entry.getValue();
-            Promotion promo = promotionRepository.findById(promoId).orElse(null);
-            if (promo == null) {
-                logger.warn("Promotion avec ID {} introuvable", promoId);
-                continue;
-            }
-
-            double totalRevenueImpact = usages.stream()
-                    .mapToDouble(usage -> usage.getMontantInitial() - usage.getMontantApresReduction())
-                    .sum();
-            long usageCount = usages.size();
-
-            Map<String, Object> stat = new HashMap<>();
-            stat.put("promotionId", promoId);
-            stat.put("promotionName", promo.getNom());
-            stat.put("usageCount", usageCount);
-            stat.put("totalRevenueImpact", totalRevenueImpact);
-            promotionStats.add(stat);
-            logger.info("Stat ajoutée pour la promotion {}: usageCount={}, totalRevenueImpact={}",
-                    promo.getNom(), usageCount, totalRevenueImpact);
-        }
-
-        // Ajouter les promotions actives qui n'ont pas encore été appliquées
-        for (Promotion promo : activePromotions) {
-            // Vérifier si la promotion est déjà dans les statistiques
-            boolean alreadyIncluded = promotionStats.stream()
-                    .anyMatch(stat -> stat.get("promotionId").equals(promo.getId()));
-
-            if (!alreadyIncluded) {
-                Map<String, Object> stat = new HashMap<>();
-                stat.put("promotionId", promo.getId());
-                stat.put("promotionName", promo.getNom());
-                stat.put("usageCount", 0L); // Pas encore appliquée
-                stat.put("totalRevenueImpact", 0.0);
-                promotionStats.add(stat);
-                logger.info("Promotion active mais non appliquée ajoutée - Nom: {}, ID: {}",
-                        promo.getNom(), promo.getId());
-            }
-        }
-
-        analytics.put("promotionStats", promotionStats);
-        analytics.put("totalPromotionsApplied", usageList.size());
-        logger.info("Réponse finale: {}", analytics);
-        return analytics;
+    public Map<String, Object> getPromotionAnalytics(LocalDate from, LocalDate to) {
+        return promotionAnalyticsService.getAnalytics(from, to);
     }
 
+    public int rebuildPromotionAnalytics() {
+        return promotionAnalyticsService.rebuild();
+    }
 
+    // Suggestions IA de la nuit (voir PromotionSuggestionBatchService)
     @Scheduled(cron = "0 0 0 * * ?")
-    @Transactional
     public void suggestPromotions() {
-        System.out.println("Starting suggestPromotions...");
-        if (produitRepository == null) {
-            throw new IllegalStateException("produitRepository is not initialized");
-        }
-        if (promotionRepository == null) {
-            throw new IllegalStateException("promotionRepository is not initialized");
+        if (genererSuggestions() == null) {
+            logger.info("Suggestions de promotions déjà en cours, passage de minuit ignoré");
         }
+    }
 
-        List<Produit> produits = produitRepository.findAll();
-        System.out.println("Found " + produits.size() + " products");
+    /** Calcul synchrone des suggestions ; null si un calcul est déjà en cours. */
+    public PromotionSuggestionBatchService.Report genererSuggestions() {
+        return promotionSuggestionBatchService.run();
+    }
 
-        ZonedDateTime todayZoned = ZonedDateTime.now(ZoneId.systemDefault());
-        LocalDate today = todayZoned.toLocalDate();
-        System.out.println("Today's date: " + today);
+    /** Lance le calcul en tâche de fond ; false si un calcul est déjà en cours. */
+    public boolean demarrerSuggestions() {
+        return promotionSuggestionBatchService.start();
+    }
 
-        for (Produit produit : produits) {
-            try {
-                Hibernate.initialize(produit);
-                System.out.println("Processing product: " + produit.getNom());
-                Integer salesCount = produit.getSalesCount() != null ? produit.getSalesCount() : 0;
-                boolean lowSales = salesCount < 10;
-                System.out.println("Product: " + produit.getNom() + ", salesCount: " + salesCount + ", lowSales: " + lowSales);
-
-                boolean nearingExpiration = false;
-                if (produit.getDateExpiration() != null) {
-                    // Convert java.util.Date to LocalDate safely
-                    LocalDate expirationDate;
-                    if (produit.getDateExpiration() instanceof java.sql.Date) {
-                        expirationDate = ((java.sql.Date) produit.getDateExpiration()).toLocalDate();
-                    } else {
-                        expirationDate = produit.getDateExpiration().toInstant()
-                                .atZone(ZoneId.systemDefault())
-                                .toLocalDate();
-                    }
-                    long daysRemaining = java.time.temporal.ChronoUnit.DAYS.between(today, expirationDate);
-                    nearingExpiration = daysRemaining <= 10 && daysRemaining >= 0;
-                    System.out.println("Product: " + produit.getNom() + ", daysRemaining: " + daysRemaining + ", nearingExpiration: " + nearingExpiration);
-                } else {
-                    System.out.println("Product: " + produit.getNom() + ", dateExpiration is null");
-                }
+    public Map<String, Object> getSuggestionStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", promotionSuggestionBatchService.isRunning());
+        status.put("progress", promotionSuggestionBatchService.getProgress());
+        status.put("lastReport", promotionSuggestionBatchService.getLastReport());
+        return status;
+    }
 
-                if (lowSales && nearingExpiration) {
-                    System.out.println("Creating/Updating promotion for product: " + produit.getNom());
-                    Optional<Promotion> existingPromoOpt = promotionRepository.findByNom("AI Suggested Promotion for " + produit.getNom());
-                    Promotion promo;
-                    if (existingPromoOpt.isPresent()) {
-                        System.out.println("Existing promotion found for: " + produit.getNom());
-                        promo = existingPromoOpt.get();
-                        promo.setPourcentageReduction(45);
-                        promo.setConditionPromotion("EXPIRATION_AND_LOW_SALES");
-                        promo.setDateDebut(Date.from(todayZoned.toInstant()));
-                        LocalDate dateFinLocal = today.plusDays(7);
-                        promo.setDateFin(Date.from(dateFinLocal.atStartOfDay(ZoneId.systemDefault()).toInstant()));
-                        promo.setActive(true);
-                        List<Produit> produitsList = new ArrayList<>();
-                        produitsList.add(produit);
-                        promo.setProduits(produitsList);
-                    } else {
-                        System.out.println("Creating new promotion for: " + produit.getNom());
-                        promo = new Promotion();
-                        promo.setNom("AI Suggested Promotion for " + produit.getNom());
-                        promo.setPourcentageReduction(45);
-                        promo.setConditionPromotion("EXPIRATION_AND_LOW_SALES");
-                        promo.setDateDebut(Date.from(todayZoned.toInstant()));
-                        LocalDate dateFinLocal = today.plusDays(7);
-                        promo.setDateFin(Date.from(dateFinLocal.atStartOfDay(ZoneId.systemDefault()).toInstant()));
-                        promo.setActive(true);
-                        List<Produit> produitsList = new ArrayList<>();
-                        produitsList.add(produit);
-                        promo.setProduits(produitsList);
-                    }
-                    System.out.println("Saving promotion for: " + produit.getNom());
-                    promotionRepository.save(promo);
-                    System.out.println("Promotion saved successfully for: " + produit.getNom());
-                }
-            } catch (Exception e) {
-                System.err.println("Error processing product " + produit.getNom() + ": " + e.getClass().getName());
-                e.printStackTrace();
-                throw new RuntimeException("Failed to process product " + produit.getNom(), e);
-            }
+    /** Ciblage des promotions à condition compilée ; force une nouvelle lecture du catalogue. */
+    public PromotionRuleEngine.Evaluation evaluerRegles() {
+        return promotionRuleEngine.evaluer(true);
+    }
+
+    public PromotionRuleEngine.Evaluation getDerniereEvaluationRegles() {
+        return promotionRuleEngine.getDerniereEvaluation();
+    }
+
+    public Map<String, Object> validerCondition(String condition) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        try {
+            PromotionCondition compiled = PromotionCondition.parse(condition);
+            result.put("valid", true);
+            result.put("alias", compiled.isAlias());
+            result.put("ciblageProduit", compiled.isCiblageProduit());
+        } catch (IllegalArgumentException e) {
+            result.put("valid", false);
+            result.put("erreur", e.getMessage());
         }
-        System.out.println("Finished suggestPromotions");
+        return result;
     }
 
     @Override
@@ -0,0 +1,319 @@
+package com.example.usermanagementbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suggestion automatique de promotions pour les produits qui se vendent peu et expirent bientôt.
+ *
+ * Les candidats sont présélectionnés en SQL (ventes < {@code promotion.suggestion.max-sales},
+ * expiration dans les {@code promotion.suggestion.expiry-days} jours) et lus par lots ordonnés
+ * sur l'id. Chaque lot est traité sur un pool borné : recherche des promotions existantes en une
+ * requête, puis création ou mise à jour des promotions et de leurs liens produit par batch JDBC,
+ * dans une transaction propre au lot. Un lot en échec est journalisé et n'arrête pas les autres.
+ */
+@Service
+public class PromotionSuggestionBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromotionSuggestionBatchService.class);
+
+    static final String NAME_PREFIX = "AI Suggested Promotion for ";
+    static final String CONDITION = "EXPIRATION_AND_LOW_SALES";
+    private static final int MAX_ERRORS = 20;
+
+    private static final String SELECT_CANDIDATES = "SELECT id, nom FROM produit "
+            + "WHERE date_expiration BETWEEN ? AND ? AND COALESCE(sales_count, 0) < ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_PROMOTIONS = "SELECT id, nom FROM promotion WHERE nom IN (:noms) ORDER BY id";
+    private static final String UPDATE_PROMOTION = "UPDATE promotion SET pourcentage_reduction = ?, "
+            + "condition_promotion = ?, date_debut = ?, date_fin = ?, active = TRUE WHERE id = ?";
+    private static final String INSERT_PROMOTION = "INSERT INTO promotion (nom, pourcentage_reduction, "
+            + "condition_promotion, date_debut, date_fin, active) VALUES (?, ?, ?, ?, ?, TRUE)";
+    private static final String DELETE_LINKS = "DELETE FROM promotion_produit WHERE promotion_id = ?";
+    private static final String INSERT_LINK = "INSERT INTO promotion_produit (promotion_id, produit_id) VALUES (?, ?)";
+
+    public record Report(long candidats, long creees, long misesAJour, long ignores, long lots, long lotsEnEchec,
+                         List<String> erreurs, long durationMs) {
+    }
+
+    private record Candidate(long produitId, String nomPromotion) {
+    }
+
+    // Compteurs d'une exécution, partagés entre les threads du pool
+    private static final class Counters {
+        final long startedAt = System.currentTimeMillis();
+        final AtomicLong candidats = new AtomicLong();
+        final AtomicLong creees = new AtomicLong();
+        final AtomicLong misesAJour = new AtomicLong();
+        final AtomicLong ignores = new AtomicLong();
+        final AtomicLong lots = new AtomicLong();
+        final AtomicLong lotsEnEchec = new AtomicLong();
+        final List<String> erreurs = new ArrayList<>();
+
+        synchronized void error(String message) {
+            if (erreurs.size() < MAX_ERRORS) {
+                erreurs.add(message);
+            }
+        }
+
+        synchronized Report toReport() {
+            return new Report(candidats.get(), creees.get(), misesAJour.get(), ignores.get(), lots.get(),
+                    lotsEnEchec.get(), List.copyOf(erreurs), System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ThreadPoolTaskExecutor workers;
+    private final ThreadPoolTaskExecutor launcher;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Counters current;
+    private volatile Report lastReport;
+
+    @Value("${promotion.suggestion.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${promotion.suggestion.max-sales:10}")
+    private int maxSales;
+
+    @Value("${promotion.suggestion.expiry-days:10}")
+    private int expiryDays;
+
+    @Value("${promotion.suggestion.reduction:45}")
+    private double reduction;
+
+    @Value("${promotion.suggestion.duration-days:7}")
+    private int durationDays;
+
+    public PromotionSuggestionBatchService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                           ApplicationEventPublisher eventPublisher,
+                                           @Value("${promotion.suggestion.parallelism:4}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+
+        // File courte et exécution par l'appelant quand elle est pleine : la lecture ne prend pas d'avance
+        this.workers = new ThreadPoolTaskExecutor();
+        this.workers.setCorePoolSize(parallelism);
+        this.workers.setMaxPoolSize(parallelism);
+        this.workers.setQueueCapacity(parallelism);
+        this.workers.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        this.workers.setThreadNamePrefix("promo-suggest-");
+        this.workers.initialize();
+
+        this.launcher = new ThreadPoolTaskExecutor();
+        this.launcher.setCorePoolSize(1);
+        this.launcher.setMaxPoolSize(1);
+        this.launcher.setQueueCapacity(0);
+        this.launcher.setThreadNamePrefix("promo-suggest-run-");
+        this.launcher.initialize();
+    }
+
+    /**
+     * Lance le calcul en tâche de fond. Retourne false si un calcul est déjà en cours.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        current = null;
+        try {
+            launcher.execute(() -> {
+                try {
+                    doRun();
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /** Exécute le calcul dans le thread appelant ; null si un calcul est déjà en cours. */
+    public Report run() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        current = null;
+        try {
+            return doRun();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /** Avancement du calcul en cours, ou null. */
+    public Report getProgress() {
+        Counters counters = current;
+        return running.get() && counters != null ? counters.toReport() : null;
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    private Report doRun() {
+        Counters counters = new Counters();
+        current = counters;
+        LocalDate today = LocalDate.now();
+        Date from = Date.valueOf(today);
+        Date to = Date.valueOf(today.plusDays(expiryDays));
+        Timestamp debut = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp fin = Timestamp.valueOf(today.plusDays(durationDays).atStartOfDay());
+        // Deux produits de même nom partagent une promotion : le premier lot qui la rencontre la traite
+        Map<String, Boolean> claimed = new ConcurrentHashMap<>();
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        long lastId = 0;
+        while (true) {
+            List<Candidate> chunk;
+            try {
+                chunk = jdbcTemplate.query(SELECT_CANDIDATES, (rs, i) -> {
+                    String nom = rs.getString("nom");
+                    return new Candidate(rs.getLong("id"), nom != null ? NAME_PREFIX + nom : null);
+                }, from, to, maxSales, lastId, chunkSize);
+            } catch (RuntimeException e) {
+                logger.error("Lecture des produits candidats interrompue après l'id {} : {}", lastId, e.getMessage(), e);
+                counters.error("Lecture après l'id " + lastId + " : " + e.getMessage());
+                break;
+            }
+            if (chunk.isEmpty()) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).produitId();
+            counters.candidats.addAndGet(chunk.size());
+            long firstId = chunk.get(0).produitId();
+            pending.add(CompletableFuture.runAsync(() -> processChunk(chunk, debut, fin, claimed, counters), workers)
+                    .exceptionally(e -> {
+                        counters.lotsEnEchec.incrementAndGet();
+                        counters.error("Lot à partir du produit " + firstId + " : " + OutboundHttpClient.rootMessage(e));
+                        logger.warn("Lot de suggestions à partir du produit {} en échec : {}", firstId,
+                                OutboundHttpClient.rootMessage(e));
+                        return null;
+                    }));
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+
+        if (counters.creees.get() + counters.misesAJour.get() > 0) {
+            eventPublisher.publishEvent(new PromotionsChangedEvent());
+        }
+        Report report = counters.toReport();
+        lastReport = report;
+        logger.info("Suggestions de promotions : {}", report);
+        return report;
+    }
+
+    private void processChunk(List<Candidate> chunk, Timestamp debut, Timestamp fin,
+                              Map<String, Boolean> claimed, Counters counters) {
+        // Un seul produit par nom de promotion
+        Map<String, Long> byName = new LinkedHashMap<>();
+        for (Candidate candidate : chunk) {
+            if (candidate.nomPromotion() == null || claimed.putIfAbsent(candidate.nomPromotion(), Boolean.TRUE) != null) {
+                counters.ignores.incrementAndGet();
+                continue;
+            }
+            byName.put(candidate.nomPromotion(), candidate.produitId());
+        }
+        if (byName.isEmpty()) {
+            counters.lots.incrementAndGet();
+            return;
+        }
+
+        int[] written = transactionTemplate.execute(status -> {
+            Map<String, Integer> existing = promotionIds(new ArrayList<>(byName.keySet()));
+            List<Object[]> updates = new ArrayList<>();
+            List<Object[]> inserts = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : byName.entrySet()) {
+                Integer promotionId = existing.get(entry.getKey());
+                if (promotionId != null) {
+                    updates.add(new Object[]{reduction, CONDITION, debut, fin, promotionId});
+                } else {
+                    inserts.add(new Object[]{entry.getKey(), reduction, CONDITION, debut, fin});
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_PROMOTION, updates);
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_PROMOTION, inserts);
+                List<String> created = new ArrayList<>(inserts.size());
+                for (Object[] insert : inserts) {
+                    created.add((String) insert[0]);
+                }
+                existing.putAll(promotionIds(created));
+            }
+
+            // La promotion ne vise que ce produit : liens remplacés
+            List<Object[]> unlink = new ArrayList<>(updates.size());
+            for (Object[] update : updates) {
+                unlink.add(new Object[]{update[4]});
+            }
+            List<Object[]> links = new ArrayList<>(byName.size());
+            for (Map.Entry<String, Long> entry : byName.entrySet()) {
+                links.add(new Object[]{existing.get(entry.getKey()), entry.getValue()});
+            }
+            if (!unlink.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_LINKS, unlink);
+            }
+            jdbcTemplate.batchUpdate(INSERT_LINK, links);
+            return new int[]{inserts.size(), updates.size()};
+        });
+
+        counters.creees.addAndGet(written[0]);
+        counters.misesAJour.addAndGet(written[1]);
+        counters.lots.incrementAndGet();
+    }
+
+    // Id de la plus ancienne promotion portant chacun de ces noms
+    private Map<String, Integer> promotionIds(List<String> noms) {
+        Map<String, Integer> ids = new HashMap<>();
+        namedJdbcTemplate.query(SELECT_PROMOTIONS, new MapSqlParameterSource("noms", noms),
+                rs -> {
+                    ids.putIfAbsent(rs.getString("nom"), rs.getInt("id"));
+                });
+        return ids;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        launcher.shutdown();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.usermanagementbackend.service;
+
+/**
+ * Publié après toute modification de promotions (création, dates, activation, produits liés).
+ * {@link PromotionPricingEngine} reconstruit alors son index après le commit.
+ */
+public record PromotionsChangedEvent() {
+}
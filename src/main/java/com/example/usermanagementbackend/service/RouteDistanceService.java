@@ -0,0 +1,274 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.RouteDistance;
+import com.example.usermanagementbackend.repository.RouteDistanceRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Distances routières (API OSRM) avec cache.
+ *
+ * Les coordonnées sont arrondies à {@code route.cache.precision} décimales (3 = environ 110 m),
+ * si bien que deux livraisons vers le même quartier partagent la même entrée. Le cache mémoire
+ * est un LRU borné avec durée de vie ; il est adossé à la table route_distance_cache pour
+ * survivre aux redémarrages. Les appels simultanés pour le même trajet partagent une requête.
+ * Les requêtes OSRM passent par {@link OutboundHttpClient} sans bloquer de thread : la réponse
+ * complète le futur de {@link #getDrivingDistanceKmAsync}. Les lectures et écritures de la
+ * table passent par un petit pool dédié ({@code route.cache.db-threads}) : ni l'appelant ni les
+ * threads du client HTTP n'attendent la base. Disjoncteur ouvert ou hôte saturé, la distance est
+ * null et l'appelant se rabat sur la distance à vol d'oiseau.
+ */
+@Service
+public class RouteDistanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteDistanceService.class);
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private record CachedDistance(double distanceKm, LocalDateTime computedAt) {
+    }
+
+    private final RouteDistanceRepository routeDistanceRepository;
+    private final JsonFactory jsonFactory;
+    private final OutboundHttpClient outboundHttpClient;
+    private final String osrmBaseUrl;
+    private final Duration timeout;
+    private final double scale;
+    private final int precision;
+    private final Duration ttl;
+    private final ThreadPoolTaskExecutor dbExecutor;
+
+    private final Map<String, CachedDistance> lru;
+    private final ConcurrentHashMap<String, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+
+    public RouteDistanceService(RouteDistanceRepository routeDistanceRepository, ObjectMapper objectMapper,
+                                OutboundHttpClient outboundHttpClient,
+                                @Value("${osrm.base-url:https://router.project-osrm.org}") String osrmBaseUrl,
+                                @Value("${osrm.timeout-ms:10000}") long timeoutMs,
+                                @Value("${route.cache.precision:3}") int precision,
+                                @Value("${route.cache.max-entries:10000}") int maxEntries,
+                                @Value("${route.cache.ttl-days:30}") long ttlDays,
+                                @Value("${route.cache.db-threads:4}") int dbThreads) {
+        this.routeDistanceRepository = routeDistanceRepository;
+        this.jsonFactory = objectMapper.getFactory();
+        this.osrmBaseUrl = osrmBaseUrl.endsWith("/") ? osrmBaseUrl.substring(0, osrmBaseUrl.length() - 1) : osrmBaseUrl;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.precision = precision;
+        this.scale = Math.pow(10, precision);
+        this.ttl = Duration.ofDays(ttlDays);
+        this.outboundHttpClient = outboundHttpClient;
+        this.lru = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDistance> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.dbExecutor = new ThreadPoolTaskExecutor();
+        this.dbExecutor.setCorePoolSize(Math.max(1, dbThreads));
+        this.dbExecutor.setMaxPoolSize(Math.max(1, dbThreads));
+        this.dbExecutor.setThreadNamePrefix("route-cache-");
+        this.dbExecutor.initialize();
+    }
+
+    /**
+     * Distance routière en km entre deux points, ou null si OSRM ne répond pas
+     * (l'appelant se rabat alors sur {@link #haversineKm}).
+     */
+    public Double getDrivingDistanceKm(double startLat, double startLng, double endLat, double endLng) {
+        try {
+            return getDrivingDistanceKmAsync(startLat, startLng, endLat, endLng).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Version asynchrone : le futur est complété par le client HTTP à la réponse d'OSRM, aucun
+     * thread n'attend. Les appels simultanés pour le même trajet reçoivent le même futur.
+     */
+    public CompletableFuture<Double> getDrivingDistanceKmAsync(double startLat, double startLng,
+                                                               double endLat, double endLng) {
+        long[] q = {bucket(startLat), bucket(startLng), bucket(endLat), bucket(endLng)};
+        String key = precision + ":" + q[0] + "," + q[1] + ";" + q[2] + "," + q[3];
+
+        CachedDistance cached = fromMemory(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.distanceKm());
+        }
+
+        CompletableFuture<Double> created = new CompletableFuture<>();
+        CompletableFuture<Double> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<Double> loaded;
+        try {
+            loaded = load(key, q);
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        }
+        loaded.whenComplete((distance, error) -> {
+            // Retiré avant de compléter : un appel suivant trouve la distance en mémoire
+            inFlight.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(distance);
+            }
+        });
+        return created;
+    }
+
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lngDistance = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lngDistance / 2) * Math.sin(lngDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
+    private CompletableFuture<Double> load(String key, long[] q) {
+        // Cache persistant (autre instance ou avant redémarrage)
+        return CompletableFuture.supplyAsync(() -> routeDistanceRepository.findById(key).orElse(null), dbExecutor)
+                .thenCompose(stored -> {
+                    if (stored != null && isFresh(stored.getComputedAt())) {
+                        remember(key, new CachedDistance(stored.getDistanceKm(), stored.getComputedAt()));
+                        return CompletableFuture.completedFuture(stored.getDistanceKm());
+                    }
+                    return fetchFromOsrm(q[0] / scale, q[1] / scale, q[2] / scale, q[3] / scale)
+                            .thenApplyAsync(distance -> {
+                                if (distance == null) {
+                                    // Échec réseau : on garde une ancienne valeur plutôt que rien
+                                    return stored != null ? stored.getDistanceKm() : null;
+                                }
+                                LocalDateTime now = LocalDateTime.now();
+                                remember(key, new CachedDistance(distance, now));
+                                try {
+                                    routeDistanceRepository.save(new RouteDistance(key, distance, now));
+                                } catch (RuntimeException e) {
+                                    logger.warn("Distance {} non persistée : {}", key, e.getMessage());
+                                }
+                                return distance;
+                            }, dbExecutor);
+                });
+    }
+
+    // Distance en km, ou null si OSRM n'a pas donné de route (erreur, HTTP non 200, appel refusé)
+    private CompletableFuture<Double> fetchFromOsrm(double startLat, double startLng, double endLat, double endLng) {
+        // Locale.US pour avoir des points (et non des virgules) dans les coordonnées
+        String url = String.format(Locale.US, "%s/route/v1/driving/%.6f,%.6f;%.6f,%.6f?overview=false",
+                osrmBaseUrl, startLng, startLat, endLng, endLat);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(timeout).GET().build();
+        // Corps reçu en entier par le client HTTP (quelques centaines d'octets) : la lecture ne bloque pas
+        return outboundHttpClient.sendAsync("osrm.route", request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        logger.warn("OSRM a répondu HTTP {} pour {}", response.statusCode(), url);
+                        return null;
+                    }
+                    try (JsonParser parser = jsonFactory.createParser(response.body())) {
+                        Double meters = parseRouteDistance(parser);
+                        return meters != null ? meters / 1000.0 : null;
+                    } catch (IOException e) {
+                        logger.warn("Réponse OSRM illisible ({}) : {}", url, e.getMessage());
+                        return null;
+                    }
+                })
+                .exceptionally(e -> {
+                    logger.warn("Erreur d'appel OSRM ({}) : {}", url, OutboundHttpClient.rootMessage(e));
+                    return null;
+                });
+    }
+
+    /**
+     * Lit {@code routes[0].distance} (en mètres) au fil du flux JSON, sans construire d'arbre.
+     * Retourne null si le code OSRM n'est pas "Ok" ou si aucune route n'est présente.
+     */
+    static Double parseRouteDistance(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("code".equals(field)) {
+                if (!"Ok".equals(parser.getText())) {
+                    return null;
+                }
+            } else if ("routes".equals(field) && value == JsonToken.START_ARRAY) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String routeField = parser.getCurrentName();
+                    JsonToken routeValue = parser.nextToken();
+                    if ("distance".equals(routeField) && routeValue.isNumeric()) {
+                        return parser.getDoubleValue();
+                    }
+                    parser.skipChildren();
+                }
+                return null;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    private long bucket(double coordinate) {
+        return Math.round(coordinate * scale);
+    }
+
+    private boolean isFresh(LocalDateTime computedAt) {
+        return computedAt != null && computedAt.plus(ttl).isAfter(LocalDateTime.now());
+    }
+
+    private CachedDistance fromMemory(String key) {
+        synchronized (lru) {
+            CachedDistance cached = lru.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (!isFresh(cached.computedAt())) {
+                lru.remove(key);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private void remember(String key, CachedDistance distance) {
+        synchronized (lru) {
+            lru.put(key, distance);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dbExecutor.shutdown();
+    }
+}
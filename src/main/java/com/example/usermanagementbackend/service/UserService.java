@@ -4,30 +4,34 @@ import com.example.usermanagementbackend.dto.UserDTO;
 import com.example.usermanagementbackend.entity.Fidelite;
 import com.example.usermanagementbackend.entity.Livreur;
 import com.example.usermanagementbackend.entity.User;
+import com.example.usermanagementbackend.mapper.FaceDescriptorCodec;
 import com.example.usermanagementbackend.mapper.UserMapper;
 import com.example.usermanagementbackend.repository.LivreurRepository;
 import com.example.usermanagementbackend.repository.UserRepository;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
 import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
     @Autowired
     private UserRepository userRepository;
 
@@ -41,11 +45,28 @@ public class UserService {
     private LivreurRepository livreurRepository;
 
     @Autowired
-    private JavaMailSender mailSender;
+    private MailOutboxService mailOutboxService;
 
     @Autowired
     private FideliteService fideliteService; // ✅ Inject FideliteService
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ChurnModelClient churnModelClient;
+
+    @Autowired
+    private ChurnPredictionCache churnPredictionCache;
+
+    @Value("${face.descriptor.format:FLOAT16}")
+    private FaceDescriptorCodec.Format faceDescriptorFormat;
+
+    @Value("${user.batch.chunk-size:500}")
+    private int userChunkSize;
+
+    // Utilisateur, email de vérification (outbox), livreur et fidélité : tout ou rien
+    @Transactional
     public UserDTO saveUser(UserDTO userDTO) {
         User user = UserMapper.toEntity(userDTO);
 
@@ -63,9 +84,11 @@ public class UserService {
         user.setVerificationCode(code);
         user.setVerified(false);
 
-        sendVerificationEmail(user.getEmail(), code);
-
+        encoderDescripteurFacial(user);
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new FaceDescriptorChangedEvent(savedUser.getId(), savedUser));
+
+        sendVerificationEmail(savedUser.getEmail(), code);
 
         if ("LIVREUR".equalsIgnoreCase(savedUser.getRole())) {
             Livreur livreur = new Livreur();
@@ -83,37 +106,35 @@ public class UserService {
         return UserMapper.toDTO(savedUser);
     }
 
-    public void sendVerificationEmail(String toEmail, String code) {
+    /**
+     * Convertit un descripteur facial reçu au format texte vers le format binaire compact
+     * avant l'enregistrement. Un texte invalide est conservé tel quel.
+     */
+    private void encoderDescripteurFacial(User user) {
+        if (!user.hasLegacyFaceDescriptor()) {
+            return;
+        }
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
-
-            helper.setTo(toEmail);
-            helper.setSubject("Vérification de votre compte - AgriConnect");
-
-            String htmlContent = "<div style='font-family: Arial, sans-serif; font-size: 16px;'>"
-                    + "<p>Bonjour,</p>"
-                    + "<p>Merci pour votre inscription sur <strong>AgriConnect</strong>.</p>"
-                    + "<p>Voici votre code de vérification :</p>"
-                    + "<h2 style='color: #2e7d32; font-size: 28px;'>" + code + "</h2>"
-                    + "<p>Ce code est valable pour une durée limitée.</p>"
-                    + "<br><p>Cordialement,<br>L'équipe AgriConnect</p>"
-                    + "</div>";
-
-            helper.setText(htmlContent, true);
-            helper.setFrom("noreply@agriconnect.com");
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de vérification.");
+            float[] descriptor = FaceDescriptorCodec.parse(user.getFaceDescriptor());
+            user.setFaceDescriptorData(FaceDescriptorCodec.encode(descriptor, faceDescriptorFormat));
+            user.setFaceDescriptor(null);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Descripteur facial non converti pour {} : {}", user.getEmail(), e.getMessage());
         }
     }
 
+    public void sendVerificationEmail(String toEmail, String code) {
+        mailOutboxService.enqueue(toEmail, "Vérification de votre compte - AgriConnect",
+                "verification", Map.of("code", code));
+    }
+
     @Transactional
     public User saveUserDirect(User user) {
+        encoderDescripteurFacial(user);
         User savedUser = userRepository.saveAndFlush(user);
         entityManager.clear();
+        eventPublisher.publishEvent(new FaceDescriptorChangedEvent(savedUser.getId(), savedUser));
+        churnPredictionCache.invalidate(savedUser.getId());
         return savedUser;
     }
 
@@ -132,6 +153,35 @@ public class UserService {
         return users;
     }
 
+    /**
+     * Parcourt tous les utilisateurs par lots ordonnés sur l'id (pagination par clé),
+     * en vidant le contexte de persistance entre deux lots pour garder une mémoire bornée.
+     * Retourne le nombre d'utilisateurs traités.
+     */
+    public long processUsersInChunks(Consumer<List<User>> chunkConsumer) {
+        long processed = 0;
+        Long lastId = 0L;
+        while (true) {
+            List<User> chunk = userRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, userChunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            chunkConsumer.accept(chunk);
+            processed += chunk.size();
+            lastId = chunk.get(chunk.size() - 1).getId();
+
+            if (entityManager.isJoinedToTransaction()) {
+                entityManager.flush();
+            }
+            entityManager.clear();
+
+            if (chunk.size() < userChunkSize) {
+                break;
+            }
+        }
+        return processed;
+    }
+
     @Transactional
     public void deleteUser(Long id) {
         if (!userRepository.existsById(id)) {
@@ -140,6 +190,8 @@ public class UserService {
         userRepository.deleteById(id);
         entityManager.flush();
         entityManager.clear();
+        eventPublisher.publishEvent(new FaceDescriptorChangedEvent(id, null));
+        churnPredictionCache.invalidate(id);
     }
 
     public User updateUser(Long id, User user) {
@@ -161,7 +213,9 @@ public class UserService {
         existingUser.setNumeroDeTelephone(user.getNumeroDeTelephone());
         existingUser.setRole(user.getRole());
         existingUser.setAdresseLivraison(user.getAdresseLivraison());
-        return userRepository.save(existingUser);
+        User savedUser = userRepository.save(existingUser);
+        churnPredictionCache.invalidate(savedUser.getId());
+        return savedUser;
     }
 
     public List<User> searchUsers(String query) {
@@ -180,29 +234,8 @@ public class UserService {
         user.setResetCode(code);
         userRepository.save(user);
 
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, "utf-8");
-
-            helper.setTo(email);
-            helper.setSubject("Réinitialisation de mot de passe - AgriConnect");
-
-            String htmlContent = "<div style='font-family: Arial, sans-serif; font-size: 16px;'>"
-                    + "<p>Bonjour,</p>"
-                    + "<p>Voici votre code de réinitialisation de mot de passe :</p>"
-                    + "<h2 style='color: #007bff;'>" + code + "</h2>"
-                    + "<p>Utilisez ce code pour réinitialiser votre mot de passe.</p>"
-                    + "<br><p>Cordialement,<br>L'équipe AgriConnect</p>"
-                    + "</div>";
-
-            helper.setText(htmlContent, true);
-            helper.setFrom("noreply@agriconnect.com");
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Erreur lors de l'envoi du mail de réinitialisation.");
-        }
+        mailOutboxService.enqueue(email, "Réinitialisation de mot de passe - AgriConnect",
+                "password-reset", Map.of("code", code));
     }
 
     public Map<String, Long> getUserStats() {
@@ -223,6 +256,7 @@ public class UserService {
         user.setDerniereConnexion(LocalDateTime.now());
         user.setNombreConnexions(user.getNombreConnexions() + 1);
         userRepository.save(user);
+        churnPredictionCache.invalidate(user.getId());
     }
 
     @Transactional
@@ -233,31 +267,21 @@ public class UserService {
             user.incrementerActions();
             userRepository.saveAndFlush(user);
             entityManager.clear();
+            churnPredictionCache.invalidate(userId);
         }
     }
 
     public double predictChurnRisk(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        Map<String, Object> data = new HashMap<>();
-        data.put("last_login", user.getDerniereConnexion() != null
-                ? user.getDerniereConnexion().toString()
-                : LocalDateTime.now().toString());
-        data.put("login_count", user.getNombreConnexions());
-        data.put("actions_count", user.getActionsEffectuees());
-        data.put("is_blocked", user.isBlocked());
-        data.put("is_verified", user.isVerified());
-        data.put("block_count", user.getNombreBlocages());
+        CompletableFuture<Double> prediction = churnPredictionCache.get(userId, () -> {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+            return churnModelClient.predict(ChurnModelClient.features(user));
+        });
 
         try {
-            RestTemplate restTemplate = new RestTemplate();
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                    "http://localhost:8000/predict", data, Map.class);
-
-            return ((Number) response.getBody().get("risk_score")).doubleValue();
+            return prediction.join();
         } catch (Exception e) {
-            throw new RuntimeException("Erreur dans la prédiction : " + e.getMessage());
+            throw new RuntimeException("Erreur dans la prédiction : " + OutboundHttpClient.rootMessage(e));
         }
     }
 
@@ -0,0 +1,192 @@
+package com.example.usermanagementbackend.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Tournées de livraison par l'heuristique des économies de Clarke-Wright, améliorées par 2-opt.
+ *
+ * Tout est calculé hors ligne en distance à vol d'oiseau. Pour rester rapide sur plusieurs
+ * milliers d'arrêts, les économies ne sont évaluées qu'entre chaque arrêt et ses
+ * {@code neighbours} plus proches voisins au lieu de toutes les paires. Chaque arrêt compte pour
+ * une unité de capacité. Les tournées partent du dépôt et n'y reviennent pas.
+ */
+public final class VehicleRoutePlanner {
+
+    private static final int MAX_TWO_OPT_PASSES = 50;
+
+    private VehicleRoutePlanner() {
+    }
+
+    /**
+     * Regroupe les arrêts en tournées d'au plus {@code capacity} arrêts.
+     * Retourne pour chaque tournée les indices des arrêts, dans l'ordre de passage.
+     */
+    public static List<int[]> plan(double depotLat, double depotLng, double[] lat, double[] lng,
+                                   int capacity, int neighbours) {
+        int n = lat.length;
+        if (n == 0) {
+            return List.of();
+        }
+        double[] fromDepot = new double[n];
+        for (int i = 0; i < n; i++) {
+            fromDepot[i] = RouteDistanceService.haversineKm(depotLat, depotLng, lat[i], lng[i]);
+        }
+
+        long[] pairs = nearestPairs(lat, lng, Math.min(neighbours, n - 1));
+        int m = pairs.length;
+        double[] savings = new double[m];
+        Integer[] order = new Integer[m];
+        for (int p = 0; p < m; p++) {
+            int i = (int) (pairs[p] >>> 32);
+            int j = (int) pairs[p];
+            savings[p] = fromDepot[i] + fromDepot[j] - RouteDistanceService.haversineKm(lat[i], lng[i], lat[j], lng[j]);
+            order[p] = p;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(savings[b], savings[a]));
+
+        // Au départ, une tournée par arrêt ; on fusionne par économies décroissantes
+        List<Deque<Integer>> routes = new ArrayList<>(n);
+        int[] routeOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            Deque<Integer> route = new ArrayDeque<>();
+            route.add(i);
+            routes.add(route);
+            routeOf[i] = i;
+        }
+        for (Integer p : order) {
+            if (savings[p] <= 0) {
+                break;
+            }
+            int i = (int) (pairs[p] >>> 32);
+            int j = (int) pairs[p];
+            int ri = routeOf[i];
+            int rj = routeOf[j];
+            if (ri == rj) {
+                continue;
+            }
+            Deque<Integer> a = routes.get(ri);
+            Deque<Integer> b = routes.get(rj);
+            if (a.size() + b.size() > capacity || !isEnd(a, i) || !isEnd(b, j)) {
+                continue;
+            }
+            // On relie la fin de a (i) au début de b (j)
+            if (a.peekLast() != i) {
+                reverse(a);
+            }
+            if (b.peekFirst() != j) {
+                reverse(b);
+            }
+            for (Integer stop : b) {
+                routeOf[stop] = ri;
+            }
+            a.addAll(b);
+            b.clear();
+        }
+
+        List<int[]> result = new ArrayList<>();
+        for (Deque<Integer> route : routes) {
+            if (!route.isEmpty()) {
+                result.add(route.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return result;
+    }
+
+    /** Améliore l'ordre de passage d'une tournée (2-opt, départ du dépôt, sans retour). */
+    public static void twoOpt(int[] route, double depotLat, double depotLng, double[] lat, double[] lng) {
+        int m = route.length;
+        if (m < 3) {
+            return;
+        }
+        boolean improved = true;
+        for (int pass = 0; improved && pass < MAX_TWO_OPT_PASSES; pass++) {
+            improved = false;
+            for (int i = 0; i < m - 1; i++) {
+                double prevLat = i == 0 ? depotLat : lat[route[i - 1]];
+                double prevLng = i == 0 ? depotLng : lng[route[i - 1]];
+                for (int k = i + 1; k < m; k++) {
+                    // Inverser route[i..k] : on compare les deux arêtes remplacées (la dernière est absente en fin de tournée)
+                    double before = RouteDistanceService.haversineKm(prevLat, prevLng, lat[route[i]], lng[route[i]]);
+                    double after = RouteDistanceService.haversineKm(prevLat, prevLng, lat[route[k]], lng[route[k]]);
+                    if (k < m - 1) {
+                        int next = route[k + 1];
+                        before += RouteDistanceService.haversineKm(lat[route[k]], lng[route[k]], lat[next], lng[next]);
+                        after += RouteDistanceService.haversineKm(lat[route[i]], lng[route[i]], lat[next], lng[next]);
+                    }
+                    if (after < before - 1e-9) {
+                        for (int a = i, b = k; a < b; a++, b--) {
+                            int tmp = route[a];
+                            route[a] = route[b];
+                            route[b] = tmp;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isEnd(Deque<Integer> route, int stop) {
+        return route.peekFirst() == stop || route.peekLast() == stop;
+    }
+
+    private static void reverse(Deque<Integer> route) {
+        Deque<Integer> reversed = new ArrayDeque<>(route.size());
+        for (Integer stop : route) {
+            reversed.addFirst(stop);
+        }
+        route.clear();
+        route.addAll(reversed);
+    }
+
+    /**
+     * Paires (i, j), i < j, où j fait partie des k plus proches voisins de i ou inversement,
+     * codées en {@code i << 32 | j}. Le tri des voisins utilise une distance plane approchée.
+     */
+    private static long[] nearestPairs(double[] lat, double[] lng, int k) {
+        int n = lat.length;
+        if (k <= 0) {
+            return new long[0];
+        }
+        long[] pairs = new long[n * k];
+        int count = 0;
+        int[] best = new int[k];
+        double[] bestDist = new double[k];
+        for (int i = 0; i < n; i++) {
+            double cosLat = Math.cos(Math.toRadians(lat[i]));
+            int size = 0;
+            for (int j = 0; j < n; j++) {
+                if (j == i) {
+                    continue;
+                }
+                double dLat = lat[j] - lat[i];
+                double dLng = (lng[j] - lng[i]) * cosLat;
+                double d = dLat * dLat + dLng * dLng;
+                if (size == k && d >= bestDist[k - 1]) {
+                    continue;
+                }
+                // Insertion triée dans la liste des k meilleurs
+                int pos = size < k ? size++ : k - 1;
+                while (pos > 0 && bestDist[pos - 1] > d) {
+                    bestDist[pos] = bestDist[pos - 1];
+                    best[pos] = best[pos - 1];
+                    pos--;
+                }
+                bestDist[pos] = d;
+                best[pos] = j;
+            }
+            for (int t = 0; t < size; t++) {
+                int a = Math.min(i, best[t]);
+                int b = Math.max(i, best[t]);
+                pairs[count++] = ((long) a << 32) | b;
+            }
+        }
+        // Une paire peut être trouvée depuis ses deux extrémités
+        long[] unique = Arrays.stream(pairs, 0, count).sorted().distinct().toArray();
+        return unique;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.usermanagementbackend.scheduler;
+
+import com.example.usermanagementbackend.entity.OutgoingMail;
+import com.example.usermanagementbackend.enums.MailStatus;
+import com.example.usermanagementbackend.repository.OutgoingMailRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * MailDispatcher contre un serveur SMTP embarqué (GreenMail).
+ *
+ * La table outgoing_mail est simulée en mémoire : le dépôt moqué reproduit la sélection des
+ * emails dus, la réservation conditionnelle et la libération des réservations expirées.
+ */
+class MailDispatcherTest {
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final Map<Long, OutgoingMail> table = new TreeMap<>();
+    private OutgoingMailRepository repository;
+
+    @BeforeEach
+    void setUpRepository() {
+        repository = mock(OutgoingMailRepository.class);
+        when(repository.findDueIds(any(), any(), any())).thenAnswer(inv -> {
+            MailStatus status = inv.getArgument(0);
+            LocalDateTime now = inv.getArgument(1);
+            Pageable page = inv.getArgument(2);
+            return table.values().stream()
+                    .filter(mail -> mail.getStatus() == status && !mail.getNextAttemptAt().isAfter(now))
+                    .map(OutgoingMail::getId)
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+        when(repository.claim(anyList(), any(), any(), anyString(), any())).thenAnswer(inv -> {
+            List<Long> ids = inv.getArgument(0);
+            int claimed = 0;
+            for (Long id : ids) {
+                OutgoingMail mail = table.get(id);
+                if (mail.getStatus() == inv.getArgument(1)) {
+                    mail.setStatus(inv.getArgument(2));
+                    mail.setClaimToken(inv.getArgument(3));
+                    mail.setClaimedAt(inv.getArgument(4));
+                    claimed++;
+                }
+            }
+            return claimed;
+        });
+        when(repository.findByClaimTokenOrderByIdAsc(anyString())).thenAnswer(inv -> table.values().stream()
+                .filter(mail -> Objects.equals(mail.getClaimToken(), inv.getArgument(0)))
+                .toList());
+        when(repository.releaseStaleClaims(any(), any(), any())).thenAnswer(inv -> {
+            LocalDateTime before = inv.getArgument(2);
+            int released = 0;
+            for (OutgoingMail mail : table.values()) {
+                if (mail.getStatus() == inv.getArgument(0) && mail.getClaimedAt().isBefore(before)) {
+                    mail.setStatus(inv.getArgument(1));
+                    mail.setClaimToken(null);
+                    released++;
+                }
+            }
+            return released;
+        });
+    }
+
+    private OutgoingMail enqueue(String recipient, String subject) {
+        OutgoingMail mail = new OutgoingMail(recipient, subject, "<p>" + subject + "</p>");
+        mail.setId((long) table.size() + 1);
+        table.put(mail.getId(), mail);
+        return mail;
+    }
+
+    private MailDispatcher dispatcher(int port, int batchSize, int maxAttempts) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(port);
+        MailDispatcher dispatcher = new MailDispatcher(repository, sender);
+        ReflectionTestUtils.setField(dispatcher, "from", "noreply@agriconnect.com");
+        ReflectionTestUtils.setField(dispatcher, "batchSize", batchSize);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseSeconds", 30L);
+        ReflectionTestUtils.setField(dispatcher, "claimTimeoutSeconds", 600L);
+        return dispatcher;
+    }
+
+    private static int smtpPort() {
+        return greenMail.getSmtp().getPort();
+    }
+
+    // Port libre sur lequel rien n'écoute : connexion refusée
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void makeDue(OutgoingMail mail) {
+        mail.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+    }
+
+    private static void assertDelaySeconds(long expected, OutgoingMail mail) {
+        long delay = Duration.between(LocalDateTime.now(), mail.getNextAttemptAt()).getSeconds();
+        assertTrue(delay > expected - 5 && delay <= expected, "délai avant nouvel essai : " + delay + " s");
+    }
+
+    @Test
+    void sendsDueMailsInBatches() throws Exception {
+        List<OutgoingMail> due = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            due.add(enqueue("client" + i + "@example.com", "Sujet " + i));
+        }
+        OutgoingMail later = enqueue("plus-tard@example.com", "Plus tard");
+        later.setNextAttemptAt(LocalDateTime.now().plusMinutes(5));
+
+        dispatcher(smtpPort(), 2, 5).dispatch();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(5, received.length);
+        List<String> subjects = new ArrayList<>();
+        for (MimeMessage message : received) {
+            subjects.add(message.getSubject());
+        }
+        assertEquals(List.of("Sujet 1", "Sujet 2", "Sujet 3", "Sujet 4", "Sujet 5"), subjects.stream().sorted().toList());
+        // Lots de 2, 2 et 1
+        verify(repository, times(3)).claim(anyList(), any(), any(), anyString(), any());
+        for (OutgoingMail mail : due) {
+            assertEquals(MailStatus.SENT, mail.getStatus());
+            assertEquals(1, mail.getAttempts());
+            assertNotNull(mail.getSentAt());
+            assertNull(mail.getLastError());
+            assertEquals("", mail.getHtmlBody());
+        }
+        assertEquals(MailStatus.PENDING, later.getStatus());
+        assertEquals(0, later.getAttempts());
+    }
+
+    @Test
+    void retriesWithExponentialBackoffWhenSmtpIsDown() throws Exception {
+        OutgoingMail mail = enqueue("client@example.com", "Vérification");
+        MailDispatcher down = dispatcher(closedPort(), 10, 5);
+
+        down.dispatch();
+        assertEquals(MailStatus.PENDING, mail.getStatus());
+        assertEquals(1, mail.getAttempts());
+        assertNotNull(mail.getLastError());
+        assertDelaySeconds(30, mail);
+
+        // Pas encore dû : rien n'est retenté
+        down.dispatch();
+        assertEquals(1, mail.getAttempts());
+
+        makeDue(mail);
+        down.dispatch();
+        assertEquals(MailStatus.PENDING, mail.getStatus());
+        assertEquals(2, mail.getAttempts());
+        assertDelaySeconds(60, mail);
+
+        makeDue(mail);
+        dispatcher(smtpPort(), 10, 5).dispatch();
+        assertEquals(MailStatus.SENT, mail.getStatus());
+        assertEquals(3, mail.getAttempts());
+        assertNull(mail.getLastError());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void marksMailFailedAfterMaxAttempts() throws Exception {
+        OutgoingMail mail = enqueue("client@example.com", "Réinitialisation");
+        MailDispatcher down = dispatcher(closedPort(), 10, 3);
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            makeDue(mail);
+            down.dispatch();
+            assertEquals(attempt, mail.getAttempts());
+        }
+        assertEquals(MailStatus.FAILED, mail.getStatus());
+
+        // Un email abandonné n'est plus jamais repris
+        makeDue(mail);
+        dispatcher(smtpPort(), 10, 3).dispatch();
+        assertEquals(MailStatus.FAILED, mail.getStatus());
+        assertEquals(3, mail.getAttempts());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void skipsMailsClaimedByAnotherDispatcherUntilTheClaimExpires() {
+        OutgoingMail claimed = enqueue("en-cours@example.com", "En cours");
+        claimed.setStatus(MailStatus.SENDING);
+        claimed.setClaimToken("autre-instance");
+        claimed.setClaimedAt(LocalDateTime.now());
+        OutgoingMail abandoned = enqueue("abandonne@example.com", "Abandonné");
+        abandoned.setStatus(MailStatus.SENDING);
+        abandoned.setClaimToken("instance-arretee");
+        abandoned.setClaimedAt(LocalDateTime.now().minusHours(1));
+
+        dispatcher(smtpPort(), 10, 5).dispatch();
+
+        assertEquals(MailStatus.SENDING, claimed.getStatus());
+        assertEquals(0, claimed.getAttempts());
+        assertEquals(MailStatus.SENT, abandoned.getStatus());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.ChurnRiskScore;
+import com.example.usermanagementbackend.entity.User;
+import com.example.usermanagementbackend.repository.ChurnRiskScoreRepository;
+import com.example.usermanagementbackend.scheduler.IARiskScheduler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * ChurnModelClient contre un serveur de modèle simulé (HttpServer du JDK).
+ */
+class ChurnModelClientTest {
+
+    /** Réponse du serveur simulé pour la n-ième requête reçue (à partir de 0), corps JSON lu. */
+    private interface StubResponse {
+        StubHttpServer.Reply reply(int index, JsonNode body) throws Exception;
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<JsonNode> bodies = Collections.synchronizedList(new ArrayList<>());
+    private StubHttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new StubHttpServer(16);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private void stub(StubResponse response) {
+        server.respond(request -> {
+            JsonNode body = objectMapper.readTree(request.body());
+            bodies.add(body);
+            return response.reply(request.index(), body);
+        });
+    }
+
+    private ChurnModelClient client(boolean batch, int batchSize, int maxConcurrency, long timeoutMs,
+                                    int maxRetries, long backoffMs) {
+        // Disjoncteur très tolérant : seul le comportement du client est testé ici
+        OutboundHttpClient http = new OutboundHttpClient(1000, 5000, 64, 1000, 1000, 30000);
+        String baseUrl = server.baseUrl();
+        return new ChurnModelClient(objectMapper, http, baseUrl + "/predict", batch ? baseUrl + "/batch" : "",
+                batchSize, maxConcurrency, timeoutMs, maxRetries, backoffMs);
+    }
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            User user = new User();
+            user.setId((long) i);
+            user.setNombreConnexions(i);
+            users.add(user);
+        }
+        return users;
+    }
+
+    // Score renvoyé par le serveur simulé : login_count / 100
+    private static double score(JsonNode features) {
+        return features.path("login_count").asInt() / 100.0;
+    }
+
+    @Test
+    void sendsUsersInBatchesAndMapsScoresInOrder() {
+        stub((index, body) -> {
+            List<Double> scores = new ArrayList<>();
+            body.forEach(features -> scores.add(score(features)));
+            return new StubHttpServer.Reply(200, scores.toString(), 0);
+        });
+
+        Map<Long, Double> scores = client(true, 3, 4, 2000, 0, 10).scoreUsers(users(7));
+
+        assertEquals(3, server.requests());
+        List<Integer> sizes = new ArrayList<>();
+        bodies.forEach(body -> sizes.add(body.size()));
+        Collections.sort(sizes);
+        assertEquals(List.of(1, 3, 3), sizes);
+        assertEquals(7, scores.size());
+        for (long id = 1; id <= 7; id++) {
+            assertEquals(id / 100.0, scores.get(id), 1e-9);
+        }
+    }
+
+    @Test
+    void boundsConcurrentRequests() {
+        stub((index, body) -> new StubHttpServer.Reply(200, "{\"risk_score\": " + score(body) + "}", 50));
+
+        Map<Long, Double> scores = client(false, 1, 2, 2000, 0, 10).scoreUsers(users(10));
+
+        assertEquals(10, scores.size());
+        assertEquals(10, server.requests());
+        assertTrue(server.maxInFlight() <= 2, "requêtes simultanées : " + server.maxInFlight());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        stub((index, body) -> new StubHttpServer.Reply(400, "{\"error\": \"bad features\"}", 0));
+
+        Map<Long, Double> scores = client(false, 1, 4, 2000, 3, 10).scoreUsers(users(1));
+
+        assertTrue(scores.isEmpty());
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    void retriesServerErrorsWithExponentialBackoff() {
+        stub((index, body) -> index < 2
+                ? new StubHttpServer.Reply(503, "{}", 0)
+                : new StubHttpServer.Reply(200, "{\"risk_score\": 0.42}", 0));
+
+        Map<Long, Double> scores = client(false, 1, 4, 2000, 2, 100).scoreUsers(users(1));
+
+        assertEquals(0.42, scores.get(1L), 1e-9);
+        assertEquals(3, server.requests());
+        long firstGapMs = (server.receivedAt().get(1) - server.receivedAt().get(0)) / 1_000_000;
+        long secondGapMs = (server.receivedAt().get(2) - server.receivedAt().get(1)) / 1_000_000;
+        assertTrue(firstGapMs >= 100, "première attente : " + firstGapMs + " ms");
+        assertTrue(secondGapMs >= 200, "deuxième attente : " + secondGapMs + " ms");
+    }
+
+    @Test
+    void retriesAfterTimeout() {
+        stub((index, body) -> index == 0
+                ? new StubHttpServer.Reply(200, "{\"risk_score\": 0.9}", 1000)
+                : new StubHttpServer.Reply(200, "{\"risk_score\": 0.3}", 0));
+
+        Map<Long, Double> scores = client(false, 1, 4, 200, 1, 10).scoreUsers(users(1));
+
+        assertEquals(0.3, scores.get(1L), 1e-9);
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        stub((index, body) -> new StubHttpServer.Reply(500, "{}", 0));
+
+        Map<Long, Double> scores = client(false, 1, 4, 2000, 2, 10).scoreUsers(users(1));
+
+        assertFalse(scores.containsKey(1L));
+        assertEquals(3, server.requests());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void schedulerSavesScoresAsChurnRiskScores() {
+        stub((index, body) -> {
+            List<Double> scores = new ArrayList<>();
+            body.forEach(features -> scores.add(score(features)));
+            return new StubHttpServer.Reply(200, "{\"risk_scores\": " + scores + "}", 0);
+        });
+        List<User> users = users(5);
+        UserService userService = new UserService() {
+            @Override
+            public long processUsersInChunks(Consumer<List<User>> chunkConsumer) {
+                chunkConsumer.accept(users.subList(0, 3));
+                chunkConsumer.accept(users.subList(3, 5));
+                return users.size();
+            }
+        };
+        ChurnRiskScoreRepository repository = mock(ChurnRiskScoreRepository.class);
+
+        new IARiskScheduler(userService, client(true, 2, 4, 2000, 0, 10), repository).evaluerRisqueDesactivation();
+
+        ArgumentCaptor<List<ChurnRiskScore>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository, atLeastOnce()).saveAll(captor.capture());
+        List<ChurnRiskScore> saved = new ArrayList<>();
+        captor.getAllValues().forEach(saved::addAll);
+        assertEquals(5, saved.size());
+        for (ChurnRiskScore row : saved) {
+            assertEquals(row.getUserId() / 100.0, row.getRiskScore(), 1e-9);
+            assertNotNull(row.getComputedAt());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.usermanagementbackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recherche par anneaux de nearest() comparée à un parcours exhaustif, et éviction des positions anciennes.
+ */
+class CourierLocationServiceTest {
+
+    private static CourierLocationService service(double cellDeg) {
+        return new CourierLocationService(null, null, cellDeg, 1000, 200000, 300);
+    }
+
+    private static List<Double> bruteForce(List<double[]> points, double lat, double lng, int k, double maxKm,
+                                           Predicate<Long> filter) {
+        List<Double> distances = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            double km = RouteDistanceService.haversineKm(lat, lng, points.get(i)[0], points.get(i)[1]);
+            if (km <= maxKm && filter.test((long) i)) {
+                distances.add(km);
+            }
+        }
+        distances.sort(Comparator.naturalOrder());
+        return distances.subList(0, Math.min(k, distances.size()));
+    }
+
+    private static void assertSameAsBruteForce(double centerLat, double centerLng, double spreadDeg, long seed) {
+        Random random = new Random(seed);
+        CourierLocationService service = service(0.01);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double lat = Math.max(-90, Math.min(90, centerLat + (random.nextDouble() * 2 - 1) * spreadDeg));
+            double lng = centerLng + (random.nextDouble() * 2 - 1) * spreadDeg * 4;
+            points.add(new double[]{lat, lng});
+            assertTrue(service.update((long) i, null, lat, lng, null));
+        }
+
+        for (int q = 0; q < 200; q++) {
+            double lat = Math.max(-90, Math.min(90, centerLat + (random.nextDouble() * 2 - 1) * spreadDeg));
+            double lng = centerLng + (random.nextDouble() * 2 - 1) * spreadDeg * 4;
+            int k = 1 + random.nextInt(8);
+            double maxKm = 1 + random.nextDouble() * 40;
+            int modulo = 1 + random.nextInt(3);
+            Predicate<Long> filter = id -> id % modulo == 0;
+
+            List<Double> expected = bruteForce(points, lat, lng, k, maxKm, filter);
+            List<Double> actual = service.nearest(lat, lng, k, maxKm, p -> filter.test(p.livreurId())).stream()
+                    .map(CourierLocationService.NearbyCourier::distanceKm)
+                    .toList();
+
+            String query = "(" + lat + ", " + lng + ") k=" + k + " maxKm=" + maxKm;
+            assertEquals(expected.size(), actual.size(), query);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), actual.get(i), 1e-9, query);
+            }
+        }
+    }
+
+    @Test
+    void nearestMatchesBruteForceAroundTunis() {
+        assertSameAsBruteForce(36.8, 10.18, 0.2, 1L);
+    }
+
+    @Test
+    void nearestMatchesBruteForceAtHighLatitudes() {
+        // Les méridiens se resserrent : une cellule ne fait plus que quelques centaines de mètres de large
+        assertSameAsBruteForce(70, 25, 0.3, 2L);
+        assertSameAsBruteForce(-78, -60, 0.3, 3L);
+        assertSameAsBruteForce(85, 0, 0.3, 4L);
+    }
+
+    @Test
+    void nearestStopsOnMaxKmNearThePole() {
+        CourierLocationService service = service(0.01);
+        service.update(1L, null, 89.99, 0.0, null);
+        service.update(2L, null, 89.0, 0.0, null);
+
+        List<CourierLocationService.NearbyCourier> found = service.nearest(89.995, 120.0, 5, 5, p -> true);
+
+        assertEquals(1, found.size());
+        assertEquals(Long.valueOf(1L), found.get(0).position().livreurId());
+    }
+
+    @Test
+    void evictsPositionsReceivedBeforeCutoff() throws Exception {
+        CourierLocationService service = service(0.01);
+        service.update(1L, null, 36.8, 10.18, null);
+        service.update(2L, null, 36.801, 10.181, null);
+        Thread.sleep(5);
+        long cutoff = System.currentTimeMillis();
+        Thread.sleep(5);
+        service.update(2L, null, 36.802, 10.182, null);
+
+        assertEquals(1, service.evictReceivedBefore(cutoff));
+
+        List<CourierLocationService.NearbyCourier> found = service.nearest(36.8, 10.18, 5, 10, p -> true);
+        assertEquals(1, found.size());
+        assertEquals(Long.valueOf(2L), found.get(0).position().livreurId());
+        assertEquals(0, service.evictReceivedBefore(cutoff));
+    }
+}
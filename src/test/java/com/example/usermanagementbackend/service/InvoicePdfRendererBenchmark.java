@@ -0,0 +1,108 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit du rendu PDF des factures (PDF/s) selon le nombre de lignes.
+ * Lancement : exécuter {@link #main(String[])} depuis l'IDE ou avec le classpath de test.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvoicePdfRendererBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int lignes;
+
+    private InvoicePdfRenderer renderer;
+    private Facture facture;
+    private List<LigneFacture> lignesFacture;
+
+    @Setup
+    public void setup() {
+        renderer = new InvoicePdfRenderer();
+
+        User user = new User();
+        user.setNom("Ben Salah");
+        user.setEmail("client@example.com");
+        user.setNumeroDeTelephone("+216 20 000 000");
+
+        TransactionPaiement transaction = new TransactionPaiement();
+        transaction.setPaymentStatus("SUCCEEDED");
+        transaction.setPaymentIntentId("pi_benchmark");
+
+        Commande commande = new Commande();
+        commande.setId(1L);
+        commande.setTelephone("+216 20 000 000");
+        commande.setGouvernement("Tunis");
+        commande.setAdresse("12 rue de Marseille, Tunis");
+        commande.setStatus(Commande.OrderStatus.PAID);
+        commande.getTransactions().add(transaction);
+
+        facture = new Facture();
+        facture.setId(1L);
+        facture.setUser(user);
+        facture.setCommande(commande);
+        facture.setNumeroFacture("FACT-BENCH");
+        facture.setDateFacture(LocalDate.of(2025, 1, 15));
+
+        lignesFacture = new ArrayList<>(lignes);
+        double total = 0;
+        for (int i = 0; i < lignes; i++) {
+            Produit produit = new Produit();
+            produit.setNom("Produit " + i);
+            produit.setDescription("Description du produit " + i);
+
+            LigneFacture ligne = new LigneFacture();
+            ligne.setProduit(produit);
+            ligne.setQte(1 + i % 7);
+            ligne.setPrixUnitaire(2.5 + i * 0.37);
+            ligne.setTotal(ligne.getQte() * ligne.getPrixUnitaire());
+            ligne.setTtc(ligne.getTotal() * 1.2);
+            total += ligne.getTtc();
+            lignesFacture.add(ligne);
+        }
+        facture.setMontantTotal(total);
+    }
+
+    @Benchmark
+    public long render() {
+        CountingOutputStream out = new CountingOutputStream();
+        renderer.render(facture, lignesFacture, out);
+        return out.count;
+    }
+
+    // Compte les octets écrits sans les conserver
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvoicePdfRendererBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
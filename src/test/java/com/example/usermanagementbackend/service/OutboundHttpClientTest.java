@@ -0,0 +1,199 @@
+package com.example.usermanagementbackend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OutboundHttpClient et le repli de GoogleMapsService contre un serveur simulé (HttpServer du JDK).
+ */
+class OutboundHttpClientTest {
+
+    private static final String GOOGLE_OK = "{\"status\":\"OK\",\"rows\":[{\"elements\":[{\"status\":\"OK\","
+            + "\"distance\":{\"text\":\"270 km\",\"value\":270012},\"duration\":{\"text\":\"3 hours\",\"value\":10800}}]}]}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StubHttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new StubHttpServer(32);
+        server.reply(200, "ok", 0);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private CompletableFuture<HttpResponse<String>> call(OutboundHttpClient client, String endpoint) {
+        return client.sendAsync(endpoint, HttpRequest.newBuilder(URI.create(server.baseUrl() + "/" + endpoint)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String circuit(OutboundHttpClient client, String endpoint) {
+        return client.metrics().stream()
+                .filter(metrics -> metrics.endpoint().equals(endpoint))
+                .findFirst()
+                .orElseThrow()
+                .circuit();
+    }
+
+    private static void assertRejected(CompletableFuture<?> future) {
+        CompletionException error = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(OutboundHttpClient.CallRejectedException.class, error.getCause());
+    }
+
+    @Test
+    void capsConcurrentRequestsPerHost() {
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 4, 1000, 1000, 30000);
+        server.reply(200, "ok", 50);
+
+        List<CompletableFuture<HttpResponse<String>>> calls = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            calls.add(call(client, "stub"));
+        }
+        for (CompletableFuture<HttpResponse<String>> call : calls) {
+            assertEquals(200, call.join().statusCode());
+        }
+
+        assertEquals(40, server.requests());
+        assertTrue(server.maxInFlight() <= 4, "requêtes simultanées : " + server.maxInFlight());
+    }
+
+    @Test
+    void rejectsCallsWhenHostQueueIsFull() {
+        // Une requête en vol, deux en attente : les suivantes sont refusées sans être envoyées
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 1, 2, 1000, 30000);
+        server.reply(200, "ok", 200);
+
+        List<CompletableFuture<HttpResponse<String>>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(call(client, "queue"));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, calls.get(i).join().statusCode());
+        }
+        for (int i = 3; i < 6; i++) {
+            assertRejected(calls.get(i));
+        }
+        assertEquals(3, server.requests());
+        assertEquals(3, client.metrics().get(0).rejected());
+    }
+
+    @Test
+    void circuitOpensThenHalfOpensAndClosesAfterSuccessfulTrial() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 16, 100, 3, 300);
+        server.reply(503, "ok", 0);
+
+        // Les 5xx sont rendus à l'appelant mais comptés comme échecs
+        for (int i = 0; i < 3; i++) {
+            assertEquals(503, call(client, "breaker").join().statusCode());
+        }
+        assertEquals("OUVERT", circuit(client, "breaker"));
+        assertRejected(call(client, "breaker"));
+        assertEquals(3, server.requests());
+
+        Thread.sleep(350);
+        assertEquals("DEMI_OUVERT", circuit(client, "breaker"));
+        server.reply(200, "ok", 200);
+        CompletableFuture<HttpResponse<String>> trial = call(client, "breaker");
+        // Un seul appel d'essai à la fois
+        assertRejected(call(client, "breaker"));
+        assertEquals(200, trial.join().statusCode());
+
+        assertEquals("FERME", circuit(client, "breaker"));
+        server.reply(200, "ok", 0);
+        assertEquals(200, call(client, "breaker").join().statusCode());
+        assertEquals(5, server.requests());
+    }
+
+    @Test
+    void failedTrialReopensCircuit() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(1000, 5000, 16, 100, 2, 300);
+        server.reply(500, "ok", 0);
+        call(client, "breaker").join();
+        call(client, "breaker").join();
+        assertEquals("OUVERT", circuit(client, "breaker"));
+
+        Thread.sleep(350);
+        assertEquals(500, call(client, "breaker").join().statusCode());
+
+        assertEquals("OUVERT", circuit(client, "breaker"));
+        assertRejected(call(client, "breaker"));
+        assertEquals(3, server.requests());
+    }
+
+    private GoogleMapsService googleMaps(OutboundHttpClient client) {
+        GoogleMapsService service = new GoogleMapsService(client,
+                new AddressGazetteer(36.8065, 10.1815, 1.3, 3.0, 16.5), objectMapper);
+        ReflectionTestUtils.setField(service, "apiKey", "test-key");
+        ReflectionTestUtils.setField(service, "baseUrl", server.baseUrl() + "/maps/api/distancematrix/json");
+        ReflectionTestUtils.setField(service, "timeoutMs", 2000L);
+        ReflectionTestUtils.setField(service, "fallbackSpeedKmh", 40.0);
+        return service;
+    }
+
+    @Test
+    void googleMapsReturnsUpstreamResponse() throws Exception {
+        server.reply(200, GOOGLE_OK, 0);
+
+        String json = googleMaps(new OutboundHttpClient(1000, 5000, 16, 100, 5, 30000))
+                .getDistance("36.8065,10.1815", "34.7406,10.7603").get();
+
+        assertEquals(GOOGLE_OK, json);
+        String query = server.uris().get(0).getQuery();
+        assertTrue(query.contains("origins=36.8065,10.1815"), query);
+        assertTrue(query.contains("key=test-key"), query);
+    }
+
+    @Test
+    void googleMapsFallsBackToLocalEstimateInDistanceMatrixFormat() throws Exception {
+        server.reply(503, "{\"status\":\"UNKNOWN_ERROR\"}", 0);
+        GoogleMapsService service = googleMaps(new OutboundHttpClient(1000, 5000, 16, 100, 2, 30000));
+
+        for (int i = 0; i < 3; i++) {
+            JsonNode json = objectMapper.readTree(service.getDistance("36.8065,10.1815", "34.7406,10.7603").get());
+
+            double km = RouteDistanceService.haversineKm(36.8065, 10.1815, 34.7406, 10.7603) * 1.3;
+            assertEquals("OK", json.path("status").asText());
+            assertTrue(json.path("fallback").asBoolean());
+            assertEquals("36.8065,10.1815", json.path("origin_addresses").path(0).asText());
+            assertEquals("34.7406,10.7603", json.path("destination_addresses").path(0).asText());
+            JsonNode element = json.path("rows").path(0).path("elements").path(0);
+            assertEquals("OK", element.path("status").asText());
+            assertEquals(Math.round(km * 1000), element.path("distance").path("value").asLong());
+            assertEquals(Math.round(km / 40 * 3600), element.path("duration").path("value").asLong());
+        }
+        // Disjoncteur ouvert après deux échecs : le troisième repli est servi sans appel réseau
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    void googleMapsFallbackMarksUnknownPlacesNotFound() throws Exception {
+        GoogleMapsService service = googleMaps(new OutboundHttpClient(1000, 5000, 16, 100, 5, 30000));
+
+        JsonNode json = objectMapper.readTree(service.fallback(null, "36.8065,10.1815"));
+
+        assertEquals("NOT_FOUND", json.path("rows").path(0).path("elements").path(0).path("status").asText());
+        assertTrue(json.path("fallback").asBoolean());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.enums.Category;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Analyse et évaluation (logique à trois valeurs) des conditions de promotion.
+ */
+class PromotionConditionTest {
+
+    private static PromotionCondition.Facts produit(Integer stock, Integer ventes, Long joursExpiration,
+                                                    Category categorie, Double prix) {
+        return new PromotionCondition.Facts(stock, ventes, joursExpiration, categorie, prix, null);
+    }
+
+    private static PromotionCondition.Facts commande(Integer stock, Integer ventes, double panier) {
+        return new PromotionCondition.Facts(stock, ventes, null, null, null, panier);
+    }
+
+    private static Boolean eval(String condition, PromotionCondition.Facts facts) {
+        return PromotionCondition.parse(condition).evaluate(facts);
+    }
+
+    private static String erreur(String condition) {
+        return assertThrows(IllegalArgumentException.class, () -> PromotionCondition.parse(condition)).getMessage();
+    }
+
+    @Test
+    void andBindsTighterThanOrAndNotTighterThanAnd() {
+        // stock < 5 OR (ventes < 10 AND prix > 100)
+        assertEquals(Boolean.TRUE, eval("stock < 5 OR ventes < 10 AND prix > 100", produit(3, 50, null, null, 50.0)));
+        assertEquals(Boolean.FALSE, eval("(stock < 5 OR ventes < 10) AND prix > 100", produit(3, 50, null, null, 50.0)));
+        // (NOT stock < 5) AND ventes < 10
+        assertEquals(Boolean.FALSE, eval("NOT stock < 5 AND ventes < 10", produit(10, 20, null, null, null)));
+        assertEquals(Boolean.TRUE, eval("NOT (stock < 5 AND ventes < 10)", produit(10, 20, null, null, null)));
+        // Mots-clés français
+        assertEquals(Boolean.TRUE, eval("NON stock < 5 ET (ventes < 10 OU prix > 100)", produit(10, 20, null, null, 150.0)));
+    }
+
+    @Test
+    void betweenIsInclusiveAndInMatchesCategories() {
+        assertEquals(Boolean.TRUE, eval("jours_expiration BETWEEN 0 AND 10", produit(null, null, 0L, null, null)));
+        assertEquals(Boolean.TRUE, eval("jours_expiration BETWEEN 0 AND 10", produit(null, null, 10L, null, null)));
+        assertEquals(Boolean.FALSE, eval("jours_expiration BETWEEN 0 AND 10", produit(null, null, 11L, null, null)));
+        assertEquals(Boolean.FALSE, eval("jours_expiration ENTRE 0 ET 10", produit(null, null, -1L, null, null)));
+
+        assertEquals(Boolean.TRUE, eval("categorie IN (FRUITS, 'legumes')", produit(null, null, null, Category.LEGUMES, null)));
+        assertEquals(Boolean.FALSE, eval("categorie DANS (FRUITS)", produit(null, null, null, Category.AUTRE, null)));
+        assertEquals(Boolean.TRUE, eval("categorie != FRUITS", produit(null, null, null, Category.CEREALES, null)));
+        assertEquals(Boolean.FALSE, eval("category = fruits", produit(null, null, null, Category.CEREALES, null)));
+    }
+
+    @Test
+    void namedConditionsAreAliasesOfTheirExpression() {
+        PromotionCondition montantMin = PromotionCondition.compile("montant_min");
+        assertTrue(montantMin.isValid());
+        assertTrue(montantMin.isAlias());
+        assertFalse(montantMin.isCiblageProduit());
+        assertFalse(montantMin.matches(PromotionCondition.Facts.panier(100)));
+        assertTrue(montantMin.matches(PromotionCondition.Facts.panier(100.01)));
+
+        PromotionCondition achatGroupe = PromotionCondition.compile("ACHAT_GROUPE");
+        assertTrue(achatGroupe.matches(PromotionCondition.Facts.panier(3)));
+
+        PromotionCondition lowSales = PromotionCondition.compile("EXPIRATION_AND_LOW_SALES");
+        assertTrue(lowSales.isCiblageProduit());
+        assertTrue(lowSales.matches(produit(1, 9, 10L, null, null)));
+        assertFalse(lowSales.matches(produit(1, 10, 10L, null, null)));
+    }
+
+    @Test
+    void unknownAttributesFollowThreeValuedLogic() {
+        PromotionCondition.Facts stockSeul = produit(3, null, null, null, null);
+
+        assertNull(eval("stock < 5 AND ventes < 10", stockSeul));
+        assertEquals(Boolean.FALSE, eval("stock > 5 AND ventes < 10", stockSeul));
+        assertEquals(Boolean.TRUE, eval("stock < 5 OR ventes < 10", stockSeul));
+        assertNull(eval("stock > 5 OR ventes < 10", stockSeul));
+        assertNull(eval("NOT ventes < 10", stockSeul));
+
+        // Indéterminée n'est pas remplie, y compris sous NOT
+        assertFalse(PromotionCondition.compile("stock < 5 AND ventes < 10").matches(stockSeul));
+        assertFalse(PromotionCondition.compile("NOT ventes < 10").matches(stockSeul));
+        assertFalse(PromotionCondition.compile("NOT (stock > 5 OR ventes < 10)").matches(stockSeul));
+    }
+
+    @Test
+    void checkoutRequiresTheWholeConditionOnRealFacts() {
+        PromotionCondition condition = PromotionCondition.compile("stock < 5 OR panier > 100");
+
+        assertFalse(condition.matches(commande(50, 0, 60)));
+        assertTrue(condition.matches(commande(50, 0, 150)));
+        assertTrue(condition.matches(commande(3, 0, 60)));
+        // Sans produit (montant seul), seule la partie panier peut être établie
+        assertFalse(condition.matches(PromotionCondition.Facts.panier(60)));
+        assertTrue(condition.matches(PromotionCondition.Facts.panier(150)));
+    }
+
+    @Test
+    void nightlyTargetingEvaluatesOnlyTheProductPart() {
+        PromotionCondition or = PromotionCondition.compile("stock < 5 OR panier > 100");
+        assertTrue(or.matchesProduit(produit(3, 0, null, null, 10.0)));
+        assertFalse(or.matchesProduit(produit(50, 0, null, null, 10.0)));
+        // Stock NULL en base : inconnu, pas de lien
+        assertFalse(or.matchesProduit(produit(null, 0, null, null, 10.0)));
+
+        PromotionCondition and = PromotionCondition.compile("stock < 5 AND panier > 100");
+        assertTrue(and.matchesProduit(produit(3, 0, null, null, 10.0)));
+        assertFalse(and.matchesProduit(produit(50, 0, null, null, 10.0)));
+
+        PromotionCondition not = PromotionCondition.compile("NOT (ventes > 10 OR panier > 100) AND stock > 0");
+        assertTrue(not.matchesProduit(produit(1, 5, null, null, null)));
+        assertFalse(not.matchesProduit(produit(1, 20, null, null, null)));
+
+        PromotionCondition panierSeul = PromotionCondition.compile("NOT panier > 100");
+        assertFalse(panierSeul.isCiblageProduit());
+        assertFalse(panierSeul.matchesProduit(produit(1, 1, 1L, Category.FRUITS, 1.0)));
+    }
+
+    @Test
+    void reportsErrorPositions() {
+        assertTrue(erreur("poids > 5").startsWith("Attribut inconnu 'poids' (position 1)"), erreur("poids > 5"));
+        assertTrue(erreur("stock >> 5").startsWith("Nombre attendu au lieu de '>' (position 8)"), erreur("stock >> 5"));
+        assertTrue(erreur("stock <").startsWith("nombre attendu en fin de condition (position 8)"), erreur("stock <"));
+        assertTrue(erreur("stock < 5 AND (ventes > 2").startsWith("')' attendu (position 26)"),
+                erreur("stock < 5 AND (ventes > 2"));
+        assertTrue(erreur("stock < 5 ventes").startsWith("Élément inattendu 'ventes' (position 11)"),
+                erreur("stock < 5 ventes"));
+        assertTrue(erreur("categorie < FRUITS").startsWith("Opérateur '<' impossible sur categorie (position 11)"),
+                erreur("categorie < FRUITS"));
+        assertTrue(erreur("stock # 5").startsWith("Caractère inattendu '#' (position 7)"), erreur("stock # 5"));
+        assertTrue(erreur("prix BETWEEN 1 OR 5").startsWith("AND attendu après BETWEEN (position 16)"),
+                erreur("prix BETWEEN 1 OR 5"));
+
+        // compile ne lève pas : condition invalide, jamais remplie
+        PromotionCondition invalide = PromotionCondition.compile("Black Friday 2024");
+        assertFalse(invalide.isValid());
+        assertFalse(invalide.matches(PromotionCondition.Facts.panier(1000)));
+        assertFalse(invalide.matchesProduit(produit(1, 1, 1L, Category.FRUITS, 1.0)));
+    }
+}
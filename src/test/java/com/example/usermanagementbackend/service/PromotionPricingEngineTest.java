@@ -0,0 +1,156 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.Produit;
+import com.example.usermanagementbackend.repository.PromotionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * PromotionPricingEngine sur un index construit à partir de lignes simulées
+ * (id, nom, pourcentage, condition, début, fin, produit).
+ */
+class PromotionPricingEngineTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-10T12:00:00Z");
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private PromotionPricingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        PromotionRepository repository = mock(PromotionRepository.class);
+        when(repository.findActivePromotionProducts()).thenReturn(rows);
+        engine = new PromotionPricingEngine(repository);
+        ReflectionTestUtils.setField(engine, "maxAgeMs", 900000L);
+        ReflectionTestUtils.setField(engine, "checkoutEnabled", true);
+    }
+
+    private void promotion(int id, double pourcentage, String condition, Long produitId) {
+        rows.add(new Object[]{id, "Promo " + id, pourcentage, condition,
+                Date.from(NOW.minusSeconds(86400)), Date.from(NOW.plusSeconds(86400)), produitId});
+    }
+
+    private static PromotionPricingEngine.Item item(long id, double prix, int qte) {
+        Produit produit = new Produit();
+        produit.setId(id);
+        produit.setPrix(prix);
+        return new PromotionPricingEngine.Item(produit, qte);
+    }
+
+    @Test
+    void evaluatesCartConditionsOnOrderTotal() {
+        promotion(1, 10, "MONTANT_MIN", 1L);
+        engine.rebuild();
+
+        // Ligne de 60 seule : panier sous le seuil de 100
+        PromotionPricingEngine.Quote alone = engine.priceOrder(List.of(item(1, 60, 1)), NOW);
+        assertEquals(60, alone.total(), 1e-9);
+        assertTrue(alone.promotions().isEmpty());
+
+        // Même ligne dans un panier de 110 : la condition porte sur la commande, la remise sur la ligne
+        PromotionPricingEngine.Quote quote = engine.priceOrder(List.of(item(1, 60, 1), item(2, 50, 1)), NOW);
+        assertEquals(110, quote.panier(), 1e-9);
+        assertEquals(54, quote.lignes().get(0).total(), 1e-9);
+        assertEquals(Integer.valueOf(1), quote.lignes().get(0).promotionId());
+        assertEquals(50, quote.lignes().get(1).total(), 1e-9);
+        assertNull(quote.lignes().get(1).promotionId());
+        assertEquals(104, quote.total(), 1e-9);
+
+        PromotionPricingEngine.Applied applied = quote.promotions().get(1);
+        assertEquals(60, applied.montantInitial(), 1e-9);
+        assertEquals(54, applied.montantApresReduction(), 1e-9);
+    }
+
+    @Test
+    void evaluatesProductTermsOnTheRealProduct() {
+        promotion(1, 10, "stock < 5 OR panier > 100", 1L);
+        engine.rebuild();
+
+        PromotionPricingEngine.Item enStock = item(1, 60, 1);
+        enStock.produit().setStock(50);
+        assertEquals(60, engine.priceOrder(List.of(enStock), NOW).total(), 1e-9);
+        // Stock suffisant mais panier de 120 : la branche panier rend la condition vraie
+        PromotionPricingEngine.Quote gros = engine.priceOrder(List.of(enStock, item(2, 60, 1)), NOW);
+        assertEquals(54, gros.lignes().get(0).total(), 1e-9);
+        assertEquals(114, gros.total(), 1e-9);
+
+        PromotionPricingEngine.Item stockBas = item(1, 60, 1);
+        stockBas.produit().setStock(3);
+        assertEquals(54, engine.priceOrder(List.of(stockBas), NOW).total(), 1e-9);
+    }
+
+    @Test
+    void sumsAppliedAmountsPerPromotion() {
+        promotion(1, 20, "panier >= 0", 1L);
+        promotion(1, 20, "panier >= 0", 2L);
+        engine.rebuild();
+
+        PromotionPricingEngine.Quote quote = engine.priceOrder(List.of(item(1, 10, 2), item(2, 5, 4)), NOW);
+
+        assertEquals(1, quote.promotions().size());
+        assertEquals(40, quote.promotions().get(1).montantInitial(), 1e-9);
+        assertEquals(32, quote.promotions().get(1).montantApresReduction(), 1e-9);
+    }
+
+    @Test
+    void bestPromotionWinsAndTiesGoToLowestId() {
+        promotion(3, 15, "panier >= 0", 1L);
+        promotion(2, 30, "panier >= 0", 1L);
+        promotion(4, 30, "panier >= 0", 1L);
+        // Déjà répercutée sur le prix catalogue : jamais appliquée au passage de commande
+        promotion(1, 90, "EXPIRATION_PRODUIT", 1L);
+        engine.rebuild();
+
+        PromotionPricingEngine.Price price = engine.priceOrder(List.of(item(1, 100, 1)), NOW).lignes().get(0);
+
+        assertEquals(Integer.valueOf(2), price.promotionId());
+        assertEquals(70, price.prixRemise(), 1e-9);
+    }
+
+    @Test
+    void ignoresPromotionsOutsideTheirValidityWindow() {
+        promotion(1, 50, "panier >= 0", 1L);
+        engine.rebuild();
+
+        PromotionPricingEngine.Quote later = engine.priceOrder(List.of(item(1, 100, 1)), NOW.plusSeconds(2 * 86400));
+
+        assertEquals(100, later.total(), 1e-9);
+        assertTrue(later.promotions().isEmpty());
+    }
+
+    @Test
+    void appliesAmountOnlyConditionsLikeTheNamedRules() {
+        assertEquals(180, PromotionPricingEngine.montantApresReduction("MONTANT_MIN", 10, 200), 1e-9);
+        assertEquals(100, PromotionPricingEngine.montantApresReduction("MONTANT_MIN", 10, 100), 1e-9);
+        // Sans produit : EXPIRATION_PRODUIT remise toujours le montant, comme l'ancienne règle nommée
+        assertEquals(45, PromotionPricingEngine.montantApresReduction("EXPIRATION_PRODUIT", 10, 50), 1e-9);
+        assertEquals(45, PromotionPricingEngine.montantApresReduction("expiration_produit", 10, 50), 1e-9);
+        // Les autres conditions produit restent indéterminées, donc non remplies
+        assertEquals(50, PromotionPricingEngine.montantApresReduction("EXPIRATION_AND_LOW_SALES", 10, 50), 1e-9);
+        assertEquals(50, PromotionPricingEngine.montantApresReduction("jours_expiration BETWEEN 0 AND 5", 10, 50), 1e-9);
+    }
+
+    @Test
+    void usesCataloguePricesWhenCheckoutPricingIsDisabled() {
+        promotion(1, 50, "panier >= 0", 1L);
+        engine.rebuild();
+        ReflectionTestUtils.setField(engine, "checkoutEnabled", false);
+
+        PromotionPricingEngine.Quote quote = engine.priceOrder(List.of(item(1, 100, 2)), NOW);
+
+        assertEquals(200, quote.total(), 1e-9);
+        assertTrue(quote.promotions().isEmpty());
+    }
+}
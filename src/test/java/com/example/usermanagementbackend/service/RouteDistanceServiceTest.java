@@ -0,0 +1,226 @@
+package com.example.usermanagementbackend.service;
+
+import com.example.usermanagementbackend.entity.RouteDistance;
+import com.example.usermanagementbackend.repository.RouteDistanceRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * RouteDistanceService contre un serveur OSRM simulé (HttpServer du JDK).
+ *
+ * La table route_distance_cache est simulée en mémoire par le dépôt moqué.
+ */
+class RouteDistanceServiceTest {
+
+    // Réponse OSRM réelle (/route/v1/driving, trois points, deux étapes) : la distance de la
+    // route suit les "legs", qui ont leur propre champ distance
+    private static final String OSRM_ROUTE = """
+            {"code":"Ok","routes":[{"geometry":"mfp_I__vpAqJ`@wUrCa{DwW","legs":[
+            {"steps":[],"summary":"","weight":263.1,"duration":260.2,"distance":1886.3},
+            {"steps":[],"summary":"","weight":370.5,"duration":370.5,"distance":2845.5}],
+            "weight_name":"routability","weight":633.6,"duration":630.7,"distance":4731.8}],
+            "waypoints":[
+            {"hint":"Dv8JgA","distance":4.231666,"name":"Friedrichstraße","location":[13.388799,52.517033]},
+            {"hint":"9B8Jg","distance":2.795167,"name":"Torstraße","location":[13.397631,52.529432]},
+            {"hint":"oSAGg","distance":2.226595,"name":"Platz der Vereinten Nationen","location":[13.428554,52.523239]}]}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger repositoryReads = new AtomicInteger();
+    private final Map<String, RouteDistance> table = new ConcurrentHashMap<>();
+    private final List<String> repositoryThreads = Collections.synchronizedList(new ArrayList<>());
+    private final List<RouteDistanceService> services = new ArrayList<>();
+    private StubHttpServer osrm;
+    private RouteDistanceRepository repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        osrm = new StubHttpServer(8);
+        osrm.reply(200, OSRM_ROUTE, 0);
+
+        repository = mock(RouteDistanceRepository.class);
+        when(repository.findById(anyString())).thenAnswer(inv -> {
+            repositoryReads.incrementAndGet();
+            repositoryThreads.add(Thread.currentThread().getName());
+            return Optional.ofNullable(table.get(inv.<String>getArgument(0)));
+        });
+        when(repository.save(any(RouteDistance.class))).thenAnswer(inv -> {
+            repositoryThreads.add(Thread.currentThread().getName());
+            RouteDistance row = inv.getArgument(0);
+            table.put(row.getRouteKey(), row);
+            return row;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(RouteDistanceService::shutdown);
+        osrm.close();
+    }
+
+    private RouteDistanceService service(int maxEntries, long ttlDays) {
+        // Disjoncteur très tolérant : seul le cache est testé ici
+        OutboundHttpClient http = new OutboundHttpClient(1000, 5000, 64, 1000, 1000, 30000);
+        RouteDistanceService service = new RouteDistanceService(repository, objectMapper, http,
+                osrm.baseUrl() + "/", 2000, 3, maxEntries, ttlDays, 2);
+        services.add(service);
+        return service;
+    }
+
+    @Test
+    void roundsCoordinatesToCacheBuckets() {
+        RouteDistanceService service = service(100, 30);
+
+        Double first = service.getDrivingDistanceKm(36.80649, 10.18151, 36.85049, 10.22149);
+        // Moins de 0,0005° d'écart sur chaque coordonnée : même case, pas de nouvel appel
+        Double second = service.getDrivingDistanceKm(36.80610, 10.18170, 36.85020, 10.22110);
+
+        assertEquals(4.7318, first, 1e-9);
+        assertEquals(first, second);
+        assertEquals(1, osrm.requests());
+        // OSRM reçoit les coordonnées arrondies, longitude en premier
+        assertEquals("/route/v1/driving/10.182000,36.806000;10.221000,36.850000", osrm.uris().get(0).getPath());
+
+        service.getDrivingDistanceKm(36.80751, 10.18151, 36.85049, 10.22149);
+        assertEquals(2, osrm.requests());
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedRoutesFromMemory() {
+        RouteDistanceService service = service(2, 30);
+
+        service.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221); // A
+        service.getDrivingDistanceKm(36.802, 10.182, 36.852, 10.222); // B
+        service.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221); // A, en mémoire
+        service.getDrivingDistanceKm(36.803, 10.183, 36.853, 10.223); // C, évince B
+        assertEquals(3, repositoryReads.get());
+
+        service.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221); // A, toujours en mémoire
+        assertEquals(3, repositoryReads.get());
+
+        // B n'est plus en mémoire : relu depuis la table, sans appel OSRM
+        service.getDrivingDistanceKm(36.802, 10.182, 36.852, 10.222);
+        assertEquals(4, repositoryReads.get());
+        assertEquals(3, osrm.requests());
+    }
+
+    @Test
+    void refetchesExpiredEntries() {
+        RouteDistanceService service = service(100, 0);
+
+        service.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221);
+        service.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221);
+
+        // Durée de vie nulle : ni la mémoire ni la table ne sont assez fraîches
+        assertEquals(2, osrm.requests());
+    }
+
+    @Test
+    void keepsStaleDistanceWhenOsrmFails() {
+        RouteDistanceService service = service(100, 30);
+        String key = "3:36801,10181;36851,10221";
+        table.put(key, new RouteDistance(key, 12.5, LocalDateTime.now().minusDays(40)));
+        osrm.reply(503, "{}", 0);
+
+        assertEquals(12.5, service.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221), 1e-9);
+        assertEquals(1, osrm.requests());
+
+        // Sans ancienne valeur, l'appelant reçoit null et se rabat sur la distance à vol d'oiseau
+        assertNull(service.getDrivingDistanceKm(36.802, 10.182, 36.852, 10.222));
+    }
+
+    @Test
+    void coalescesConcurrentCallsForTheSameRoute() throws Exception {
+        RouteDistanceService service = service(100, 30);
+        osrm.reply(200, OSRM_ROUTE, 300);
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return service.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221);
+                }));
+            }
+            start.countDown();
+            for (Future<Double> result : results) {
+                assertEquals(4.7318, result.get(5, TimeUnit.SECONDS), 1e-9);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, osrm.requests());
+    }
+
+    @Test
+    void reloadsDistancesFromRouteDistanceCacheAfterRestart() {
+        Double computed = service(100, 30).getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221);
+        assertEquals(1, osrm.requests());
+        assertEquals(1, table.size());
+
+        // Nouvelle instance (mémoire vide) : la distance vient de la table
+        RouteDistanceService restarted = service(100, 30);
+        assertEquals(computed, restarted.getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221));
+        // Ligne écrite par une autre instance
+        String key = "3:36900,10300;36950,10350";
+        table.put(key, new RouteDistance(key, 8.25, LocalDateTime.now().minusDays(1)));
+        assertEquals(8.25, restarted.getDrivingDistanceKm(36.9, 10.3, 36.95, 10.35), 1e-9);
+        assertEquals(1, osrm.requests());
+    }
+
+    @Test
+    void readsAndWritesTheTableOnTheCachePool() {
+        service(100, 30).getDrivingDistanceKm(36.801, 10.181, 36.851, 10.221);
+
+        // Une lecture puis une écriture, ni sur le thread appelant ni sur ceux du client HTTP
+        assertEquals(2, repositoryThreads.size());
+        for (String thread : repositoryThreads) {
+            assertTrue(thread.startsWith("route-cache-"), thread);
+        }
+    }
+
+    @Test
+    void parsesRouteDistanceFromRealOsrmResponse() throws IOException {
+        assertEquals(4731.8, parse(OSRM_ROUTE), 1e-9);
+        // "code" après "routes" (ordre des champs non garanti)
+        assertEquals(1200.0, parse("{\"routes\":[{\"legs\":[{\"distance\":1}],\"distance\":1200}],\"code\":\"Ok\"}"), 1e-9);
+        assertNull(parse("{\"code\":\"NoRoute\",\"message\":\"Impossible route between points\",\"routes\":[]}"));
+        assertNull(parse("{\"code\":\"Ok\",\"routes\":[],\"waypoints\":[]}"));
+        assertNull(parse("[]"));
+    }
+
+    private Double parse(String json) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            return RouteDistanceService.parseRouteDistance(parser);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.usermanagementbackend.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serveur HTTP simulé (HttpServer du JDK) pour les tests des clients sortants.
+ *
+ * Compte les requêtes reçues et le nombre maximal de requêtes simultanées ; chaque test ne
+ * définit que ses réponses, fixes ({@link #reply(int, String, long)}) ou calculées par requête
+ * ({@link #respond(Responder)}).
+ */
+class StubHttpServer implements AutoCloseable {
+
+    /** Requête reçue : n-ième requête (à partir de 0), URI et corps. */
+    record Request(int index, URI uri, byte[] body) {
+    }
+
+    record Reply(int status, String body, long delayMs) {
+    }
+
+    interface Responder {
+        Reply reply(Request request) throws Exception;
+    }
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<URI> uris = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> receivedAt = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService threads;
+    private final HttpServer server;
+    private volatile Responder responder = request -> new Reply(200, "", 0);
+
+    StubHttpServer(int threadCount) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        threads = Executors.newFixedThreadPool(threadCount);
+        server.setExecutor(threads);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void respond(Responder responder) {
+        this.responder = responder;
+    }
+
+    void reply(int status, String body, long delayMs) {
+        Reply reply = new Reply(status, body, delayMs);
+        this.responder = request -> reply;
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    List<URI> uris() {
+        return uris;
+    }
+
+    /** Instants de réception (System.nanoTime), dans l'ordre d'arrivée. */
+    List<Long> receivedAt() {
+        return receivedAt;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int index = requests.getAndIncrement();
+        receivedAt.add(System.nanoTime());
+        uris.add(exchange.getRequestURI());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Reply reply = responder.reply(new Request(index, exchange.getRequestURI(),
+                    exchange.getRequestBody().readAllBytes()));
+            if (reply.delayMs() > 0) {
+                Thread.sleep(reply.delayMs());
+            }
+            byte[] bytes = reply.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status(), bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Client parti (timeout) : rien à renvoyer
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+}